@@ -0,0 +1,127 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.benchmark.SyntheticPuzzle;
+import com.github.bgloeckle.jigsaw.colorcoding.ColorCoding;
+
+/**
+ * Benchmarks of {@link ColorCoding} and {@link ColorCodingJigsawSolverStrategy}, based on {@link SyntheticPuzzle}s with
+ * a grid of "grid x grid" tiles.
+ *
+ * <p>
+ * Note that the runtime of these is exponential in the grid size, therefore the default grid sizes are a lot smaller
+ * than the ones of {@link SolverBenchmark}. Use e.g. <code>-p grid=5,6</code> to execute on larger grids. Finding all
+ * solutions is even more expensive, its grid size is configured separately using the "fullSearchGrid" parameter.
+ *
+ * @author Bastian Gloeckle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Dlogback.configurationFile=logback-benchmark.xml" })
+public class ColorCodingBenchmark {
+    public static abstract class AbstractPuzzleGraph {
+        public SyntheticPuzzle puzzle;
+        public List<TileInfo> graph;
+        public int tileCountWidth;
+        public int tileCountHeight;
+
+        protected void init(int grid) {
+            puzzle = new SyntheticPuzzle(grid, grid);
+            AssemblyJigsaw assemblyJigsaw = new AssemblyJigsaw(puzzle.getEdgeImage(), puzzle.getTileWidth(),
+                            puzzle.getTileHeight());
+            graph = assemblyJigsaw.buildGraph();
+            tileCountWidth = assemblyJigsaw.getTileCountWidth();
+            tileCountHeight = assemblyJigsaw.getTileCountHeight();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PuzzleGraph extends AbstractPuzzleGraph {
+        @Param({ "3", "4" })
+        public int grid;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            init(grid);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FullSearchPuzzleGraph extends AbstractPuzzleGraph {
+        @Param({ "3" })
+        public int fullSearchGrid;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            init(fullSearchGrid);
+        }
+    }
+
+    @Benchmark
+    public Set<TileInfo> findVerticesWithLengthGreater(PuzzleGraph graph) {
+        return new ColorCoding<>(graph.graph).findVerticesWithLengthGreater(graph.tileCountWidth);
+    }
+
+    /**
+     * Time until {@link ColorCodingJigsawSolverStrategy} found all solutions.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Set<Assembly> colorCodingStrategy(FullSearchPuzzleGraph graph) {
+        return new ColorCodingJigsawSolverStrategy().solve(graph.puzzle.getEdgeImage(), graph.graph,
+                        graph.tileCountWidth, graph.tileCountHeight);
+    }
+
+    /**
+     * Time until {@link ColorCodingJigsawSolverStrategy} finds its first solution.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Set<Assembly> colorCodingStrategyFirstSolution(PuzzleGraph graph) {
+        return new ColorCodingJigsawSolverStrategy(1).solve(graph.puzzle.getEdgeImage(), graph.graph,
+                        graph.tileCountWidth, graph.tileCountHeight);
+    }
+}
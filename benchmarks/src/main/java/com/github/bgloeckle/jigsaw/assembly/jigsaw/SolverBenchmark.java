@@ -0,0 +1,107 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.benchmark.SyntheticPuzzle;
+
+/**
+ * Benchmarks of building the graph in {@link AssemblyJigsaw}, of {@link GreedyJigsawSolverStrategy} and of finding
+ * the first solution using {@link ConstraintPropagationJigsawSolverStrategy}, based on {@link SyntheticPuzzle}s with a
+ * grid of "grid x grid" tiles.
+ *
+ * <p>
+ * This benchmark is in the package of {@link AssemblyJigsaw} to be able to access the graph directly.
+ *
+ * @author Bastian Gloeckle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Dlogback.configurationFile=logback-benchmark.xml" })
+public class SolverBenchmark {
+    @State(Scope.Benchmark)
+    public static class Puzzle {
+        @Param({ "4", "8", "12", "16", "20" })
+        public int grid;
+
+        public SyntheticPuzzle puzzle;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            puzzle = new SyntheticPuzzle(grid, grid);
+        }
+
+        public AssemblyJigsaw createAssemblyJigsaw() {
+            return new AssemblyJigsaw(puzzle.getEdgeImage(), puzzle.getTileWidth(), puzzle.getTileHeight());
+        }
+    }
+
+    /**
+     * A graph that is re-created before each invocation, since {@link GreedyJigsawSolverStrategy} changes the graph.
+     */
+    @State(Scope.Thread)
+    public static class FreshGraph {
+        public AssemblyJigsaw assemblyJigsaw;
+        public List<TileInfo> graph;
+
+        @Setup(Level.Invocation)
+        public void setup(Puzzle puzzle) {
+            assemblyJigsaw = puzzle.createAssemblyJigsaw();
+            graph = assemblyJigsaw.buildGraph();
+        }
+    }
+
+    @Benchmark
+    public List<TileInfo> graphConstruction(Puzzle puzzle) {
+        return puzzle.createAssemblyJigsaw().buildGraph();
+    }
+
+    @Benchmark
+    public Set<Assembly> greedyStrategy(Puzzle puzzle, FreshGraph graph) {
+        return new GreedyJigsawSolverStrategy().solve(puzzle.puzzle.getEdgeImage(), graph.graph,
+                        graph.assemblyJigsaw.getTileCountWidth(), graph.assemblyJigsaw.getTileCountHeight());
+    }
+
+    @Benchmark
+    public Set<Assembly> constraintPropagationStrategy(Puzzle puzzle, FreshGraph graph) {
+        return new ConstraintPropagationJigsawSolverStrategy(1).solve(puzzle.puzzle.getEdgeImage(), graph.graph,
+                        graph.assemblyJigsaw.getTileCountWidth(), graph.assemblyJigsaw.getTileCountHeight());
+    }
+}
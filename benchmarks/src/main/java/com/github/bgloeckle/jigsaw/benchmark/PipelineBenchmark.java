@@ -0,0 +1,185 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.bgloeckle.jigsaw.JigsawSolver;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.pipeline.Pipeline;
+import com.github.bgloeckle.jigsaw.pipeline.Step;
+import com.github.bgloeckle.jigsaw.steps.EdgeTrackingByDoubleThreshold;
+import com.github.bgloeckle.jigsaw.steps.GaussianBlur;
+import com.github.bgloeckle.jigsaw.steps.NonMaximumSuppression;
+import com.github.bgloeckle.jigsaw.steps.SobelFilter;
+import com.github.bgloeckle.jigsaw.steps.ToSimpleLuminosityGreyscale;
+
+/**
+ * Benchmarks of the single {@link Step}s of the edge detection {@link Pipeline} and of the full pipeline.
+ *
+ * <p>
+ * Each step is executed on an image that has been processed by all the previous steps of
+ * {@link JigsawSolver#createEdgeDetectionPipeline()} already. As steps work in-place, each invocation works on a fresh
+ * copy of that image, the copy is created in an invocation-level setup and is therefore not measured.
+ *
+ * @author Bastian Gloeckle
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-Dlogback.configurationFile=logback-benchmark.xml" })
+public class PipelineBenchmark {
+    @State(Scope.Benchmark)
+    public static class SourceImage {
+        @Param({ "256", "1024", "2048", "4096", "8192" })
+        public int size;
+
+        public Image image;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            image = SyntheticImages.create(size);
+        }
+    }
+
+    /**
+     * Input of a single step: the source image with all previous steps applied.
+     */
+    public static abstract class StepInput {
+        private Image input;
+        public Image work;
+
+        protected abstract Step[] previousSteps();
+
+        @Setup(Level.Trial)
+        public void setupInput(SourceImage source) {
+            input = new Pipeline(previousSteps()).process(source.image);
+        }
+
+        @Setup(Level.Invocation)
+        public void setupWork() {
+            work = input.copy();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class GreyscaleInput extends StepInput {
+        @Override
+        protected Step[] previousSteps() {
+            return new Step[0];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class GaussianBlurInput extends StepInput {
+        @Override
+        protected Step[] previousSteps() {
+            return new Step[] { new ToSimpleLuminosityGreyscale() };
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SobelFilterInput extends StepInput {
+        @Override
+        protected Step[] previousSteps() {
+            return new Step[] { new ToSimpleLuminosityGreyscale(), new GaussianBlur(3) };
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NonMaximumSuppressionInput extends StepInput {
+        @Override
+        protected Step[] previousSteps() {
+            return new Step[] { new ToSimpleLuminosityGreyscale(), new GaussianBlur(3), new SobelFilter() };
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EdgeTrackingInput extends StepInput {
+        @Override
+        protected Step[] previousSteps() {
+            return new Step[] { new ToSimpleLuminosityGreyscale(), new GaussianBlur(3), new SobelFilter(),
+                            new NonMaximumSuppression() };
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Sigma {
+        @Param({ "1", "2", "3", "5" })
+        public int sigma;
+
+        public GaussianBlur gaussianBlur;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            gaussianBlur = new GaussianBlur(sigma);
+        }
+    }
+
+    @Benchmark
+    public Image toSimpleLuminosityGreyscale(GreyscaleInput input) {
+        new ToSimpleLuminosityGreyscale().accept(input.work);
+        return input.work;
+    }
+
+    @Benchmark
+    public Image gaussianBlur(GaussianBlurInput input, Sigma sigma) {
+        sigma.gaussianBlur.accept(input.work);
+        return input.work;
+    }
+
+    @Benchmark
+    public Image sobelFilter(SobelFilterInput input) {
+        new SobelFilter().accept(input.work);
+        return input.work;
+    }
+
+    @Benchmark
+    public Image nonMaximumSuppression(NonMaximumSuppressionInput input) {
+        new NonMaximumSuppression().accept(input.work);
+        return input.work;
+    }
+
+    @Benchmark
+    public Image edgeTrackingByDoubleThreshold(EdgeTrackingInput input) {
+        new EdgeTrackingByDoubleThreshold(.4, .85).accept(input.work);
+        return input.work;
+    }
+
+    @Benchmark
+    public Image fullPipeline(SourceImage source) {
+        return JigsawSolver.createEdgeDetectionPipeline().process(source.image);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import com.github.bgloeckle.jigsaw.image.AwtImageAdapter;
+import com.github.bgloeckle.jigsaw.image.Image;
+
+/**
+ * Creates reproducible synthetic images that contain a decent amount of edges.
+ *
+ * @author Bastian Gloeckle
+ */
+public class SyntheticImages {
+    private static final long SEED = 0x5eed;
+
+    /**
+     * @return A new square image of the given size with random rectangles and ovals painted on it. Calling this
+     *         method twice with the same size returns equal images.
+     */
+    public static Image create(int size) {
+        Random random = new Random(SEED);
+        BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, size, size);
+
+            int numberOfShapes = Math.max(16, size / 8);
+            for (int i = 0; i < numberOfShapes; i++) {
+                g.setColor(new Color(random.nextInt(0x1000000)));
+                int x = random.nextInt(size);
+                int y = random.nextInt(size);
+                int width = 1 + random.nextInt(Math.max(1, size / 8));
+                int height = 1 + random.nextInt(Math.max(1, size / 8));
+                if (random.nextBoolean()) {
+                    g.fillRect(x, y, width, height);
+                } else {
+                    g.fillOval(x, y, width, height);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return new AwtImageAdapter(img);
+    }
+}
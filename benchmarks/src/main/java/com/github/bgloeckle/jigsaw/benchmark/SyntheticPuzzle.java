@@ -0,0 +1,111 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import com.github.bgloeckle.jigsaw.JigsawSolver;
+import com.github.bgloeckle.jigsaw.image.AwtImageAdapter;
+import com.github.bgloeckle.jigsaw.image.Image;
+
+/**
+ * A reproducible puzzle created by cutting the test image into a grid of tiles and shuffling these tiles.
+ *
+ * @author Bastian Gloeckle
+ */
+public class SyntheticPuzzle {
+    private static final String SOURCE_IMAGE = "/road-in-autumn-forest-1318271179yAn.png";
+    private static final long SEED = 0x5eed;
+
+    private Image scrambledImage;
+    private Image edgeImage;
+    private int tileWidth;
+    private int tileHeight;
+
+    /**
+     * @param tileCountWidth
+     *            Number of tiles in x direction.
+     * @param tileCountHeight
+     *            Number of tiles in y direction.
+     */
+    public SyntheticPuzzle(int tileCountWidth, int tileCountHeight) {
+        BufferedImage source;
+        try (InputStream is = SyntheticPuzzle.class.getResourceAsStream(SOURCE_IMAGE)) {
+            source = ImageIO.read(is);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load source image", e);
+        }
+
+        tileWidth = source.getWidth() / tileCountWidth;
+        tileHeight = source.getHeight() / tileCountHeight;
+
+        List<Integer> tileOrder = new ArrayList<>();
+        for (int i = 0; i < tileCountWidth * tileCountHeight; i++) {
+            tileOrder.add(i);
+        }
+        Collections.shuffle(tileOrder, new Random(SEED));
+
+        BufferedImage scrambled = new BufferedImage(tileWidth * tileCountWidth, tileHeight * tileCountHeight,
+                        BufferedImage.TYPE_INT_RGB);
+        for (int destIdx = 0; destIdx < tileOrder.size(); destIdx++) {
+            int sourceIdx = tileOrder.get(destIdx);
+            int sourceX = (sourceIdx % tileCountWidth) * tileWidth;
+            int sourceY = (sourceIdx / tileCountWidth) * tileHeight;
+            int destX = (destIdx % tileCountWidth) * tileWidth;
+            int destY = (destIdx / tileCountWidth) * tileHeight;
+            for (int x = 0; x < tileWidth; x++) {
+                for (int y = 0; y < tileHeight; y++) {
+                    scrambled.setRGB(destX + x, destY + y, source.getRGB(sourceX + x, sourceY + y));
+                }
+            }
+        }
+
+        scrambledImage = new AwtImageAdapter(scrambled);
+        edgeImage = JigsawSolver.createEdgeDetectionPipeline().process(scrambledImage);
+    }
+
+    public Image getScrambledImage() {
+        return scrambledImage;
+    }
+
+    /**
+     * @return Result of the edge detection pipeline of {@link JigsawSolver} on the scrambled image.
+     */
+    public Image getEdgeImage() {
+        return edgeImage;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link PaddedConvolutionEngine} which uses the Vector API to calculate multiple pixels of a column at once.
+ *
+ * <p>
+ * Each lane calculates a different pixel, the summands of a single pixel are added in the same order as in the scalar
+ * implementation (and no fused-multiply-add is used), therefore the results are exactly the same.
+ *
+ * <p>
+ * This class is only compiled in the "vector-api" maven profile, the JVM needs to be started with
+ * <code>--add-modules jdk.incubator.vector</code>. See {@link Convolution#engine()}.
+ *
+ * @author Bastian Gloeckle
+ */
+public class VectorConvolutionEngine extends PaddedConvolutionEngine {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    protected void convolveColumn(double[] padded, int paddedHeight, double[] flatKernel, int kernelSize, int x,
+                    double[] res) {
+        int upperBound = SPECIES.loopBound(res.length);
+        int y = 0;
+        for (; y < upperBound; y += SPECIES.length()) {
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+            int k = 0;
+            for (int kernelX = 0; kernelX < kernelSize; kernelX++) {
+                int base = (x + kernelX) * paddedHeight + y;
+                for (int kernelY = 0; kernelY < kernelSize; kernelY++) {
+                    sum = sum.add(DoubleVector.fromArray(SPECIES, padded, base + kernelY).mul(flatKernel[k++]));
+                }
+            }
+            sum.intoArray(res, y);
+        }
+
+        // scalar tail
+        for (; y < res.length; y++) {
+            double sum = 0;
+            int k = 0;
+            for (int kernelX = 0; kernelX < kernelSize; kernelX++) {
+                int base = (x + kernelX) * paddedHeight + y;
+                for (int kernelY = 0; kernelY < kernelSize; kernelY++) {
+                    sum += padded[base + kernelY] * flatKernel[k++];
+                }
+            }
+            res[y] = sum;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.cache.EdgeImageCache;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry;
+import com.github.bgloeckle.jigsaw.util.Pair;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Solves multiple jigsaws in one JVM.
+ *
+ * <p>
+ * The stages of {@link JigsawSolver#solve()} are executed as a pipeline: Each stage has its own worker threads which
+ * take jigsaws from a bounded queue, execute the stage and pass the jigsaw on to the queue of the next stage. Therefore
+ * e.g. the next image is loaded and its edges are detected while the previous jigsaw is being solved, but only a few
+ * jigsaws are held in memory at a time.
+ *
+ * @author Bastian Gloeckle
+ */
+public class BatchSolver {
+    private static final Logger logger = LoggerFactory.getLogger(BatchSolver.class);
+
+    private static final int QUEUE_CAPACITY = 2;
+
+    /** Marks the end of the input in a queue. */
+    private static final Job END = new Job(null);
+
+    private List<Pair<File, File>> inputOutputFiles;
+    private MetricsRegistry metrics;
+    private EdgeImageCache edgeImageCache;
+    private int threadsPerStage;
+    private Consumer<JigsawSolver> solverConfigurer = solver -> {
+    };
+
+    /**
+     * @param inputOutputFiles
+     *            Pairs of input file and output file, see {@link JigsawSolver#JigsawSolver(File, File)}.
+     * @param metrics
+     *            Registry to record the resource usage in, each jigsaw is recorded in a scope named by its input file.
+     * @param edgeImageCache
+     *            Cache of edge images or <code>null</code>.
+     * @param threadsPerStage
+     *            Number of worker threads for each stage.
+     */
+    public BatchSolver(List<Pair<File, File>> inputOutputFiles, MetricsRegistry metrics,
+                    EdgeImageCache edgeImageCache, int threadsPerStage) {
+        this.inputOutputFiles = inputOutputFiles;
+        this.metrics = metrics;
+        this.edgeImageCache = edgeImageCache;
+        this.threadsPerStage = threadsPerStage;
+    }
+
+    /**
+     * @param solverConfigurer
+     *            Called with the {@link JigsawSolver} of each jigsaw before it is used, e.g. to set the cut detection.
+     */
+    public void setSolverConfigurer(Consumer<JigsawSolver> solverConfigurer) {
+        this.solverConfigurer = solverConfigurer;
+    }
+
+    /**
+     * Solve all jigsaws, blocks until all have been worked on.
+     *
+     * @return The number of jigsaws that failed.
+     */
+    public int solveAll() {
+        List<BlockingQueue<Job>> queues = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            queues.add(new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+        }
+        AtomicInteger failedCount = new AtomicInteger(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4 * threadsPerStage,
+                        new ThreadFactoryBuilder().setNameFormat("batch-solver-%d").setDaemon(true).build());
+        try {
+            startStage(executor, "detectEdges", queues.get(0), queues.get(1), failedCount,
+                            job -> job.edgeImage = job.solver.detectEdges(job.inputImage));
+            startStage(executor, "findCutVariants", queues.get(1), queues.get(2), failedCount,
+                            job -> job.cutVariants = job.solver.findCutVariants(job.edgeImage));
+            startStage(executor, "solveCutVariants", queues.get(2), queues.get(3), failedCount,
+                            job -> job.assemblies = job.solver.solveCutVariants(job.edgeImage, job.cutVariants));
+            CountDownLatch allDone = startStage(executor, "writeResults", queues.get(3), null, failedCount, job -> {
+                job.solver.writeResults(job.inputImage, job.assemblies);
+                logger.info("Finished jigsaw '{}'", job.inputFile);
+            });
+
+            // load on the calling thread, this blocks as soon as the queue of the next stage is full.
+            for (Pair<File, File> files : inputOutputFiles) {
+                Job job = new Job(files.getLeft());
+                try {
+                    job.solver = createSolver(files.getLeft(), files.getRight());
+                    job.inputImage = job.solver.loadInput();
+                } catch (RuntimeException e) {
+                    logger.error("Could not load jigsaw '{}', skipping it.", job.inputFile, e);
+                    failedCount.incrementAndGet();
+                    continue;
+                }
+                queues.get(0).put(job);
+            }
+            queues.get(0).put(END);
+
+            allDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while solving jigsaws", e);
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return failedCount.get();
+    }
+
+    /**
+     * @return A configured solver for the given jigsaw.
+     */
+    /* package */ JigsawSolver createSolver(File inputFile, File outputFile) {
+        JigsawSolver res = new JigsawSolver(inputFile, outputFile, metrics.scope(outputFile.getName()),
+                        edgeImageCache);
+        solverConfigurer.accept(res);
+        return res;
+    }
+
+    /**
+     * Start the workers of a stage.
+     *
+     * <p>
+     * A jigsaw whose stage fails, even with an {@link Error}, is counted as failed and not passed on. Each worker
+     * passes on the end of the input when it stops, so a stage whose workers stopped unexpectedly does not block the
+     * following stages.
+     *
+     * @param out
+     *            The queue to pass the jobs to after they have been worked on or <code>null</code> if this is the last
+     *            stage.
+     * @return Latch that is released as soon as all workers of this stage have finished.
+     */
+    private CountDownLatch startStage(ExecutorService executor, String name, BlockingQueue<Job> in,
+                    BlockingQueue<Job> out, AtomicInteger failedCount, Consumer<Job> work) {
+        AtomicInteger runningWorkers = new AtomicInteger(threadsPerStage);
+        CountDownLatch stageDone = new CountDownLatch(1);
+        for (int i = 0; i < threadsPerStage; i++) {
+            executor.execute(() -> {
+                try {
+                    while (true) {
+                        Job job = in.take();
+                        if (job == END) {
+                            // let the other workers of this stage see the end, too.
+                            in.put(END);
+                            return;
+                        }
+                        try {
+                            work.accept(job);
+                        } catch (Throwable t) {
+                            // also catch Errors like OutOfMemoryError, the next jigsaw might still fit.
+                            logger.error("Stage '{}' failed for jigsaw '{}', skipping it.", name, job.inputFile, t);
+                            failedCount.incrementAndGet();
+                            continue;
+                        }
+                        if (out != null) {
+                            out.put(job);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // executor is being shut down.
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (runningWorkers.decrementAndGet() == 0) {
+                        // when being shut down, the next stage is not running anymore.
+                        if (out != null && !Thread.currentThread().isInterrupted()) {
+                            try {
+                                out.put(END);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        stageDone.countDown();
+                    }
+                }
+            });
+        }
+        return stageDone;
+    }
+
+    /**
+     * Find the jigsaws to solve.
+     *
+     * @param input
+     *            Either a directory, in which case all .png files in that directory are solved, or a manifest file
+     *            containing the paths to the input files, one per line. Relative paths are resolved against the
+     *            directory of the manifest, empty lines and lines starting with '#' are ignored.
+     * @param outputDir
+     *            The directory the results should be written to, the names of the output files are based on the input
+     *            file names. If several input files share the same name (e.g. a/x.png and b/x.png in a manifest), a
+     *            suffix "-2", "-3", ... is appended to the later ones, so no two jigsaws write to the same output.
+     * @return Pairs of input and output file.
+     */
+    public static List<Pair<File, File>> findInputOutputFiles(File input, File outputDir) throws IOException {
+        List<File> inputFiles = new ArrayList<>();
+        if (input.isDirectory()) {
+            File[] pngs = input.listFiles((dir, name) -> name.toLowerCase().endsWith(".png"));
+            if (pngs != null) {
+                Arrays.sort(pngs);
+                inputFiles.addAll(Arrays.asList(pngs));
+            }
+        } else {
+            File baseDir = input.getAbsoluteFile().getParentFile();
+            for (String line : Files.readAllLines(input.toPath(), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                File f = new File(line);
+                inputFiles.add(f.isAbsolute() ? f : new File(baseDir, line));
+            }
+        }
+
+        List<Pair<File, File>> res = new ArrayList<>();
+        // compare lower case, as output directories might be on case-insensitive file systems.
+        Set<String> usedNames = new HashSet<>();
+        for (File inputFile : inputFiles) {
+            String name = inputFile.getName();
+            if (name.toLowerCase().endsWith(".png")) {
+                name = name.substring(0, name.length() - ".png".length());
+            }
+            String uniqueName = name;
+            for (int suffix = 2; !usedNames.add(uniqueName.toLowerCase()); suffix++) {
+                uniqueName = name + "-" + suffix;
+            }
+            res.add(new Pair<>(inputFile, new File(outputDir, uniqueName)));
+        }
+        return res;
+    }
+
+    private static class Job {
+        private File inputFile;
+        private JigsawSolver solver;
+        private Image inputImage;
+        private Image edgeImage;
+        private Set<List<Integer>> cutVariants;
+        private Set<Assembly> assemblies;
+
+        private Job(File inputFile) {
+            this.inputFile = inputFile;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+import com.github.bgloeckle.jigsaw.assembly.jigsaw.SolutionListener;
+import com.github.bgloeckle.jigsaw.util.SolveContext;
+
+/**
+ * {@link SolutionListener} that remembers the best {@link Assembly} of an edge image found so far, judged by
+ * {@link FullJudge}.
+ *
+ * <p>
+ * It is done as soon as its {@link SolveContext} is cancelled (e.g. because a deadline passed) or an assembly with a
+ * minimum judgement was found.
+ *
+ * <p>
+ * Strategies often report the same placement of tiles repeatedly. The placements judged most recently are remembered,
+ * so a repeated placement is skipped without running {@link FullJudge} again. The improvement consumer is called
+ * outside of the lock of the tracker, so a slow consumer (e.g. writing a file) neither blocks other threads reporting
+ * solutions nor callers of {@link #getBest()}.
+ *
+ * @author Bastian Gloeckle
+ */
+public class BestAssemblyTracker implements SolutionListener {
+    private static final Logger logger = LoggerFactory.getLogger(BestAssemblyTracker.class);
+
+    /** Number of judged tile placements that are remembered. */
+    private static final int MAX_JUDGED_LAYOUTS = 4096;
+
+    private SolveContext context;
+    private double minJudgement;
+    private Consumer<Assembly> improvementConsumer;
+
+    private Assembly best = null;
+    private double bestJudgement = Double.NEGATIVE_INFINITY;
+    private volatile boolean thresholdReached = false;
+    /** Incremented on each improvement, to skip consuming an improvement that was superseded already. */
+    private long bestVersion = 0;
+    /** Serializes the calls of {@link #improvementConsumer}. */
+    private final Object consumerLock = new Object();
+    private Map<Layout, Boolean> judgedLayouts = new LinkedHashMap<Layout, Boolean>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<Layout, Boolean> eldest) {
+            return size() > MAX_JUDGED_LAYOUTS;
+        }
+    };
+
+    /**
+     * @param deadlineNanos
+     *            Value of {@link System#nanoTime()} after which the tracker is done.
+     * @param minJudgement
+     *            Judgement of {@link FullJudge} at which an assembly is good enough so the tracker is done.
+     * @param improvementConsumer
+     *            Called with each assembly that is better than all previous ones. Calls are serialized, but not
+     *            synchronized with the tracker: An assembly that was superseded by a better one before the consumer was
+     *            called for it is skipped.
+     */
+    public BestAssemblyTracker(long deadlineNanos, double minJudgement, Consumer<Assembly> improvementConsumer) {
+        this(new SolveContext(deadlineNanos), minJudgement, improvementConsumer);
+    }
+
+    /**
+     * Create a tracker without a deadline.
+     *
+     * @see #BestAssemblyTracker(long, double, Consumer)
+     */
+    public BestAssemblyTracker(double minJudgement, Consumer<Assembly> improvementConsumer) {
+        this(new SolveContext(), minJudgement, improvementConsumer);
+    }
+
+    /**
+     * Create a tracker that is done as soon as the given context is cancelled.
+     *
+     * @see #BestAssemblyTracker(long, double, Consumer)
+     */
+    public BestAssemblyTracker(SolveContext context, double minJudgement, Consumer<Assembly> improvementConsumer) {
+        this.context = context;
+        this.minJudgement = minJudgement;
+        this.improvementConsumer = improvementConsumer;
+    }
+
+    @Override
+    public void solutionFound(Assembly assembly) {
+        Layout layout = new Layout(assembly);
+        synchronized (this) {
+            if (judgedLayouts.put(layout, Boolean.TRUE) != null) {
+                // the same placement has the same judgement, so it cannot be an improvement.
+                return;
+            }
+        }
+        double judgement = new FullJudge(assembly).judge();
+        long version;
+        synchronized (this) {
+            if (judgement <= bestJudgement) {
+                return;
+            }
+            logger.info("Found better assembly with judgement {} (previous best: {})", judgement, bestJudgement);
+            best = assembly;
+            bestJudgement = judgement;
+            if (judgement >= minJudgement) {
+                thresholdReached = true;
+            }
+            version = ++bestVersion;
+        }
+        synchronized (consumerLock) {
+            synchronized (this) {
+                if (version != bestVersion) {
+                    // the thread that found the better assembly consumes that one.
+                    return;
+                }
+            }
+            improvementConsumer.accept(assembly);
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        return thresholdReached || context.isCancelled();
+    }
+
+    @Override
+    public SolveContext getContext() {
+        return context;
+    }
+
+    /**
+     * @return The best assembly found so far or <code>null</code>.
+     */
+    public synchronized Assembly getBest() {
+        return best;
+    }
+
+    /**
+     * @return The judgement of {@link #getBest()}.
+     */
+    public synchronized double getBestJudgement() {
+        return bestJudgement;
+    }
+
+    /**
+     * Placement of the tiles of an {@link Assembly}, equal for assemblies that place the same areas of the same image
+     * at the same positions.
+     */
+    private static class Layout {
+        private Object origImage;
+        private int[] placements;
+        private int hashCode;
+
+        private Layout(Assembly assembly) {
+            origImage = assembly.getOrigImage();
+            int tileCount = 0;
+            for (NavigableMap<Integer, Tile> column : assembly.getTiles().values()) {
+                tileCount += column.size();
+            }
+            placements = new int[tileCount * 7];
+            int idx = 0;
+            for (Entry<Integer, NavigableMap<Integer, Tile>> column : assembly.getTiles().entrySet()) {
+                for (Entry<Integer, Tile> e : column.getValue().entrySet()) {
+                    Tile t = e.getValue();
+                    placements[idx++] = column.getKey();
+                    placements[idx++] = e.getKey();
+                    placements[idx++] = t.getSourceX();
+                    placements[idx++] = t.getSourceY();
+                    placements[idx++] = t.getSourceWidth();
+                    placements[idx++] = t.getSourceHeight();
+                    placements[idx++] = t.getRotation();
+                }
+            }
+            hashCode = 31 * System.identityHashCode(origImage) + Arrays.hashCode(placements);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Layout)) {
+                return false;
+            }
+            Layout other = (Layout) obj;
+            return origImage == other.origImage && Arrays.equals(placements, other.placements);
+        }
+    }
+}
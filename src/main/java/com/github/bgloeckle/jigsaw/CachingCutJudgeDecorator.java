@@ -27,10 +27,16 @@ import java.util.Map;
 import com.github.bgloeckle.jigsaw.cutjudge.CutJudge;
 import com.github.bgloeckle.jigsaw.util.EdgeDirection;
 import com.github.bgloeckle.jigsaw.util.Pair;
+import com.github.bgloeckle.jigsaw.util.SolveCancelledException;
+import com.github.bgloeckle.jigsaw.util.SolveContext;
 
 /**
  * Decorator around a {@link CutJudge} providing easier accessible methods and caching intermediate results.
  *
+ * <p>
+ * Before judging a cut that is not cached yet, the {@link SolveContext} is checked, throwing a
+ * {@link SolveCancelledException} if it was cancelled.
+ *
  * @author Bastian Gloeckle
  */
 public class CachingCutJudgeDecorator {
@@ -38,13 +44,19 @@ public class CachingCutJudgeDecorator {
     private CutJudge cutJudge;
     private int width;
     private int height;
+    private SolveContext context;
     private Map<Integer, Double> horizontalCache = new HashMap<>();
     private Map<Integer, Double> verticalCache = new HashMap<>();
 
     public CachingCutJudgeDecorator(CutJudge cutJudge, int width, int height) {
+        this(cutJudge, width, height, SolveContext.NONE);
+    }
+
+    public CachingCutJudgeDecorator(CutJudge cutJudge, int width, int height, SolveContext context) {
         this.cutJudge = cutJudge;
         this.width = width;
         this.height = height;
+        this.context = context;
     }
 
     /**
@@ -56,6 +68,7 @@ public class CachingCutJudgeDecorator {
      */
     public double judgeHorizontal(int cut) {
         if (!horizontalCache.containsKey(cut)) {
+            context.checkCancelled();
             int y = cut;
             double res = cutJudge.judge(new Iterator<Pair<Integer, Integer>>() {
                 private int curX = 0;
@@ -102,6 +115,7 @@ public class CachingCutJudgeDecorator {
      */
     public double judgeVertical(int cut) {
         if (!verticalCache.containsKey(cut)) {
+            context.checkCancelled();
             int x = cut;
             double res = cutJudge.judge(new Iterator<Pair<Integer, Integer>>() {
                 private int curY = 0;
@@ -0,0 +1,216 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.AssemblyIo;
+import com.github.bgloeckle.jigsaw.image.Image;
+
+/**
+ * State of {@link JigsawSolver#solveAnytime(long, double)} that is written to a file regularly, so a solve can be
+ * resumed after the process died.
+ *
+ * <p>
+ * A checkpoint contains the steps (combination of cut variant and strategy) that were searched completely and the
+ * tiles of the best assembly found so far. A step that was interrupted is searched again from its beginning when
+ * resuming.
+ *
+ * <p>
+ * File format (big endian): magic, version, length and bytes of the fingerprint of the input and the solver options,
+ * number of done steps followed by their names (modified UTF-8), a flag if there is a best assembly and if so the
+ * number of bytes of the best assembly followed by the assembly as written by {@link AssemblyIo}.
+ *
+ * <p>
+ * All methods are thread safe.
+ *
+ * @author Bastian Gloeckle
+ */
+/* package */ class Checkpoint {
+    private static final int MAGIC = 0x4a434b50; // "JCKP"
+    private static final int VERSION = 1;
+
+    private byte[] fingerprint;
+    private Set<String> doneSteps = new LinkedHashSet<>();
+    /** The best assembly as written by {@link AssemblyIo}, <code>null</code> if there is none. */
+    private byte[] best = null;
+    private long lastWriteNanos;
+    private boolean written = false;
+
+    /**
+     * Create an empty checkpoint.
+     *
+     * @param fingerprint
+     *            See {@link #fingerprint(File, String)}.
+     */
+    /* package */ Checkpoint(byte[] fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return Fingerprint of the contents of the input file and the given description of the solver options. A
+     *         checkpoint is only valid for a solve with the same fingerprint.
+     */
+    /* package */ static byte[] fingerprint(File inputFile, String options) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+        try (InputStream is = Files.newInputStream(inputFile.toPath())) {
+            byte[] buf = new byte[64 * 1024];
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                digest.update(buf, 0, len);
+            }
+        }
+        digest.update((byte) 0);
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    /**
+     * Read a checkpoint from a file.
+     *
+     * @return The checkpoint or <code>null</code> if the file belongs to a solve with a different fingerprint.
+     * @throws IOException
+     *             If the file cannot be read or is no valid checkpoint.
+     */
+    /* package */ static Checkpoint read(File file, byte[] fingerprint) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            byte[] fileFingerprint = new byte[in.readInt()];
+            in.readFully(fileFingerprint);
+            if (!Arrays.equals(fingerprint, fileFingerprint)) {
+                return null;
+            }
+
+            Checkpoint res = new Checkpoint(fingerprint);
+            int doneStepCount = in.readInt();
+            for (int i = 0; i < doneStepCount; i++) {
+                res.doneSteps.add(in.readUTF());
+            }
+            if (in.readBoolean()) {
+                res.best = new byte[in.readInt()];
+                in.readFully(res.best);
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Write this checkpoint to the given file, replacing it atomically.
+     *
+     * @param minIntervalNanos
+     *            Do not write if the last write happened less than this many nanoseconds ago.
+     */
+    /* package */ synchronized void write(File file, long minIntervalNanos) throws IOException {
+        long now = System.nanoTime();
+        if (written && now - lastWriteNanos < minIntervalNanos) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(fingerprint.length);
+                out.write(fingerprint);
+                out.writeInt(doneSteps.size());
+                for (String step : doneSteps) {
+                    out.writeUTF(step);
+                }
+                out.writeBoolean(best != null);
+                if (best != null) {
+                    out.writeInt(best.length);
+                    out.write(best);
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmpFile.delete();
+        }
+        written = true;
+        lastWriteNanos = now;
+    }
+
+    /* package */ synchronized boolean isDone(String step) {
+        return doneSteps.contains(step);
+    }
+
+    /**
+     * Remember that the given step was searched completely.
+     */
+    /* package */ synchronized void markDone(String step) {
+        doneSteps.add(step);
+    }
+
+    /* package */ synchronized void setBest(Assembly assembly) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            new AssemblyIo().writeAssembly(assembly, out);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not serialize assembly", e);
+        }
+        best = baos.toByteArray();
+    }
+
+    /**
+     * @return The best assembly of the checkpoint, based on the given image, or <code>null</code>.
+     */
+    /* package */ synchronized Assembly getBest(Image origImage) {
+        if (best == null) {
+            return null;
+        }
+        try {
+            return new AssemblyIo().readAssembly(origImage, new DataInputStream(new ByteArrayInputStream(best)));
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid assembly in checkpoint", e);
+        }
+    }
+}
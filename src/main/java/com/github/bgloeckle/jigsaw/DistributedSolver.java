@@ -0,0 +1,508 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.AssemblyIo;
+import com.github.bgloeckle.jigsaw.image.BinaryImageIo;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry.Stage;
+import com.github.bgloeckle.jigsaw.util.SolveCancelledException;
+import com.github.bgloeckle.jigsaw.util.SolveContext;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Solves a jigsaw like {@link JigsawSolver#solve()}, but evaluates the cut variants in {@link DistributedWorker}
+ * processes.
+ *
+ * <p>
+ * The edge image is computed once and written to a file next to the output file in the format of
+ * {@link BinaryImageIo}, which the workers memory map instead of detecting edges again. The workers connect to a
+ * socket of the coordinator, which hands out one cut variant at a time to each of them and collects the resulting
+ * assemblies. A variant whose worker fails or does not answer within the variant timeout is handed out again; if no
+ * worker is left, the remaining variants are solved in the coordinator itself.
+ *
+ * <p>
+ * By default the workers are started as local JVMs and the coordinator listens on a free port of the loopback
+ * interface. The coordinator does not authenticate workers, so it only listens on another interface if that address is
+ * given explicitly. Additional workers can then be started on other machines, as long as they see the input and edge
+ * image files at the same paths.
+ *
+ * @author Bastian Gloeckle
+ */
+public class DistributedSolver {
+    private static final Logger logger = LoggerFactory.getLogger(DistributedSolver.class);
+
+    /** Message to a worker: Stop. */
+    /* package */ static final byte MSG_STOP = 0;
+    /** Message to a worker: Solve the cut variant that follows as two ints. */
+    /* package */ static final byte MSG_VARIANT = 1;
+
+    /** Time to wait for the first worker to connect before solving locally. */
+    private static final long WORKER_CONNECT_TIMEOUT_MILLIS = 60_000L;
+    private static final long WORKER_STOP_TIMEOUT_SECONDS = 5;
+    private static final long POLL_MILLIS = 200L;
+    /** Default of {@link #setVariantTimeoutMillis(long)}. */
+    private static final long DEFAULT_VARIANT_TIMEOUT_MILLIS = 10 * 60_000L;
+    /** Prefixes of the coordinator's JVM arguments that are passed on to local workers. */
+    private static final List<String> WORKER_JVM_OPTION_PREFIXES = Arrays.asList("-Xmx", "-Xms", "-Xss",
+                    "-XX:MaxRAMPercentage=", "-XX:MaxDirectMemorySize=", "--add-modules=", "--add-opens=",
+                    "--add-exports=", "--enable-preview");
+    /** JVM arguments of the coordinator that are passed on to local workers together with the following argument. */
+    private static final List<String> WORKER_JVM_OPTIONS_WITH_VALUE = Arrays.asList("--add-modules", "--add-opens",
+                    "--add-exports");
+
+    private JigsawSolver solver;
+    private int workerCount;
+    private InetAddress bindAddress;
+    private int port;
+    private long variantTimeoutMillis = DEFAULT_VARIANT_TIMEOUT_MILLIS;
+
+    /**
+     * @param solver
+     *            Defines input, output and settings of the jigsaw.
+     * @param workerCount
+     *            Number of local worker processes to start.
+     * @param port
+     *            Port to listen on for workers on the loopback interface, or 0 to listen on a free port.
+     */
+    public DistributedSolver(JigsawSolver solver, int workerCount, int port) {
+        this(solver, workerCount, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * @param bindAddress
+     *            Address to listen on for workers.
+     * @param port
+     *            Port to listen on for workers, or 0 to listen on a free port.
+     * @see #DistributedSolver(JigsawSolver, int, int)
+     */
+    public DistributedSolver(JigsawSolver solver, int workerCount, InetAddress bindAddress, int port) {
+        this.solver = solver;
+        this.workerCount = workerCount;
+        this.bindAddress = bindAddress;
+        this.port = port;
+    }
+
+    /**
+     * @param variantTimeoutMillis
+     *            Maximum time a worker may not send any data while solving a cut variant. After that the worker is
+     *            considered hung, its connection is closed and the variant is handed out again. Defaults to 10 minutes.
+     */
+    public void setVariantTimeoutMillis(long variantTimeoutMillis) {
+        this.variantTimeoutMillis = variantTimeoutMillis;
+    }
+
+    /**
+     * Solve the jigsaw and write the results, see {@link JigsawSolver#solve()}.
+     */
+    public void solve() {
+        try (Stage solveStage = solver.getMetrics().startStage("solve")) {
+            Image inputImage = solver.loadInput();
+            Image inputEdgeImage = solver.detectEdges(inputImage);
+            Set<List<Integer>> cutVariants = solver.findCutVariants(inputEdgeImage);
+            Set<Assembly> assemblies = solveCutVariants(inputEdgeImage, cutVariants);
+            solver.writeResults(inputImage, assemblies);
+        } catch (SolveCancelledException e) {
+            logger.info("Solve was cancelled before any assembly was found");
+        }
+    }
+
+    /**
+     * Distribute the cut variants to the workers, see {@link JigsawSolver#solveCutVariants(Image, Set)}.
+     */
+    public Set<Assembly> solveCutVariants(Image inputEdgeImage, Set<List<Integer>> allCutVariants) {
+        File edgeImageFile = new File(solver.getOutputFile().getAbsolutePath() + "-edges.bin");
+        Distribution distribution = new Distribution(inputEdgeImage, allCutVariants,
+                        solver.createConfidenceTracker(inputEdgeImage), solver.getSolveContext());
+        ExecutorService connectionExecutor = Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder().setNameFormat("worker-connection-%d").setDaemon(true).build());
+        List<Process> processes = new ArrayList<>();
+
+        try (ServerSocket serverSocket = new ServerSocket(port, 0, bindAddress)) {
+            new BinaryImageIo().writeImage(inputEdgeImage, edgeImageFile);
+
+            Thread acceptThread = new Thread(() -> accept(serverSocket, edgeImageFile, distribution,
+                            connectionExecutor), "worker-accept");
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+            logger.info("Waiting for workers on port {}", serverSocket.getLocalPort());
+            processes.addAll(startWorkers(serverSocket.getLocalPort()));
+
+            distribution.awaitFinished();
+        } catch (IOException e) {
+            logger.warn("Could not distribute cut variants, solving them locally", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for workers, solving remaining cut variants locally");
+        } finally {
+            distribution.closeConnections();
+            connectionExecutor.shutdownNow();
+            stopWorkers(processes);
+            edgeImageFile.delete();
+        }
+
+        distribution.solveRemainingLocally();
+        return distribution.getAssemblies();
+    }
+
+    /**
+     * Start the local worker processes.
+     *
+     * @param coordinatorPort
+     *            The port the workers should connect to on the bind address, or on the loopback address if the
+     *            coordinator listens on all interfaces.
+     * @return The started processes.
+     */
+    /* package */ List<Process> startWorkers(int coordinatorPort) throws IOException {
+        List<Process> res = new ArrayList<>();
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath();
+        InetAddress coordinatorAddress = bindAddress.isAnyLocalAddress() ? InetAddress.getLoopbackAddress()
+                        : bindAddress;
+        for (int i = 0; i < workerCount; i++) {
+            File logFile = new File(solver.getOutputFile().getAbsolutePath() + "-worker-" + i + ".log");
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(workerJvmArguments(ManagementFactory.getRuntimeMXBean().getInputArguments()));
+            command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), Main.class.getName(),
+                            Main.WORKER_OPTION, coordinatorAddress.getHostAddress() + ":" + coordinatorPort));
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(logFile);
+            res.add(builder.start());
+        }
+        return res;
+    }
+
+    /**
+     * @return The JVM arguments of the coordinator that the workers get as well: Heap and stack sizes and module
+     *         options. Others, like debugger agents, log files or JMX ports, would clash between the processes.
+     */
+    /* package */ static List<String> workerJvmArguments(List<String> coordinatorArguments) {
+        List<String> res = new ArrayList<>();
+        for (int i = 0; i < coordinatorArguments.size(); i++) {
+            String arg = coordinatorArguments.get(i);
+            if (WORKER_JVM_OPTIONS_WITH_VALUE.contains(arg) && i + 1 < coordinatorArguments.size()) {
+                res.add(arg);
+                res.add(coordinatorArguments.get(++i));
+            } else if (WORKER_JVM_OPTION_PREFIXES.stream().anyMatch(arg::startsWith)) {
+                res.add(arg);
+            }
+        }
+        return res;
+    }
+
+    private void stopWorkers(List<Process> processes) {
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(WORKER_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    logger.warn("Worker did not stop, destroying it");
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private void accept(ServerSocket serverSocket, File edgeImageFile, Distribution distribution,
+                    ExecutorService connectionExecutor) {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // server socket was closed.
+                return;
+            }
+            if (!distribution.connected(socket)) {
+                closeQuietly(socket);
+                continue;
+            }
+            connectionExecutor.execute(() -> serve(socket, edgeImageFile, distribution));
+        }
+    }
+
+    /**
+     * Hand out cut variants to the worker connected via the given socket until there are none left.
+     */
+    private void serve(Socket socket, File edgeImageFile, Distribution distribution) {
+        AssemblyIo assemblyIo = new AssemblyIo();
+        List<Integer> variant = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                        DataOutputStream out = new DataOutputStream(
+                                        new BufferedOutputStream(socket.getOutputStream()))) {
+            logger.info("Worker {} connected", socket.getRemoteSocketAddress());
+            out.writeUTF(solver.getInputFile().getAbsolutePath());
+            out.writeUTF(edgeImageFile.getAbsolutePath());
+            out.writeBoolean(solver.isRotationAware());
+            out.writeBoolean(solver.getSeed() != null);
+            if (solver.getSeed() != null) {
+                out.writeLong(solver.getSeed());
+            }
+            out.flush();
+            // a worker that does not answer makes the reads below fail instead of blocking forever.
+            socket.setSoTimeout((int) Math.min(variantTimeoutMillis, Integer.MAX_VALUE));
+
+            while ((variant = distribution.next()) != null) {
+                out.writeByte(MSG_VARIANT);
+                out.writeInt(variant.get(0));
+                out.writeInt(variant.get(1));
+                out.flush();
+
+                int count = in.readInt();
+                Set<Assembly> assemblies = new HashSet<>();
+                if (count < 0) {
+                    logger.warn("Worker {} could not solve variant ({}/{}): {}", socket.getRemoteSocketAddress(),
+                                    variant.get(0), variant.get(1), in.readUTF());
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        assemblies.add(assemblyIo.readAssembly(distribution.getEdgeImage(), in));
+                    }
+                }
+                distribution.finished(assemblies);
+                variant = null;
+            }
+            out.writeByte(MSG_STOP);
+            out.flush();
+        } catch (SocketTimeoutException e) {
+            logger.warn("Worker {} did not answer within {} ms, handing out its variant again",
+                            socket.getRemoteSocketAddress(), variantTimeoutMillis);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Lost connection to worker {}", socket.getRemoteSocketAddress(), e);
+        } finally {
+            // also on errors, otherwise the variant would stay in flight forever.
+            if (variant != null) {
+                distribution.failed(variant);
+            }
+            distribution.disconnected(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // swallow.
+        }
+    }
+
+    /**
+     * State of distributing the cut variants of one jigsaw: The variants not handed out yet, the number of variants
+     * currently being solved by workers and the assemblies found so far.
+     */
+    private class Distribution {
+        private Image edgeImage;
+        private BestAssemblyTracker tracker;
+        private SolveContext context;
+
+        private Deque<List<Integer>> pending;
+        private int inFlight = 0;
+        private Set<Socket> sockets = new HashSet<>();
+        private boolean everConnected = false;
+        private boolean closed = false;
+        private Set<Assembly> assemblies = new HashSet<>();
+
+        private Distribution(Image edgeImage, Set<List<Integer>> cutVariants, BestAssemblyTracker tracker,
+                        SolveContext context) {
+            this.edgeImage = edgeImage;
+            this.tracker = tracker;
+            this.context = context;
+            pending = new ArrayDeque<>(cutVariants);
+        }
+
+        private Image getEdgeImage() {
+            return edgeImage;
+        }
+
+        private boolean isStopped() {
+            return tracker.isDone() || context.isCancelled();
+        }
+
+        /**
+         * @return The next variant to be solved by a worker or <code>null</code> if there is none.
+         */
+        private synchronized List<Integer> next() {
+            if (closed || isStopped() || pending.isEmpty()) {
+                return null;
+            }
+            inFlight++;
+            return pending.poll();
+        }
+
+        /**
+         * A worker finished its variant with the given assemblies.
+         */
+        private void finished(Set<Assembly> variantAssemblies) {
+            collect(variantAssemblies);
+            synchronized (this) {
+                inFlight--;
+                notifyAll();
+            }
+        }
+
+        private void collect(Set<Assembly> variantAssemblies) {
+            // judge outside of the lock, the tracker serializes itself.
+            variantAssemblies.forEach(tracker::solutionFound);
+            synchronized (this) {
+                assemblies.addAll(variantAssemblies);
+            }
+        }
+
+        private synchronized void failed(List<Integer> variant) {
+            pending.addFirst(variant);
+            inFlight--;
+            notifyAll();
+        }
+
+        /**
+         * @return <code>false</code> if the distribution is finished already and the worker should be rejected.
+         */
+        private synchronized boolean connected(Socket socket) {
+            if (closed) {
+                return false;
+            }
+            sockets.add(socket);
+            everConnected = true;
+            return true;
+        }
+
+        private synchronized void disconnected(Socket socket) {
+            sockets.remove(socket);
+            closeQuietly(socket);
+            notifyAll();
+        }
+
+        /**
+         * Wait until all variants are solved, the search is stopped or there are no workers to solve the remaining
+         * variants.
+         */
+        private synchronized void awaitFinished() throws InterruptedException {
+            long startNanos = System.nanoTime();
+            while (true) {
+                if (context.isCancelled()) {
+                    logger.info("Solve was cancelled, skipping remaining cut variants");
+                    return;
+                }
+                if (inFlight == 0 && (pending.isEmpty() || isStopped())) {
+                    if (tracker.isDone()) {
+                        logger.info("Found assembly with judgement {}, skipping remaining cut variants",
+                                        tracker.getBestJudgement());
+                    }
+                    return;
+                }
+                boolean connectTimedOut = System.nanoTime() - startNanos > TimeUnit.MILLISECONDS
+                                .toNanos(WORKER_CONNECT_TIMEOUT_MILLIS);
+                if (sockets.isEmpty() && (everConnected || connectTimedOut)) {
+                    logger.warn("No workers left to solve {} cut variants", pending.size() + inFlight);
+                    return;
+                }
+                wait(POLL_MILLIS);
+            }
+        }
+
+        /**
+         * Close all worker connections and reject further workers. Waits until the variants that were still being
+         * solved by a worker are returned to the pending ones, even if the current thread is interrupted.
+         */
+        private void closeConnections() {
+            List<Socket> toClose;
+            synchronized (this) {
+                closed = true;
+                toClose = new ArrayList<>(sockets);
+            }
+            // closing the sockets makes the connection threads return their variants via #failed.
+            toClose.forEach(DistributedSolver::closeQuietly);
+
+            boolean interrupted = Thread.interrupted();
+            synchronized (this) {
+                while (inFlight > 0) {
+                    try {
+                        wait(POLL_MILLIS);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Solve the variants that no worker solved in the current thread, unless the search is stopped.
+         */
+        private void solveRemainingLocally() {
+            List<List<Integer>> remaining;
+            synchronized (this) {
+                if (isStopped() || pending.isEmpty()) {
+                    return;
+                }
+                remaining = new ArrayList<>(pending);
+                pending.clear();
+            }
+            logger.info("Solving {} remaining cut variants locally", remaining.size());
+            for (List<Integer> variant : remaining) {
+                if (isStopped()) {
+                    break;
+                }
+                try {
+                    collect(solver.solveCutVariant(edgeImage, variant));
+                } catch (SolveCancelledException e) {
+                    logger.info("Solve was cancelled while inspecting variant ({}/{})", variant.get(0),
+                                    variant.get(1));
+                    break;
+                }
+            }
+        }
+
+        private synchronized Set<Assembly> getAssemblies() {
+            return new HashSet<>(assemblies);
+        }
+    }
+}
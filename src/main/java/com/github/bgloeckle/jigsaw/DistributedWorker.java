@@ -0,0 +1,115 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.AssemblyIo;
+import com.github.bgloeckle.jigsaw.image.BinaryImageIo;
+import com.github.bgloeckle.jigsaw.image.Image;
+
+/**
+ * Worker of a {@link DistributedSolver}: Connects to the coordinator, memory maps the edge image the coordinator wrote
+ * and solves the cut variants it is sent, until the coordinator tells it to stop.
+ *
+ * @author Bastian Gloeckle
+ */
+public class DistributedWorker {
+    private static final Logger logger = LoggerFactory.getLogger(DistributedWorker.class);
+
+    private String host;
+    private int port;
+
+    /**
+     * @param host
+     *            Host of the coordinator.
+     * @param port
+     *            Port the coordinator listens on.
+     */
+    public DistributedWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Solve cut variants until the coordinator tells the worker to stop or closes the connection.
+     *
+     * @throws IOException
+     *             If the coordinator cannot be reached or the edge image cannot be read.
+     */
+    public void run() throws IOException {
+        try (Socket socket = new Socket(host, port);
+                        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                        DataOutputStream out = new DataOutputStream(
+                                        new BufferedOutputStream(socket.getOutputStream()))) {
+            logger.info("Connected to coordinator at {}:{}", host, port);
+            File inputFile = new File(in.readUTF());
+            File edgeImageFile = new File(in.readUTF());
+            boolean rotationAware = in.readBoolean();
+            Long seed = in.readBoolean() ? in.readLong() : null;
+
+            Image edgeImage = new BinaryImageIo().mapImage(edgeImageFile);
+            // the output file is never written, results are sent to the coordinator.
+            JigsawSolver solver = new JigsawSolver(inputFile, null);
+            solver.setRotationAware(rotationAware);
+            if (seed != null) {
+                solver.setSeed(seed);
+            }
+            AssemblyIo assemblyIo = new AssemblyIo();
+
+            while (in.readByte() == DistributedSolver.MSG_VARIANT) {
+                List<Integer> variant = Arrays.asList(in.readInt(), in.readInt());
+                Set<Assembly> assemblies;
+                try {
+                    assemblies = solver.solveCutVariant(edgeImage, variant);
+                } catch (RuntimeException e) {
+                    logger.error("Could not solve variant {}", variant, e);
+                    out.writeInt(-1);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                    out.flush();
+                    continue;
+                }
+                out.writeInt(assemblies.size());
+                for (Assembly assembly : assemblies) {
+                    assemblyIo.writeAssembly(assembly, out);
+                }
+                out.flush();
+            }
+            logger.info("Coordinator has no more cut variants");
+        } catch (EOFException e) {
+            logger.info("Coordinator closed the connection");
+        }
+    }
+}
@@ -20,22 +20,27 @@
  */
 package com.github.bgloeckle.jigsaw;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.TileRaster;
 import com.github.bgloeckle.jigsaw.image.Image;
 import com.github.bgloeckle.jigsaw.util.EdgeDirection;
-import com.github.bgloeckle.jigsaw.util.Pair;
 
 /**
  * Judges a "edge image" in quality according to the edges shown.
  *
+ * <p>
+ * The edge pixels are read once into a primitive array, see {@link TileRaster#codes(Image)}. For {@link Assembly}s this
+ * copies the materialized pixels of each tile, instead of looking up the tile of each single pixel.
+ *
  * @author Bastian Gloeckle
  */
 public class FullJudge {
     private Image img;
     private Double result = null;
-    private Map<Pair<Integer, Integer>, Integer> edgeByPosition = new HashMap<>();
+    private int width;
+    private int height;
+    private byte[] codes;
+    private boolean[] onEdge;
     private int nextEdgeId = 0;
 
     public FullJudge(Image edgeImg) {
@@ -51,42 +56,52 @@ public class FullJudge {
         if (result != null) {
             return result;
         }
-        for (int x = 0; x < img.getWidth(); x++) {
-            for (int y = 0; y < img.getHeight(); y++) {
-                Pair<Integer, Integer> pos = new Pair<>(x, y);
-                if (edgeByPosition.containsKey(pos)) {
+        width = img.getWidth();
+        height = img.getHeight();
+        codes = TileRaster.codes(img);
+        onEdge = new boolean[codes.length];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int pos = x * height + y;
+                if (onEdge[pos]) {
                     continue;
                 }
 
-                if (img.getColor(x, y) != 0) {
+                if (codes[pos] != TileRaster.NO_EDGE) {
                     followEdge(x, y);
                 }
             }
         }
 
-        result = ((long) img.getHeight() * img.getWidth()) / ((double) nextEdgeId);
+        result = ((long) height * width) / ((double) nextEdgeId);
         return result;
     }
 
     private void followEdge(int x, int y) {
-        EdgeDirection direction = EdgeDirection.fromGradientRadian(img.getDirection(x, y));
-        int edgeId = nextEdgeId++;
+        byte code = codes[x * height + y];
+        EdgeDirection direction = TileRaster.direction(code);
+        nextEdgeId++;
+        if (direction == null) {
+            // an edge pixel without a direction cannot be followed.
+            onEdge[x * height + y] = true;
+            return;
+        }
 
         boolean jumped = false;
         int curY = y;
-        for (int curX = x; curX < img.getWidth() && curX >= 0;) {
-            if (curY >= img.getHeight() || curY < 0) {
+        for (int curX = x; curX < width && curX >= 0;) {
+            if (curY >= height || curY < 0) {
                 return;
             }
-            if (img.getColor(curX, curY) == 0) {
+            int pos = curX * height + curY;
+            if (codes[pos] == TileRaster.NO_EDGE) {
                 return;
             }
 
-            EdgeDirection curDirection = EdgeDirection.fromGradientRadian(img.getDirection(curX, curY));
-            if (direction.equals(curDirection)) {
+            if (codes[pos] == code) {
                 jumped = false;
 
-                edgeByPosition.put(new Pair<>(curX, curY), edgeId);
+                onEdge[pos] = true;
             } else {
                 if (jumped) {
                     // we jumped over a different edge already, do not jump again. Assume our edge is broken
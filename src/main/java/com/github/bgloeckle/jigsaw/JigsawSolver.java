@@ -24,14 +24,21 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -39,9 +46,19 @@ import org.slf4j.LoggerFactory;
 
 import com.github.bgloeckle.jigsaw.assembly.Assembly;
 import com.github.bgloeckle.jigsaw.assembly.jigsaw.AssemblyJigsaw;
+import com.github.bgloeckle.jigsaw.assembly.jigsaw.ColorCodingJigsawSolverStrategy;
+import com.github.bgloeckle.jigsaw.assembly.jigsaw.ConstraintPropagationJigsawSolverStrategy;
+import com.github.bgloeckle.jigsaw.assembly.jigsaw.EdgeBitIndex;
+import com.github.bgloeckle.jigsaw.assembly.jigsaw.GreedyJigsawSolverStrategy;
+import com.github.bgloeckle.jigsaw.assembly.jigsaw.JigsawSolverStrategy;
+import com.github.bgloeckle.jigsaw.assembly.jigsaw.SolutionListener;
+import com.github.bgloeckle.jigsaw.cache.EdgeImageCache;
 import com.github.bgloeckle.jigsaw.cutjudge.EdgeCutJudge;
+import com.github.bgloeckle.jigsaw.cutjudge.PeriodicityCutDetector;
 import com.github.bgloeckle.jigsaw.image.AwtImageIo;
 import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry.Stage;
 import com.github.bgloeckle.jigsaw.pipeline.Pipeline;
 import com.github.bgloeckle.jigsaw.steps.EdgeTrackingByDoubleThreshold;
 import com.github.bgloeckle.jigsaw.steps.GaussianBlur;
@@ -50,17 +67,35 @@ import com.github.bgloeckle.jigsaw.steps.SobelFilter;
 import com.github.bgloeckle.jigsaw.steps.ToSimpleLuminosityGreyscale;
 import com.github.bgloeckle.jigsaw.util.JigsawCollectors;
 import com.github.bgloeckle.jigsaw.util.Pair;
+import com.github.bgloeckle.jigsaw.util.RandomProvider;
+import com.github.bgloeckle.jigsaw.util.SolveCancelledException;
+import com.github.bgloeckle.jigsaw.util.SolveContext;
 import com.google.common.collect.Sets;
 
 public class JigsawSolver {
     private static final Logger logger = LoggerFactory.getLogger(JigsawSolver.class);
 
+    /**
+     * How the distances of the cuts are found in {@link JigsawSolver#findCutVariants(Image)}.
+     */
+    public static enum CutDetection {
+        /** Judge each possible cut position using an {@link EdgeCutJudge}. */
+        CUT_JUDGE,
+        /** Find the periodicity of the edges using {@link PeriodicityCutDetector}. */
+        PERIODICITY
+    }
+
     /** {@link Comparator} which compares by the Double, sorting highest first. */
     private static final Comparator<Pair<Integer, Double>> CUT_JUDGE_COMPARATOR_HIGHEST_FRONT = (l,
                     r) -> -l.getRight().compareTo(r.getRight());
     private static final double CUT_JUDGE_BATCH_PERCENT = .85;
     private static final double ASSEMBLY_STITCH_PERCENT = .85;
     private static final double MIN_NUMBER_OF_PIXELS_OF_TILES = 5.;
+    /**
+     * Stop inspecting further cut variants in {@link #solveCutVariants(Image, Set)} as soon as an assembly has a
+     * {@link FullJudge} judgement of at least this factor times the judgement of the input edge image.
+     */
+    private static final double CONFIDENT_ASSEMBLY_JUDGE_FACTOR = 1.2;
 
     /**
      * Use this many pixels before/after a cut position to also judge cuts at those positions. This is needed since the
@@ -68,37 +103,356 @@ public class JigsawSolver {
      */
     private static final int POSSIBLE_CUTS_HALO = 1;
 
+    /** Minimum time between two checkpoints that are written because a better assembly was found. */
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 10_000L;
+
     private File inputFile;
     private File outputFile;
+    private MetricsRegistry metrics;
+    private EdgeImageCache edgeImageCache;
+    private CutDetection cutDetection = CutDetection.CUT_JUDGE;
+    private boolean rotationAware = false;
+    private SolveContext context = new SolveContext();
+    private File checkpointFile = null;
+    private Long seed = null;
+    private RandomProvider randomProvider = RandomProvider.UNSEEDED;
+    /** Edge image that {@link #edgeBitIndex} and {@link #cutJudge} were built for, compared by identity. */
+    private Image indexedEdgeImage = null;
+    private EdgeBitIndex edgeBitIndex = null;
+    private CachingCutJudgeDecorator cutJudge = null;
+    /** Context that {@link #cutJudge} checks, it is rebuilt when {@link #context} changes. */
+    private SolveContext cutJudgeContext = null;
 
     public JigsawSolver(File inputFile, File outputFile) {
+        this(inputFile, outputFile, MetricsRegistry.NOOP, null);
+    }
+
+    /**
+     * @param metrics
+     *            Registry to record the resource usage of the single stages of {@link #solve()} in.
+     * @param edgeImageCache
+     *            Cache of edge images or <code>null</code> if the edge image should always be computed.
+     */
+    public JigsawSolver(File inputFile, File outputFile, MetricsRegistry metrics, EdgeImageCache edgeImageCache) {
         this.inputFile = inputFile;
         this.outputFile = outputFile;
+        this.metrics = metrics;
+        this.edgeImageCache = edgeImageCache;
+    }
+
+    /**
+     * @param cutDetection
+     *            How to find the distances of cuts, defaults to {@link CutDetection#CUT_JUDGE}.
+     */
+    public void setCutDetection(CutDetection cutDetection) {
+        this.cutDetection = cutDetection;
+    }
+
+    /**
+     * @param rotationAware
+     *            If <code>true</code>, tiles of the input image might be rotated, see
+     *            {@link AssemblyJigsaw#setRotationAware(boolean)}.
+     */
+    public void setRotationAware(boolean rotationAware) {
+        this.rotationAware = rotationAware;
+    }
+
+    /**
+     * @param context
+     *            Context to cancel the stages of this solver with. Defaults to a context without deadline, see
+     *            {@link #getSolveContext()}.
+     */
+    public void setSolveContext(SolveContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @param checkpointFile
+     *            File to regularly write the state of {@link #solveAnytime(long, double)} to, or <code>null</code>. If
+     *            the file exists already and belongs to the same input and options, the solve is resumed from it.
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * @param seed
+     *            Seed of all random numbers used while solving, so that run times and results are the same on each run
+     *            with the same seed. By default, random numbers differ between runs.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        randomProvider = RandomProvider.seeded(seed);
+    }
+
+    /**
+     * @return The seed set by {@link #setSeed(long)} or <code>null</code>.
+     */
+    /* package */ Long getSeed() {
+        return seed;
+    }
+
+    /* package */ boolean isRotationAware() {
+        return rotationAware;
+    }
+
+    /* package */ File getInputFile() {
+        return inputFile;
+    }
+
+    /* package */ File getOutputFile() {
+        return outputFile;
+    }
+
+    /* package */ MetricsRegistry getMetrics() {
+        return metrics;
     }
 
+    /**
+     * @return The context that can be used to cancel this solver from another thread.
+     */
+    public SolveContext getSolveContext() {
+        return context;
+    }
+
+    /**
+     * Solve the jigsaw and write all found assemblies to "[output file]-[n].png".
+     *
+     * <p>
+     * If the {@link SolveContext} is cancelled while solving the cut variants, the assemblies found up until then are
+     * written. If it is cancelled in an earlier stage, nothing is written.
+     */
     public void solve() {
+        try (Stage solveStage = metrics.startStage("solve")) {
+            Image inputImage = loadInput();
+            Image inputEdgeImage = detectEdges(inputImage);
+            Set<List<Integer>> cutVariants = findCutVariants(inputEdgeImage);
+            Set<Assembly> assemblies = solveCutVariants(inputEdgeImage, cutVariants);
+            writeResults(inputImage, assemblies);
+        } catch (SolveCancelledException e) {
+            logger.info("Solve was cancelled before any assembly was found");
+        }
+    }
+
+    /**
+     * Solve the jigsaw, but write the best assembly found so far to "[output file]-best.png" as soon as it is found
+     * and stop after the given time budget or as soon as an assembly is good enough.
+     *
+     * <p>
+     * First all cut variants are solved using the fast {@link GreedyJigsawSolverStrategy}, then using the exhaustive
+     * {@link ConstraintPropagationJigsawSolverStrategy} and {@link ColorCodingJigsawSolverStrategy}. Assemblies are
+     * compared using the {@link FullJudge} of their edge image.
+     *
+     * <p>
+     * The time budget applies to all stages: If it runs out (or the {@link SolveContext} is cancelled) before any
+     * assembly was found, <code>null</code> is returned.
+     *
+     * <p>
+     * If a checkpoint file is set, the searched cut variants and the best assembly are written to it after each cut
+     * variant and at most every {@link #CHECKPOINT_INTERVAL_MILLIS} when a better assembly is found. When resuming,
+     * cut variants that were searched completely are skipped and the search starts with the best assembly of the
+     * checkpoint, the time budget starts anew.
+     *
+     * @param timeBudgetMillis
+     *            Stop searching for better assemblies after this time, {@link Long#MAX_VALUE} for no time limit.
+     * @param minQualityFactor
+     *            Stop searching as soon as the judgement of an assembly is at least this factor times the judgement of
+     *            the input edge image. {@link Double#POSITIVE_INFINITY} to only respect the time budget.
+     * @return The best assembly of the input edge image or <code>null</code> if none was found.
+     */
+    public Assembly solveAnytime(long timeBudgetMillis, double minQualityFactor) {
+        boolean hasDeadline = timeBudgetMillis != Long.MAX_VALUE;
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        // all stages use the context that includes the deadline.
+        SolveContext outerContext = context;
+        if (hasDeadline) {
+            context = outerContext.withDeadline(deadlineNanos);
+        }
+        Checkpoint checkpoint = loadCheckpoint();
+        BestAssemblyTracker tracker = null;
+        try (Stage solveStage = metrics.startStage("solve")) {
+            Image inputImage = loadInput();
+            Image inputEdgeImage = detectEdges(inputImage);
+            double inputEdgeImageJudgement = judgeEdgeImage(inputEdgeImage);
+            Set<List<Integer>> cutVariants = findCutVariants(inputEdgeImage);
+
+            String bestFileName = outputFile.getAbsolutePath() + "-best.png";
+            Consumer<Assembly> writeBest = assembly -> {
+                logger.info("Writing result file '{}'", bestFileName);
+                new AwtImageIo().writeImage(new Assembly(inputImage, assembly), BufferedImage.TYPE_INT_RGB,
+                                bestFileName);
+                checkpoint.setBest(assembly);
+                writeCheckpoint(checkpoint, TimeUnit.MILLISECONDS.toNanos(CHECKPOINT_INTERVAL_MILLIS));
+            };
+            double minJudgement = minQualityFactor * inputEdgeImageJudgement;
+            tracker = new BestAssemblyTracker(context, minJudgement, writeBest);
+            Assembly checkpointBest = checkpoint.getBest(inputEdgeImage);
+            if (checkpointBest != null) {
+                logger.info("Resuming with the best assembly of the checkpoint");
+                tracker.solutionFound(checkpointBest);
+            }
+
+            List<Function<RandomProvider, JigsawSolverStrategy>> strategies = Arrays.asList(
+                            random -> new GreedyJigsawSolverStrategy(),
+                            random -> new ConstraintPropagationJigsawSolverStrategy(),
+                            random -> new ColorCodingJigsawSolverStrategy(Integer.MAX_VALUE, random));
+            for (Function<RandomProvider, JigsawSolverStrategy> strategyFactory : strategies) {
+                for (List<Integer> variant : cutVariants) {
+                    if (tracker.isDone()) {
+                        logger.info("Stopping search, best assembly has judgement {}", tracker.getBestJudgement());
+                        return tracker.getBest();
+                    }
+                    JigsawSolverStrategy strategy = strategyFactory
+                                    .apply(randomProvider.derive(variantRandomName(variant)));
+                    String variantName = "variant-" + variant.get(0) + "x" + variant.get(1) + "-"
+                                    + strategy.getClass().getSimpleName();
+                    if (checkpoint.isDone(variantName)) {
+                        logger.info("Skipping {}, it was searched completely before the checkpoint", variantName);
+                        continue;
+                    }
+                    logger.info("Inspecting variant to cut image every ({}/{}) using {}", variant.get(0),
+                                    variant.get(1), strategy.getClass().getSimpleName());
+                    try (Stage stage = metrics.startStage(variantName)) {
+                        createAssemblyJigsaw(inputEdgeImage, variant, strategy)
+                                        .findBestAssemblies(ASSEMBLY_STITCH_PERCENT, metrics.scope(variantName),
+                                                        tracker);
+                    }
+                    if (!tracker.isDone()) {
+                        // the strategy was not stopped early, so the variant does not need to be searched again.
+                        checkpoint.markDone(variantName);
+                        writeCheckpoint(checkpoint, 0L);
+                    }
+                }
+            }
+            logger.info("Searched all variants, best assembly has judgement {}", tracker.getBestJudgement());
+            return tracker.getBest();
+        } catch (SolveCancelledException e) {
+            if (tracker == null) {
+                logger.info("Solve was cancelled before any assembly was found");
+                return null;
+            }
+            logger.info("Solve was cancelled, best assembly has judgement {}", tracker.getBestJudgement());
+            return tracker.getBest();
+        } finally {
+            context = outerContext;
+            writeCheckpoint(checkpoint, 0L);
+        }
+    }
+
+    /**
+     * @return Description of all options that influence the result of a solve, including the seed, which is part of the
+     *         fingerprint of a checkpoint.
+     */
+    /* package */ String describeOptions() {
+        return createEdgeDetectionPipeline(randomProvider.derive("edgeDetection")).getDescription() + ","
+                        + cutDetection + "," + rotationAware + ",seed=" + ((seed != null) ? seed : "unseeded");
+    }
+
+    /**
+     * @return The checkpoint read from the checkpoint file or a new one, if there is no valid checkpoint file.
+     */
+    private Checkpoint loadCheckpoint() {
+        byte[] fingerprint;
+        try {
+            fingerprint = Checkpoint.fingerprint(inputFile, describeOptions());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read input file", e);
+        }
+        if (checkpointFile != null && checkpointFile.isFile()) {
+            try {
+                Checkpoint res = Checkpoint.read(checkpointFile, fingerprint);
+                if (res != null) {
+                    logger.info("Resuming from checkpoint file '{}'", checkpointFile);
+                    return res;
+                }
+                logger.warn("Checkpoint file '{}' belongs to a different input or options, starting anew.",
+                                checkpointFile);
+            } catch (IOException e) {
+                logger.warn("Could not read checkpoint file '{}', starting anew.", checkpointFile, e);
+            }
+        }
+        return new Checkpoint(fingerprint);
+    }
+
+    private void writeCheckpoint(Checkpoint checkpoint, long minIntervalNanos) {
+        if (checkpointFile == null) {
+            return;
+        }
+        try {
+            checkpoint.write(checkpointFile, minIntervalNanos);
+        } catch (IOException e) {
+            logger.warn("Could not write checkpoint file '{}'", checkpointFile, e);
+        }
+    }
+
+    /**
+     * First stage of {@link #solve()}: Load the input image.
+     */
+    public Image loadInput() {
         logger.info("Working on file '{}'", inputFile.getAbsolutePath());
-        Image inputImage;
-        try (FileInputStream fis = new FileInputStream(inputFile)) {
-            inputImage = new AwtImageIo().loadImage(fis);
+        try (Stage stage = metrics.startStage("load"); FileInputStream fis = new FileInputStream(inputFile)) {
+            Image res = new AwtImageIo().loadImage(fis);
+            if (res == null) {
+                throw new RuntimeException("Input file is no valid image");
+            }
+            return res;
         } catch (IOException | RuntimeException e) {
             throw new RuntimeException("Could not load input file", e);
         }
+    }
 
+    /**
+     * Second stage of {@link #solve()}: Identify the edges in the input image.
+     */
+    public Image detectEdges(Image inputImage) {
         logger.info("Identifying edges in input image using Canny algorithm...");
-        Image inputEdgeImage = new Pipeline(new ToSimpleLuminosityGreyscale(), new GaussianBlur(3), new SobelFilter(),
-                        new NonMaximumSuppression(), new EdgeTrackingByDoubleThreshold(.4, .85)).process(inputImage);
-        double inputEdgeImageJudgement = new FullJudge(inputEdgeImage).judge();
-        logger.info("Input image has a full judgement of: {}", inputEdgeImageJudgement);
+        try (Stage stage = metrics.startStage("edgeDetection")) {
+            Pipeline pipeline = createEdgeDetectionPipeline(randomProvider.derive("edgeDetection"));
+            Supplier<Image> computeFn = () -> pipeline.process(inputImage, metrics.scope("edgeDetection"), context);
+            if (edgeImageCache != null) {
+                return edgeImageCache.getOrCompute(inputFile, pipeline, computeFn);
+            }
+            return computeFn.get();
+        }
+    }
 
-        // Find and judge all the possible cut locations (judgement based on edge image).
-        CachingCutJudgeDecorator cutJudge = new CachingCutJudgeDecorator(new EdgeCutJudge(inputEdgeImage),
-                        inputEdgeImage.getWidth(), inputEdgeImage.getHeight());
+    /**
+     * Judge how well the edges of the given edge image are connected, see {@link FullJudge}.
+     */
+    public double judgeEdgeImage(Image edgeImage) {
+        double res;
+        try (Stage stage = metrics.startStage("fullJudge")) {
+            res = new FullJudge(edgeImage).judge();
+        }
+        logger.info("Input image has a full judgement of: {}", res);
+        return res;
+    }
 
-        NavigableSet<Pair<Integer, Double>> possibleCutsX = findPossibleCutsAndJudgeThem(inputImage,
-                        inputImage.getWidth(), cutJudge::judgeVerticalEvery);
-        NavigableSet<Pair<Integer, Double>> possibleCutsY = findPossibleCutsAndJudgeThem(inputImage,
-                        inputImage.getHeight(), cutJudge::judgeHorizontalEvery);
+    /**
+     * Third stage of {@link #solve()}: Find the combinations of x and y distances of cuts that are likely to have been
+     * used to cut the original image into tiles.
+     *
+     * @return Set of lists, each containing two elements: distance of cuts in x and in y direction. Iterates the most
+     *         plausible variants first.
+     */
+    public Set<List<Integer>> findCutVariants(Image inputEdgeImage) {
+        // Find and judge all the possible cut locations (judgement based on edge image).
+        CachingCutJudgeDecorator cutJudge = getCutJudge(inputEdgeImage);
+        NavigableSet<Pair<Integer, Double>> possibleCutsX;
+        NavigableSet<Pair<Integer, Double>> possibleCutsY;
+        try (Stage stage = metrics.startStage("cutJudging")) {
+            if (cutDetection == CutDetection.PERIODICITY) {
+                PeriodicityCutDetector detector = new PeriodicityCutDetector(inputEdgeImage);
+                int minDistance = (int) Math.ceil(MIN_NUMBER_OF_PIXELS_OF_TILES);
+                possibleCutsX = detector.findVerticalCutDistances(minDistance);
+                possibleCutsY = detector.findHorizontalCutDistances(minDistance);
+            } else {
+                possibleCutsX = findPossibleCutsAndJudgeThem(inputEdgeImage, inputEdgeImage.getWidth(),
+                                cutJudge::judgeVerticalEvery);
+                possibleCutsY = findPossibleCutsAndJudgeThem(inputEdgeImage, inputEdgeImage.getHeight(),
+                                cutJudge::judgeHorizontalEvery);
+            }
+        }
 
         logger.debug("Possible vertical cuts with x value and their judgement: {}", possibleCutsX);
         logger.debug("Possible horizontal cuts with y value and their judgement: {}", possibleCutsY);
@@ -139,23 +493,222 @@ public class JigsawSolver {
         Set<List<Integer>> allCutVariants = Sets.cartesianProduct(cutsToInspectX, cutsToInspectY);
         // allCutVariants = new HashSet<>(Arrays.asList(new ArrayList<>(Arrays.asList(200, 195))));
 
+        Map<Integer, Double> judgementsX = possibleCutsX.stream()
+                        .collect(Collectors.toMap(p -> p.getLeft(), p -> p.getRight()));
+        Map<Integer, Double> judgementsY = possibleCutsY.stream()
+                        .collect(Collectors.toMap(p -> p.getLeft(), p -> p.getRight()));
+        try (Stage stage = metrics.startStage("cutVariantRanking")) {
+            return rankCutVariants(inputEdgeImage, allCutVariants, judgementsX, judgementsY);
+        }
+    }
+
+    /**
+     * Order the cut variants by how plausible they are. This is judged by the cut judgements of the x and y cuts and
+     * by {@link AssemblyJigsaw#judgeGraphPlausibility(SolveContext)}, which both are cheap compared to actually solving
+     * a variant.
+     */
+    private Set<List<Integer>> rankCutVariants(Image inputEdgeImage, Set<List<Integer>> allCutVariants,
+                    Map<Integer, Double> judgementsX, Map<Integer, Double> judgementsY) {
+        List<Pair<List<Integer>, Double>> rankedVariants = new ArrayList<>();
+        for (List<Integer> variant : allCutVariants) {
+            context.checkCancelled();
+            // cut judgements are in [-1, 1], normalize their sum to [0, 1].
+            double cutScore = (judgementsX.get(variant.get(0)) + judgementsY.get(variant.get(1)) + 2.) / 4.;
+            double graphScore = createAssemblyJigsaw(inputEdgeImage, variant, new ColorCodingJigsawSolverStrategy())
+                            .judgeGraphPlausibility(context);
+            rankedVariants.add(new Pair<>(variant, cutScore * graphScore));
+        }
+        rankedVariants.sort((l, r) -> -l.getRight().compareTo(r.getRight()));
+        logger.info("Ranked cut variants with their plausibility: {}", rankedVariants);
+
+        return rankedVariants.stream().map(p -> p.getLeft()).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Fourth stage of {@link #solve()}: Find the best assemblies for each of the given cut variants.
+     *
+     * <p>
+     * The variants are inspected in iteration order. As soon as an assembly is found that has a considerably better
+     * {@link FullJudge} judgement than the input edge image, the remaining variants are skipped. If the
+     * {@link SolveContext} is cancelled, the assemblies found so far are returned.
+     */
+    public Set<Assembly> solveCutVariants(Image inputEdgeImage, Set<List<Integer>> allCutVariants) {
         Set<Assembly> allAssemblies = new HashSet<>();
+        BestAssemblyTracker tracker = createConfidenceTracker(inputEdgeImage);
 
         for (List<Integer> variant : allCutVariants) {
-            int cutEveryX = variant.get(0);
-            int cutEveryY = variant.get(1);
-            logger.info("Inspecting variant to cut image every ({}/{})", cutEveryX, cutEveryY);
-            AssemblyJigsaw assemblyJigsaw = new AssemblyJigsaw(inputEdgeImage, cutEveryX, cutEveryY);
-            allAssemblies.addAll(assemblyJigsaw.findBestAssemblies(ASSEMBLY_STITCH_PERCENT));
+            if (tracker.isDone()) {
+                logger.info("Found assembly with judgement {}, skipping remaining cut variants",
+                                tracker.getBestJudgement());
+                break;
+            }
+            if (context.isCancelled()) {
+                logger.info("Solve was cancelled, skipping remaining cut variants");
+                break;
+            }
+            try {
+                Set<Assembly> assemblies = solveCutVariant(inputEdgeImage, variant);
+                allAssemblies.addAll(assemblies);
+                assemblies.forEach(tracker::solutionFound);
+            } catch (SolveCancelledException e) {
+                logger.info("Solve was cancelled while inspecting variant ({}/{})", variant.get(0), variant.get(1));
+                break;
+            }
         }
 
-        int nextFileId = 0;
-        for (Assembly a : allAssemblies) {
-            String outFileName = outputFile.getAbsolutePath() + "-" + nextFileId + ".png";
-            logger.info("Writing result file '{}'", outFileName);
-            new AwtImageIo().writeImage(new Assembly(inputImage, a), BufferedImage.TYPE_INT_RGB, outFileName);
-            nextFileId++;
+        return allAssemblies;
+    }
+
+    /**
+     * Find the assemblies of a single cut variant, see {@link #solveCutVariants(Image, Set)}.
+     *
+     * @return The assemblies found, never <code>null</code>.
+     * @throws SolveCancelledException
+     *             If the {@link SolveContext} was cancelled before the strategy started.
+     */
+    /* package */ Set<Assembly> solveCutVariant(Image inputEdgeImage, List<Integer> variant)
+                    throws SolveCancelledException {
+        int cutEveryX = variant.get(0);
+        int cutEveryY = variant.get(1);
+        logger.info("Inspecting variant to cut image every ({}/{})", cutEveryX, cutEveryY);
+        String variantName = "variant-" + cutEveryX + "x" + cutEveryY;
+        try (Stage stage = metrics.startStage(variantName)) {
+            AssemblyJigsaw assemblyJigsaw = createAssemblyJigsaw(inputEdgeImage, variant,
+                            new ColorCodingJigsawSolverStrategy(Integer.MAX_VALUE,
+                                            randomProvider.derive(variantRandomName(variant))));
+            Set<Assembly> assemblies = assemblyJigsaw.findBestAssemblies(ASSEMBLY_STITCH_PERCENT,
+                            metrics.scope(variantName), SolutionListener.cancelledBy(context));
+            return (assemblies != null) ? assemblies : new HashSet<>();
+        }
+    }
+
+    /**
+     * @return A tracker that is done as soon as an assembly is found that has a considerably better {@link FullJudge}
+     *         judgement than the given input edge image, see {@link #solveCutVariants(Image, Set)}.
+     */
+    /* package */ BestAssemblyTracker createConfidenceTracker(Image inputEdgeImage) {
+        double confidentJudgement = CONFIDENT_ASSEMBLY_JUDGE_FACTOR * judgeEdgeImage(inputEdgeImage);
+        return new BestAssemblyTracker(confidentJudgement, a -> {
+        });
+    }
+
+    /**
+     * Last stage of {@link #solve()}: Write the given assemblies of the input image to the output files.
+     */
+    public void writeResults(Image inputImage, Set<Assembly> allAssemblies) {
+        try (Stage stage = metrics.startStage("write")) {
+            int nextFileId = 0;
+            for (Assembly a : allAssemblies) {
+                String outFileName = outputFile.getAbsolutePath() + "-" + nextFileId + ".png";
+                logger.info("Writing result file '{}'", outFileName);
+                new AwtImageIo().writeImage(new Assembly(inputImage, a), BufferedImage.TYPE_INT_RGB, outFileName);
+                nextFileId++;
+            }
+        }
+    }
+
+    /**
+     * @return The {@link Pipeline} which identifies the edges in an input image using the Canny algorithm.
+     */
+    public static Pipeline createEdgeDetectionPipeline() {
+        return createEdgeDetectionPipeline(RandomProvider.UNSEEDED);
+    }
+
+    /**
+     * Same as {@link #createEdgeDetectionPipeline()}, but uses the given provider where the steps sample pixels.
+     */
+    public static Pipeline createEdgeDetectionPipeline(RandomProvider randomProvider) {
+        return new Pipeline(new ToSimpleLuminosityGreyscale(), new GaussianBlur(3), new SobelFilter(),
+                        new NonMaximumSuppression(), new EdgeTrackingByDoubleThreshold(.4, .85, randomProvider));
+    }
+
+    /**
+     * @return Name of the random numbers of a cut variant, the same for all strategies, processes and runs.
+     */
+    private String variantRandomName(List<Integer> variant) {
+        return "variant-" + variant.get(0) + "x" + variant.get(1);
+    }
+
+    /**
+     * @return The cut judge of the given edge image. It is built once per edge image and context, so all stages and
+     *         cut variants share its cached judgements.
+     */
+    /* package */ synchronized CachingCutJudgeDecorator getCutJudge(Image inputEdgeImage) {
+        indexEdgeImage(inputEdgeImage);
+        if (cutJudge == null || cutJudgeContext != context) {
+            cutJudge = new CachingCutJudgeDecorator(new EdgeCutJudge(inputEdgeImage), inputEdgeImage.getWidth(),
+                            inputEdgeImage.getHeight(), context);
+            cutJudgeContext = context;
+        }
+        return cutJudge;
+    }
+
+    /**
+     * @return The {@link EdgeBitIndex} of the given edge image, built once per edge image and shared by all variants.
+     */
+    /* package */ synchronized EdgeBitIndex getEdgeBitIndex(Image inputEdgeImage) {
+        indexEdgeImage(inputEdgeImage);
+        if (edgeBitIndex == null) {
+            edgeBitIndex = new EdgeBitIndex(inputEdgeImage);
+        }
+        return edgeBitIndex;
+    }
+
+    /**
+     * Drop the indexes of the previous edge image if the given one is a different instance.
+     */
+    private void indexEdgeImage(Image inputEdgeImage) {
+        if (indexedEdgeImage != inputEdgeImage) {
+            indexedEdgeImage = inputEdgeImage;
+            edgeBitIndex = null;
+            cutJudge = null;
+        }
+    }
+
+    /**
+     * Create the {@link AssemblyJigsaw} of a cut variant. The positions of the single cuts are found using
+     * {@link #findCutPositions(int, int, Function)}, so the tiles might have slightly different sizes. The
+     * {@link EdgeBitIndex} of the image is shared by all variants.
+     */
+    private AssemblyJigsaw createAssemblyJigsaw(Image inputEdgeImage, List<Integer> variant,
+                    JigsawSolverStrategy strategy) {
+        CachingCutJudgeDecorator cutJudge = getCutJudge(inputEdgeImage);
+        int[] cutsX = findCutPositions(variant.get(0), inputEdgeImage.getWidth(), cutJudge::judgeVertical);
+        int[] cutsY = findCutPositions(variant.get(1), inputEdgeImage.getHeight(), cutJudge::judgeHorizontal);
+        logger.debug("Cut positions for variant ({}/{}): x={}, y={}", variant.get(0), variant.get(1),
+                        Arrays.toString(cutsX), Arrays.toString(cutsY));
+        AssemblyJigsaw res = new AssemblyJigsaw(inputEdgeImage, cutsX, cutsY, strategy,
+                        getEdgeBitIndex(inputEdgeImage));
+        res.setRotationAware(rotationAware);
+        return res;
+    }
+
+    /**
+     * Find the positions of all cuts in one dimension, given the approximate distance of the cuts. Each cut is expected
+     * one distance after the previous one, but is placed at the position in the {@link #POSSIBLE_CUTS_HALO} around that
+     * which has the best judgement. This way one cut variant covers cuts that are not exactly equidistant.
+     */
+    private int[] findCutPositions(int distance, int dimensionMax, Function<Integer, Double> judgeFn) {
+        List<Integer> res = new ArrayList<>();
+        int prev = 0;
+        for (int expected = distance; expected < dimensionMax; expected = prev + distance) {
+            int best = expected;
+            double bestJudgement = judgeFn.apply(expected);
+            for (int delta = -POSSIBLE_CUTS_HALO; delta <= POSSIBLE_CUTS_HALO; delta++) {
+                int candidate = expected + delta;
+                if (delta == 0 || candidate <= prev || candidate >= dimensionMax) {
+                    continue;
+                }
+                double judgement = judgeFn.apply(candidate);
+                if (judgement > bestJudgement) {
+                    best = candidate;
+                    bestJudgement = judgement;
+                }
+            }
+            res.add(best);
+            prev = best;
         }
+        return res.stream().mapToInt(Integer::intValue).toArray();
     }
 
     private NavigableSet<Pair<Integer, Double>> findPossibleCutsAndJudgeThem(Image inputImage, int dimensionMax,
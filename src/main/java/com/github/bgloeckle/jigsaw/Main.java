@@ -21,26 +21,283 @@
 package com.github.bgloeckle.jigsaw;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.github.bgloeckle.jigsaw.cache.EdgeImageCache;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry;
+import com.github.bgloeckle.jigsaw.server.SolveServer;
+import com.github.bgloeckle.jigsaw.util.Pair;
 
 public class Main {
+    private static final String METRICS_OPTION = "--metrics";
+    private static final String CACHE_OPTION = "--cache";
+    private static final String BATCH_OPTION = "--batch";
+    private static final String SERVER_OPTION = "--server";
+    private static final String TIME_BUDGET_OPTION = "--time-budget";
+    private static final String MIN_QUALITY_OPTION = "--min-quality";
+    private static final String PERIODICITY_OPTION = "--periodicity";
+    private static final String ROTATIONS_OPTION = "--rotations";
+    private static final String RESUME_OPTION = "--resume";
+    private static final String WORKERS_OPTION = "--workers";
+    private static final String COORDINATOR_PORT_OPTION = "--coordinator-port";
+    private static final String SEED_OPTION = "--seed";
+    private static final String THREADS_OPTION = "--threads";
+    private static final String BIND_OPTION = "--bind";
+    /* package */ static final String WORKER_OPTION = "--worker";
+    /** Number of stages of {@link BatchSolver} that have their own threads. */
+    private static final int BATCH_STAGE_COUNT = 4;
+    private static final int SERVER_CONCURRENCY = 1;
+    private static final int SERVER_QUEUE_CAPACITY = 16;
+
     public static void main(String[] args) {
-        if (args.length != 2 || args[0].equals("--help")) {
+        List<String> remainingArgs = new ArrayList<>(Arrays.asList(args));
+        String metricsFileName = extractOption(remainingArgs, METRICS_OPTION);
+        File metricsFile = (metricsFileName != null) ? new File(metricsFileName) : null;
+        String cacheDirName = extractOption(remainingArgs, CACHE_OPTION);
+        EdgeImageCache edgeImageCache = (cacheDirName != null) ? new EdgeImageCache(new File(cacheDirName)) : null;
+
+        String timeBudget = extractOption(remainingArgs, TIME_BUDGET_OPTION);
+        String minQuality = extractOption(remainingArgs, MIN_QUALITY_OPTION);
+        String checkpointFileName = extractOption(remainingArgs, RESUME_OPTION);
+        boolean periodicity = remainingArgs.remove(PERIODICITY_OPTION);
+        boolean rotations = remainingArgs.remove(ROTATIONS_OPTION);
+        boolean batch = remainingArgs.remove(BATCH_OPTION);
+        boolean server = remainingArgs.remove(SERVER_OPTION);
+        String workers = extractOption(remainingArgs, WORKERS_OPTION);
+        String coordinatorPort = extractOption(remainingArgs, COORDINATOR_PORT_OPTION);
+        String coordinator = extractOption(remainingArgs, WORKER_OPTION);
+        String seedString = extractOption(remainingArgs, SEED_OPTION);
+        String threads = extractOption(remainingArgs, THREADS_OPTION);
+        String bindAddress = extractOption(remainingArgs, BIND_OPTION);
+
+        if (coordinator != null && remainingArgs.isEmpty()) {
+            runWorker(coordinator);
+            return;
+        }
+
+        if (remainingArgs.size() != 2 || remainingArgs.get(0).equals("--help")) {
             displayHelp();
             return;
         }
-        File inputFile = new File(args[0]);
-        if (!inputFile.isFile() || !inputFile.exists()) {
-            System.err.println("'" + args[0] + "' is no file or does not exist.");
+
+        Long seed;
+        int threadsPerStage;
+        try {
+            seed = (seedString != null) ? Long.parseLong(seedString) : null;
+            threadsPerStage = (threads != null) ? Integer.parseInt(threads)
+                            : Math.max(1, Runtime.getRuntime().availableProcessors() / BATCH_STAGE_COUNT);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            return;
+        }
+        Consumer<JigsawSolver> solverConfigurer = solver -> {
+            if (periodicity) {
+                solver.setCutDetection(JigsawSolver.CutDetection.PERIODICITY);
+            }
+            solver.setRotationAware(rotations);
+            if (seed != null) {
+                solver.setSeed(seed);
+            }
+        };
+
+        if (batch || server) {
+            // these options only apply to solving a single jigsaw.
+            for (String option : Arrays.asList(TIME_BUDGET_OPTION, MIN_QUALITY_OPTION, RESUME_OPTION,
+                            WORKERS_OPTION, COORDINATOR_PORT_OPTION)) {
+                if (Arrays.asList(args).contains(option)) {
+                    System.err.println("'" + option + "' cannot be used with '" + (batch ? BATCH_OPTION : SERVER_OPTION)
+                                    + "'.");
+                    return;
+                }
+            }
+        }
+
+        MetricsRegistry metrics = (metricsFile != null) ? new MetricsRegistry() : MetricsRegistry.NOOP;
+        if (server) {
+            startServer(bindAddress, remainingArgs.get(0), new File(remainingArgs.get(1)), metrics, metricsFile,
+                            edgeImageCache, solverConfigurer);
+            return;
+        }
+
+        File inputFile = new File(remainingArgs.get(0));
+        if (!inputFile.exists() || (!batch && !inputFile.isFile())) {
+            System.err.println("'" + remainingArgs.get(0) + "' is no file or does not exist.");
             return;
         }
 
-        File outputFile = new File(args[1]);
+        File outputFile = new File(remainingArgs.get(1));
 
-        new JigsawSolver(inputFile, outputFile).solve();
+        try {
+            if (batch) {
+                List<Pair<File, File>> inputOutputFiles;
+                try {
+                    outputFile.mkdirs();
+                    inputOutputFiles = BatchSolver.findInputOutputFiles(inputFile, outputFile);
+                } catch (IOException e) {
+                    System.err.println("Could not read '" + inputFile + "': " + e.getMessage());
+                    return;
+                }
+                BatchSolver batchSolver = new BatchSolver(inputOutputFiles, metrics, edgeImageCache,
+                                threadsPerStage);
+                batchSolver.setSolverConfigurer(solverConfigurer);
+                int failed = batchSolver.solveAll();
+                if (failed > 0) {
+                    System.err.println(failed + " of " + inputOutputFiles.size() + " jigsaws failed.");
+                }
+                return;
+            }
+
+            JigsawSolver solver = new JigsawSolver(inputFile, outputFile, metrics, edgeImageCache);
+            solverConfigurer.accept(solver);
+            if (checkpointFileName != null) {
+                solver.setCheckpointFile(new File(checkpointFileName));
+            }
+            if (workers != null || coordinatorPort != null) {
+                int workerCount;
+                int port;
+                InetAddress address;
+                try {
+                    workerCount = (workers != null) ? Integer.parseInt(workers) : 0;
+                    port = (coordinatorPort != null) ? Integer.parseInt(coordinatorPort) : 0;
+                    address = (bindAddress != null) ? InetAddress.getByName(bindAddress)
+                                    : InetAddress.getLoopbackAddress();
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid number: " + e.getMessage());
+                    return;
+                } catch (UnknownHostException e) {
+                    System.err.println("Invalid address: " + e.getMessage());
+                    return;
+                }
+                new DistributedSolver(solver, workerCount, address, port).solve();
+            } else if (timeBudget != null || minQuality != null || checkpointFileName != null) {
+                long timeBudgetMillis;
+                double minQualityFactor;
+                try {
+                    timeBudgetMillis = (timeBudget != null) ? (long) (Double.parseDouble(timeBudget) * 1000)
+                                    : Long.MAX_VALUE;
+                    minQualityFactor = (minQuality != null) ? Double.parseDouble(minQuality)
+                                    : Double.POSITIVE_INFINITY;
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid number: " + e.getMessage());
+                    return;
+                }
+                solver.solveAnytime(timeBudgetMillis, minQualityFactor);
+            } else {
+                solver.solve();
+            }
+        } finally {
+            writeMetrics(metrics, metricsFile);
+        }
+    }
+
+    /**
+     * @param bindAddress
+     *            Address to listen on or <code>null</code> to only listen on the loopback interface.
+     */
+    private static void startServer(String bindAddress, String port, File workDir, MetricsRegistry metrics,
+                    File metricsFile, EdgeImageCache edgeImageCache, Consumer<JigsawSolver> solverConfigurer) {
+        SolveServer solveServer;
+        try {
+            InetAddress address = (bindAddress != null) ? InetAddress.getByName(bindAddress)
+                            : InetAddress.getLoopbackAddress();
+            solveServer = new SolveServer(address, Integer.parseInt(port), workDir, SERVER_CONCURRENCY,
+                            SERVER_QUEUE_CAPACITY, metrics, edgeImageCache);
+        } catch (NumberFormatException | IOException e) {
+            System.err.println("Could not start server on port '" + port + "': " + e.getMessage());
+            return;
+        }
+        solveServer.setSolverConfigurer(solverConfigurer);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            solveServer.stop();
+            writeMetrics(metrics, metricsFile);
+        }));
+        // the server keeps the JVM running.
+        solveServer.start();
+    }
+
+    private static void runWorker(String coordinator) {
+        int colonIdx = coordinator.lastIndexOf(':');
+        try {
+            new DistributedWorker(coordinator.substring(0, colonIdx),
+                            Integer.parseInt(coordinator.substring(colonIdx + 1))).run();
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            System.err.println("Invalid coordinator '" + coordinator + "', expected [host]:[port].");
+        } catch (IOException e) {
+            System.err.println("Worker failed: " + e.getMessage());
+        }
+    }
+
+    private static void writeMetrics(MetricsRegistry metrics, File metricsFile) {
+        if (metricsFile != null) {
+            try {
+                metrics.writeJson(metricsFile);
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to '" + metricsFile + "': " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remove an option and its value from the given arguments.
+     *
+     * @return The value of the option or <code>null</code> if the option was not present.
+     */
+    private static String extractOption(List<String> args, String option) {
+        int idx = args.indexOf(option);
+        if (idx == -1 || idx + 1 >= args.size()) {
+            return null;
+        }
+        String res = args.get(idx + 1);
+        args.subList(idx, idx + 2).clear();
+        return res;
     }
 
     private static void displayHelp() {
         System.out.println("Solve picture jigsaws.");
-        System.out.println("Parameters: [source image].png [destination image].png");
+        System.out.println("Parameters: [--metrics [metrics file].json] [--cache [cache dir]] "
+                        + "[--time-budget [seconds]] [--min-quality [factor]] [--resume [checkpoint file]] "
+                        + "[--workers [n]] [--coordinator-port [port]] [--bind [address]] [--periodicity] "
+                        + "[--rotations] [--seed [n]] [source image].png [destination image].png");
+        System.out.println("        or: [--metrics [metrics file].json] [--cache [cache dir]] [--periodicity] "
+                        + "[--rotations] [--seed [n]] [--threads [n]] --batch [source dir or manifest] "
+                        + "[destination dir]");
+        System.out.println("        or: [--metrics [metrics file].json] [--cache [cache dir]] [--periodicity] "
+                        + "[--rotations] [--seed [n]] [--bind [address]] --server [port] [work dir]");
+        System.out.println("        or: --worker [host]:[port]");
+        System.out.println();
+        System.out.println("  --metrics: Write wall time, CPU time and allocated bytes of each stage to a JSON file.");
+        System.out.println("  --cache: Directory in which edge images are cached, so re-solving the same input image "
+                        + "skips edge detection.");
+        System.out.println("  --time-budget: Stop after this many seconds, writing the best result found so far to "
+                        + "[destination image]-best.png as soon as it is found.");
+        System.out.println("  --min-quality: Stop as soon as a result is this factor better connected than the "
+                        + "source image, writing it to [destination image]-best.png.");
+        System.out.println("  --resume: Regularly write the state of the search to the checkpoint file and resume from "
+                        + "it if it exists. Implies searching like with --time-budget.");
+        System.out.println("  --workers: Evaluate the cut variants in this many worker processes, which share the edge "
+                        + "image via a memory mapped file.");
+        System.out.println("  --coordinator-port: Listen for workers on this port instead of a free one. Workers on "
+                        + "other machines additionally need --bind.");
+        System.out.println("  --worker: Run as worker of the coordinator at the given address. The input image and "
+                        + "the destination directory must be readable at the same paths as on the coordinator.");
+        System.out.println("  --periodicity: Find the tile size by the periodicity of the edges instead of judging "
+                        + "each possible cut.");
+        System.out.println("  --rotations: Tiles of the source image might be rotated by 90, 180 or 270 degrees.");
+        System.out.println("  --seed: Seed of all random numbers, so that repeated runs with the same seed do the "
+                        + "same work and find the same results.");
+        System.out.println("  --batch: Solve all .png files in the source dir or all files listed in the manifest "
+                        + "(one per line), writing results to the destination dir.");
+        System.out.println("  --threads: Number of threads of each stage in batch mode, defaults to a quarter of the "
+                        + "available processors.");
+        System.out.println("  --server: Accept jigsaws via HTTP (POST /jobs with a png, GET /jobs/[id], "
+                        + "GET /jobs/[id]/results/[n], POST /jobs/[id]/cancel), storing files in the work dir.");
+        System.out.println("  --bind: Address the server or the coordinator listens on, e.g. 0.0.0.0 for all "
+                        + "interfaces. Defaults to the loopback interface, as clients are not authenticated.");
     }
 }
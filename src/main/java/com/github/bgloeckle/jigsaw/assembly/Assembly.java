@@ -31,6 +31,9 @@ import com.github.bgloeckle.jigsaw.util.Pair;
  * An {@link Image} that is based on a specific positioning of various {@link Tile}s which in turn base on a different
  * {@link Image}.
  *
+ * <p>
+ * The tiles do not need to have the same size. Pixels not covered by any tile have color 0 and an undefined direction.
+ *
  * @author Bastian Gloeckle
  */
 public class Assembly implements Image {
@@ -67,12 +70,19 @@ public class Assembly implements Image {
             return null;
         }
         int destY = e.getKey();
+        if (x - destX >= e.getValue().getWidth() || y - destY >= e.getValue().getHeight()) {
+            // gap next to a smaller tile.
+            return null;
+        }
         return new Pair<>(e.getValue(), new Pair<>(destX, destY));
     }
 
     @Override
     public int getColor(int x, int y) {
         Pair<Tile, Pair<Integer, Integer>> tileDestPair = findTile(x, y);
+        if (tileDestPair == null) {
+            return 0;
+        }
 
         return tileDestPair.getLeft().getColor(x - tileDestPair.getRight().getLeft(),
                         y - tileDestPair.getRight().getRight());
@@ -81,6 +91,9 @@ public class Assembly implements Image {
     @Override
     public void setColor(int x, int y, int newColor) {
         Pair<Tile, Pair<Integer, Integer>> tileDestPair = findTile(x, y);
+        if (tileDestPair == null) {
+            return;
+        }
 
         tileDestPair.getLeft().setColor(x - tileDestPair.getRight().getLeft(), y - tileDestPair.getRight().getRight(),
                         newColor);
@@ -89,6 +102,9 @@ public class Assembly implements Image {
     @Override
     public double getDirection(int x, int y) {
         Pair<Tile, Pair<Integer, Integer>> tileDestPair = findTile(x, y);
+        if (tileDestPair == null) {
+            return DIRECTION_UNDEFINED;
+        }
 
         return tileDestPair.getLeft().getDirection(x - tileDestPair.getRight().getLeft(),
                         y - tileDestPair.getRight().getRight());
@@ -97,12 +113,53 @@ public class Assembly implements Image {
     @Override
     public void setDirection(int x, int y, double direction) {
         Pair<Tile, Pair<Integer, Integer>> tileDestPair = findTile(x, y);
+        if (tileDestPair == null) {
+            return;
+        }
 
         tileDestPair.getLeft().setDirection(x - tileDestPair.getRight().getLeft(),
                         y - tileDestPair.getRight().getRight(), direction);
 
     }
 
+    /**
+     * @return The codes of all pixels, see {@link TileRaster#codes(Image)}. Copied from the {@link TileRaster}s of the
+     *         tiles instead of looking up the tile of each single pixel.
+     */
+    /* package */ byte[] getEdgeCodes() {
+        int width = getWidth();
+        int height = getHeight();
+        byte[] res = new byte[width * height];
+        for (Entry<Integer, NavigableMap<Integer, Tile>> e : tiles.entrySet()) {
+            int destX = e.getKey();
+            // the pixels of a tile that reach into the next column belong to the tiles of that column, tiles might also
+            // reach out of the image.
+            Integer nextX = tiles.higherKey(destX);
+            int maxWidth = Math.min((nextX != null) ? nextX : width, width) - destX;
+            for (Entry<Integer, Tile> e2 : e.getValue().entrySet()) {
+                int destY = e2.getKey();
+                Integer nextY = e.getValue().higherKey(destY);
+                int maxHeight = Math.min((nextY != null) ? nextY : height, height) - destY;
+                e2.getValue().copyEdgeCodes(res, height, destX, destY, maxWidth, maxHeight);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return The tiles of this assembly, indexed by their x and y position in the assembly. Must not be modified.
+     */
+    public NavigableMap<Integer, NavigableMap<Integer, Tile>> getTiles() {
+        return tiles;
+    }
+
+    /**
+     * @return The image the tiles of this assembly are cut from.
+     */
+    public Image getOrigImage() {
+        return origImg;
+    }
+
     @Override
     public int getWidth() {
         return origImg.getWidth();
@@ -0,0 +1,83 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.github.bgloeckle.jigsaw.image.Image;
+
+/**
+ * Input/output of the layout of an {@link Assembly} in a compact binary format, without the pixels of the image it is
+ * based on.
+ *
+ * <p>
+ * The format consists of the number of tiles, followed by destination x, destination y, source x, source y, source
+ * width, source height and rotation of each tile, all as ints as written by {@link DataOutput#writeInt(int)}.
+ *
+ * @author Bastian Gloeckle
+ */
+public class AssemblyIo {
+    public void writeAssembly(Assembly assembly, DataOutput out) throws IOException {
+        int tileCount = 0;
+        for (NavigableMap<Integer, Tile> column : assembly.getTiles().values()) {
+            tileCount += column.size();
+        }
+        out.writeInt(tileCount);
+        for (Entry<Integer, NavigableMap<Integer, Tile>> column : assembly.getTiles().entrySet()) {
+            for (Entry<Integer, Tile> e : column.getValue().entrySet()) {
+                Tile t = e.getValue();
+                out.writeInt(column.getKey());
+                out.writeInt(e.getKey());
+                out.writeInt(t.getSourceX());
+                out.writeInt(t.getSourceY());
+                out.writeInt(t.getSourceWidth());
+                out.writeInt(t.getSourceHeight());
+                out.writeInt(t.getRotation());
+            }
+        }
+    }
+
+    /**
+     * Read an assembly that was written using {@link #writeAssembly(Assembly, DataOutput)}.
+     *
+     * @param origImage
+     *            The image the tiles of the assembly are based on.
+     */
+    public Assembly readAssembly(Image origImage, DataInput in) throws IOException {
+        int tileCount = in.readInt();
+        if (tileCount < 0) {
+            throw new IOException("Invalid number of tiles: " + tileCount);
+        }
+        NavigableMap<Integer, NavigableMap<Integer, Tile>> tiles = new TreeMap<>();
+        for (int i = 0; i < tileCount; i++) {
+            int destX = in.readInt();
+            int destY = in.readInt();
+            Tile tile = new Tile(origImage, in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            tiles.computeIfAbsent(destX, k -> new TreeMap<>()).put(destY, tile);
+        }
+        return new Assembly(origImage, tiles);
+    }
+}
@@ -21,10 +21,20 @@
 package com.github.bgloeckle.jigsaw.assembly;
 
 import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
 
 /**
  * Extracts a specific area from a source {@link Image} and provides a new {@link Image} out of that.
  *
+ * <p>
+ * The area can be rotated clockwise by a number of quarter turns. Directions of pixels of a tile rotated by 90° or
+ * 270° are rotated accordingly, quantized to the {@link EdgeDirection}s.
+ *
+ * <p>
+ * Pixels are read from the source image on each access, except for the edge codes of {@link #getEdgeCode(int, int)}
+ * and {@link #copyEdgeCodes(byte[], int, int, int, int, int)}, which are materialized into a {@link TileRaster} on first
+ * access.
+ *
  * @author Bastian Gloeckle
  */
 public class Tile implements Image {
@@ -35,55 +45,151 @@ public class Tile implements Image {
     private int sourceY;
     private int width;
     private int height;
+    private int rotation;
+    private transient volatile TileRaster raster = null;
 
     public Tile(Image origImg, int sourceX, int sourceY, int width, int height) {
+        this(origImg, sourceX, sourceY, width, height, 0);
+    }
+
+    /**
+     * @param width
+     *            Width of the area in the source image.
+     * @param height
+     *            Height of the area in the source image.
+     * @param rotation
+     *            Number of clockwise quarter turns the area is rotated by, 0 to 3.
+     */
+    public Tile(Image origImg, int sourceX, int sourceY, int width, int height, int rotation) {
         this.origImg = origImg;
         this.sourceX = sourceX;
         this.sourceY = sourceY;
         this.width = width;
         this.height = height;
+        this.rotation = rotation;
     }
 
     public Tile(Image origImg, Tile other) {
-        this(origImg, other.sourceX, other.sourceY, other.width, other.height);
+        this(origImg, other.sourceX, other.sourceY, other.width, other.height, other.rotation);
     }
 
-    private int sourceX(int x) {
-        return x + sourceX;
+    private int sourceX(int x, int y) {
+        switch (rotation) {
+        case 1:
+            return y + sourceX;
+        case 2:
+            return width - 1 - x + sourceX;
+        case 3:
+            return width - 1 - y + sourceX;
+        default:
+            return x + sourceX;
+        }
     }
 
-    private int sourceY(int y) {
-        return y + sourceY;
+    private int sourceY(int x, int y) {
+        switch (rotation) {
+        case 1:
+            return height - 1 - x + sourceY;
+        case 2:
+            return height - 1 - y + sourceY;
+        case 3:
+            return x + sourceY;
+        default:
+            return y + sourceY;
+        }
     }
 
     @Override
     public int getColor(int x, int y) {
-        return origImg.getColor(sourceX(x), sourceY(y));
+        return origImg.getColor(sourceX(x, y), sourceY(x, y));
     }
 
     @Override
     public void setColor(int x, int y, int newColor) {
-        origImg.setColor(sourceX(x), sourceY(y), newColor);
+        origImg.setColor(sourceX(x, y), sourceY(x, y), newColor);
+        TileRaster.pixelChanged(origImg, sourceX(x, y), sourceY(x, y));
     }
 
     @Override
     public double getDirection(int x, int y) {
-        return origImg.getDirection(sourceX(x), sourceY(y));
+        return rotateDirection(origImg.getDirection(sourceX(x, y), sourceY(x, y)));
     }
 
     @Override
     public void setDirection(int x, int y, double direction) {
-        origImg.setDirection(sourceX(x), sourceY(y), direction);
+        // on EdgeDirections, rotating by a quarter turn is its own inverse.
+        origImg.setDirection(sourceX(x, y), sourceY(x, y), rotateDirection(direction));
+        TileRaster.pixelChanged(origImg, sourceX(x, y), sourceY(x, y));
+    }
+
+    private double rotateDirection(double direction) {
+        if (rotation % 2 == 0 || direction == DIRECTION_UNDEFINED) {
+            // rotating by 180° does not change the direction of edges.
+            return direction;
+        }
+        return EdgeDirection.fromGradientRadian(direction).rotateQuarter().getGradientRadian();
+    }
+
+    /**
+     * @return The code of the pixel, see {@link TileRaster#code(Image, int, int)}.
+     */
+    public byte getEdgeCode(int x, int y) {
+        byte code = getRaster().get(sourceX(x, y) - sourceX, sourceY(x, y) - sourceY);
+        return (rotation % 2 == 0) ? code : TileRaster.rotateQuarter(code);
+    }
+
+    /**
+     * Copy the codes of the pixels of this tile to the codes of a larger image, see {@link TileRaster#codes(Image)}.
+     *
+     * @param target
+     *            Codes of the larger image, column by column.
+     * @param targetHeight
+     *            Height of the larger image.
+     * @param destX
+     *            Position of the top left pixel of this tile in the larger image.
+     * @param destY
+     *            Position of the top left pixel of this tile in the larger image.
+     * @param maxWidth
+     *            Copy at most this many columns of the tile.
+     * @param maxHeight
+     *            Copy at most this many rows of the tile.
+     */
+    public void copyEdgeCodes(byte[] target, int targetHeight, int destX, int destY, int maxWidth, int maxHeight) {
+        TileRaster tileRaster = getRaster();
+        int copyWidth = Math.min(getWidth(), maxWidth);
+        int copyHeight = Math.min(getHeight(), maxHeight);
+        if (rotation == 0 && copyHeight == height) {
+            for (int x = 0; x < copyWidth; x++) {
+                tileRaster.copyColumn(x, target, (destX + x) * targetHeight + destY);
+            }
+            return;
+        }
+        for (int x = 0; x < copyWidth; x++) {
+            int targetPos = (destX + x) * targetHeight + destY;
+            for (int y = 0; y < copyHeight; y++) {
+                byte code = tileRaster.get(sourceX(x, y) - sourceX, sourceY(x, y) - sourceY);
+                target[targetPos + y] = (rotation % 2 == 0) ? code : TileRaster.rotateQuarter(code);
+            }
+        }
+    }
+
+    private TileRaster getRaster() {
+        TileRaster res = raster;
+        if (res == null) {
+            res = TileRaster.of(origImg, sourceX, sourceY, width, height);
+            raster = res;
+        }
+        return res;
     }
 
     @Override
     public int getWidth() {
-        return width;
+        return (rotation % 2 == 0) ? width : height;
     }
 
     @Override
     public int getHeight() {
-        return height;
+        return (rotation % 2 == 0) ? height : width;
     }
 
     @Override
@@ -99,9 +205,31 @@ public class Tile implements Image {
         return sourceY;
     }
 
+    /**
+     * @return Width of the area in the source image.
+     */
+    public int getSourceWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the area in the source image.
+     */
+    public int getSourceHeight() {
+        return height;
+    }
+
+    /**
+     * @return Number of clockwise quarter turns this tile is rotated by.
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
     @Override
     public String toString() {
-        return "Tile [sourceX=" + sourceX + ", sourceY=" + sourceY + "]";
+        return "Tile [sourceX=" + sourceX + ", sourceY=" + sourceY + ((rotation != 0) ? ", rotation=" + rotation : "")
+                        + "]";
     }
 
 }
@@ -0,0 +1,182 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.bgloeckle.jigsaw.image.EdgeCodeImage;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+import com.google.common.collect.MapMaker;
+
+/**
+ * The edge pixels of an area of an edge {@link Image}, materialized into a primitive array: Each pixel is represented
+ * by a code that tells whether it is an edge and in which {@link EdgeDirection} the edge runs, see
+ * {@link #code(Image, int, int)}.
+ *
+ * <p>
+ * Rasters are shared by all {@link Tile}s of the same area of the same image, e.g. by the tiles of all assemblies of a
+ * cut variant in all their rotations, using a per-image cache keyed by the area. Images are compared by identity, as
+ * their {@link Object#equals(Object)} might compare all pixels. A raster is kept as long as a tile refers to it.
+ * Changes made through a tile are reflected in all rasters, changes made to the image directly are not.
+ *
+ * <p>
+ * Pixels are stored column by column, like {@link #codes(Image)} does for whole images.
+ *
+ * @author Bastian Gloeckle
+ */
+public class TileRaster {
+    /** Code of a pixel that is no edge. */
+    public static final byte NO_EDGE = EdgeCodeImage.NO_EDGE;
+    /** Code of an edge pixel without a direction. */
+    public static final byte UNDEFINED_DIRECTION = EdgeCodeImage.UNDEFINED_DIRECTION;
+
+    private static final EdgeDirection[] DIRECTIONS = EdgeDirection.values();
+    /** Code to the code of the same pixel rotated by a quarter turn. */
+    private static final byte[] ROTATED_QUARTER = new byte[UNDEFINED_DIRECTION + 1];
+
+    static {
+        ROTATED_QUARTER[NO_EDGE] = NO_EDGE;
+        ROTATED_QUARTER[UNDEFINED_DIRECTION] = UNDEFINED_DIRECTION;
+        for (EdgeDirection direction : DIRECTIONS) {
+            ROTATED_QUARTER[direction.ordinal() + 1] = (byte) (direction.rotateQuarter().ordinal() + 1);
+        }
+    }
+
+    /** Per image (compared by identity): Area (x, y, width, height) to raster. Inner maps are guarded by CACHE. */
+    private static final Map<Image, Map<List<Integer>, WeakReference<TileRaster>>> CACHE = new MapMaker().weakKeys()
+                    .makeMap();
+
+    private int sourceX;
+    private int sourceY;
+    private int width;
+    private int height;
+    private byte[] codes;
+
+    private TileRaster(Image img, int sourceX, int sourceY, int width, int height) {
+        this.sourceX = sourceX;
+        this.sourceY = sourceY;
+        this.width = width;
+        this.height = height;
+        codes = new byte[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                codes[x * height + y] = code(img, sourceX + x, sourceY + y);
+            }
+        }
+    }
+
+    /**
+     * @return The raster of the given area of the image, shared with all other tiles of that area.
+     */
+    /* package */ static TileRaster of(Image img, int sourceX, int sourceY, int width, int height) {
+        List<Integer> area = Arrays.asList(sourceX, sourceY, width, height);
+        synchronized (CACHE) {
+            Map<List<Integer>, WeakReference<TileRaster>> imageRasters = CACHE.computeIfAbsent(img,
+                            k -> new HashMap<>());
+            WeakReference<TileRaster> ref = imageRasters.get(area);
+            TileRaster res = (ref != null) ? ref.get() : null;
+            if (res == null) {
+                imageRasters.values().removeIf(r -> r.get() == null);
+                res = new TileRaster(img, sourceX, sourceY, width, height);
+                imageRasters.put(area, new WeakReference<>(res));
+            }
+            return res;
+        }
+    }
+
+    /**
+     * @return Code of the pixel at the given position relative to the area.
+     */
+    /* package */ byte get(int x, int y) {
+        return codes[x * height + y];
+    }
+
+    /**
+     * Copy one column of the area to the target array.
+     */
+    /* package */ void copyColumn(int x, byte[] target, int targetPos) {
+        System.arraycopy(codes, x * height, target, targetPos, height);
+    }
+
+    /**
+     * Re-read a pixel of the image in all rasters that contain it, after it was changed through a {@link Tile}.
+     */
+    /* package */ static void pixelChanged(Image img, int x, int y) {
+        synchronized (CACHE) {
+            Map<List<Integer>, WeakReference<TileRaster>> imageRasters = CACHE.get(img);
+            if (imageRasters == null) {
+                return;
+            }
+            for (WeakReference<TileRaster> ref : imageRasters.values()) {
+                TileRaster raster = ref.get();
+                if (raster != null && x >= raster.sourceX && x < raster.sourceX + raster.width
+                                && y >= raster.sourceY && y < raster.sourceY + raster.height) {
+                    raster.codes[(x - raster.sourceX) * raster.height + y - raster.sourceY] = code(img, x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@link #NO_EDGE} if the pixel has color 0, {@link #UNDEFINED_DIRECTION} if it has no direction, otherwise
+     *         1 + the ordinal of its {@link EdgeDirection}.
+     */
+    public static byte code(Image img, int x, int y) {
+        return EdgeCodeImage.code(img.getColor(x, y), img.getDirection(x, y));
+    }
+
+    /**
+     * @return The direction of an edge pixel with the given code or <code>null</code> if it has none.
+     */
+    public static EdgeDirection direction(byte code) {
+        return EdgeCodeImage.direction(code);
+    }
+
+    /**
+     * @return The code of a pixel with the given code after the pixel was rotated by a quarter turn.
+     */
+    public static byte rotateQuarter(byte code) {
+        return ROTATED_QUARTER[code];
+    }
+
+    /**
+     * @return The codes of all pixels of the image, column by column. {@link Assembly}s are copied tile by tile.
+     */
+    public static byte[] codes(Image img) {
+        if (img instanceof Assembly) {
+            return ((Assembly) img).getEdgeCodes();
+        }
+        int width = img.getWidth();
+        int height = img.getHeight();
+        byte[] res = new byte[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                res[x * height + y] = code(img, x, y);
+            }
+        }
+        return res;
+    }
+}
@@ -21,15 +21,11 @@
 package com.github.bgloeckle.jigsaw.assembly.jigsaw;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -39,8 +35,11 @@ import org.slf4j.LoggerFactory;
 import com.github.bgloeckle.jigsaw.assembly.Assembly;
 import com.github.bgloeckle.jigsaw.assembly.Tile;
 import com.github.bgloeckle.jigsaw.image.Image;
-import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry.Stage;
 import com.github.bgloeckle.jigsaw.util.Pair;
+import com.github.bgloeckle.jigsaw.util.SolveCancelledException;
+import com.github.bgloeckle.jigsaw.util.SolveContext;
 
 /**
  * Finds the most-likely-well {@link Assembly}s of an input edge {@link Image} with given horizontal and vertical cuts.
@@ -56,92 +55,227 @@ public class AssemblyJigsaw {
 
     private static final double TILE_BORDER_MATCH_COUNT_DIFF_PERCENT = .2;
 
-    // private static final JigsawSolverStrategy SOLVER_STRATEGY = new GreedyJigsawSolverStrategy();
-    private static final JigsawSolverStrategy SOLVER_STRATEGY = new ColorCodingJigsawSolverStrategy();
+    /**
+     * Minimum number of tiles for which the graph is built using a {@link BorderLshIndex} instead of comparing the
+     * borders of all tiles with a similar edge count, which is exact but quadratic if many borders have similar counts.
+     * The index does not link borders without any edge and might rarely miss a match of borders that have few edges in
+     * common.
+     */
+    private static final int LSH_MIN_TILE_COUNT = 1024;
+    private static final long LSH_SEED = 0x6a1b5L;
+    /** Maximum number of tiles whose borders are matched in {@link #judgeGraphPlausibility(SolveContext)}. */
+    private static final int PLAUSIBILITY_SAMPLE_TILES = 64;
+
+    private JigsawSolverStrategy solverStrategy;
 
     private Image origImg;
-    private int cutEveryX;
-    private int cutEveryY;
+    private EdgeBitIndex edgeBitIndex;
+    private int maxTileWidth;
+    private int maxTileHeight;
     private List<Tile> tiles;
 
     private int tileCountWidth;
     private int tileCountHeight;
 
+    private boolean rotationAware = false;
+
     public AssemblyJigsaw(Image origImg, int cutEveryX, int cutEveryY) {
+        this(origImg, cutEveryX, cutEveryY, new ColorCodingJigsawSolverStrategy());
+    }
+
+    public AssemblyJigsaw(Image origImg, int cutEveryX, int cutEveryY, JigsawSolverStrategy solverStrategy) {
+        this(origImg, uniformCuts(cutEveryX, origImg.getWidth()), uniformCuts(cutEveryY, origImg.getHeight()),
+                        solverStrategy);
+    }
+
+    /**
+     * Create a jigsaw whose tiles can have different sizes.
+     *
+     * @param cutsX
+     *            Ascending x positions of the vertical cuts, each being the first x value of a new column of tiles.
+     *            Must be > 0 and < width of the image.
+     * @param cutsY
+     *            Ascending y positions of the horizontal cuts, each being the first y value of a new row of tiles.
+     *            Must be > 0 and < height of the image.
+     */
+    public AssemblyJigsaw(Image origImg, int[] cutsX, int[] cutsY, JigsawSolverStrategy solverStrategy) {
+        this(origImg, cutsX, cutsY, solverStrategy, new EdgeBitIndex(origImg));
+    }
+
+    /**
+     * Same as {@link #AssemblyJigsaw(Image, int[], int[], JigsawSolverStrategy)}, but re-uses an {@link EdgeBitIndex}
+     * of the image, which can be shared by all cut variants of the same image.
+     */
+    public AssemblyJigsaw(Image origImg, int[] cutsX, int[] cutsY, JigsawSolverStrategy solverStrategy,
+                    EdgeBitIndex edgeBitIndex) {
+        this.solverStrategy = solverStrategy;
         this.origImg = origImg;
-        this.cutEveryX = cutEveryX;
-        this.cutEveryY = cutEveryY;
+        this.edgeBitIndex = edgeBitIndex;
 
-        tileCountWidth = 0;
-        tileCountHeight = 0;
+        tileCountWidth = cutsX.length + 1;
+        tileCountHeight = cutsY.length + 1;
+        maxTileWidth = 0;
+        maxTileHeight = 0;
         tiles = new ArrayList<>();
-        for (int x = 0; x < origImg.getWidth(); x += cutEveryX) {
-            for (int y = 0; y < origImg.getHeight(); y += cutEveryY) {
-                Tile t = new Tile(origImg, x, y, Math.min(x + cutEveryX, origImg.getWidth()) - x,
-                                Math.min(y + cutEveryY, origImg.getHeight()) - y);
-                tiles.add(t);
-                tileCountHeight++;
+        for (int col = 0; col < tileCountWidth; col++) {
+            int x = (col == 0) ? 0 : cutsX[col - 1];
+            int width = ((col == cutsX.length) ? origImg.getWidth() : cutsX[col]) - x;
+            maxTileWidth = Math.max(maxTileWidth, width);
+            for (int row = 0; row < tileCountHeight; row++) {
+                int y = (row == 0) ? 0 : cutsY[row - 1];
+                int height = ((row == cutsY.length) ? origImg.getHeight() : cutsY[row]) - y;
+                maxTileHeight = Math.max(maxTileHeight, height);
+                tiles.add(new Tile(origImg, x, y, width, height));
             }
-            tileCountWidth++;
         }
-        tileCountHeight /= tileCountWidth;
+    }
+
+    /**
+     * @return Positions of cuts every cutEvery pixels in a dimension with the given size, see
+     *         {@link #AssemblyJigsaw(Image, int[], int[], JigsawSolverStrategy)}.
+     */
+    public static int[] uniformCuts(int cutEvery, int dimensionMax) {
+        int[] res = new int[(dimensionMax - 1) / cutEvery];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = (i + 1) * cutEvery;
+        }
+        return res;
+    }
+
+    /**
+     * @param rotationAware
+     *            If <code>true</code>, tiles might have been rotated by 90°, 180° or 270° and are placed in the rotation
+     *            that fits best. Tiles that are not square are only rotated by 180°.
+     */
+    public void setRotationAware(boolean rotationAware) {
+        this.rotationAware = rotationAware;
     }
 
     public Set<Assembly> findBestAssemblies(double bestStitchPercent) {
-        Map<Integer, List<TileInfo>> topBorderEdgeCountTiles = new HashMap<>();
-        Map<Integer, List<TileInfo>> leftBorderEdgeCountTiles = new HashMap<>();
-        Map<Integer, List<TileInfo>> rightBorderEdgeCountTiles = new HashMap<>();
-        Map<Integer, List<TileInfo>> bottomBorderEdgeCountTiles = new HashMap<>();
-
-        logger.debug("Identifying the edges on the borders of tiles cut every ({}/{} => tileWidth={}, tileHeight={})",
-                        cutEveryX, cutEveryY, tileCountWidth, tileCountHeight);
-        List<TileInfo> tileInfos = tiles.stream().map(t -> new TileInfo(t)).collect(Collectors.toList());
-        for (TileInfo t : tileInfos) {
-            // inspect top border
-            fillTileBorderBitSet(t, it(t.getTile(), p -> new Pair<>(p.getLeft() + 1, p.getRight()), new Pair<>(0, 0)),
-                            EdgeDirection.EAST_WEST, tile -> tile.getTopBorder(), p -> p.getLeft());
-            // inspect bottom border
-            fillTileBorderBitSet(t,
-                            it(t.getTile(), p -> new Pair<>(p.getLeft() + 1, p.getRight()),
-                                            new Pair<>(0, t.getTile().getHeight() - 1)),
-                            EdgeDirection.EAST_WEST, tile -> tile.getBottomBorder(), p -> p.getLeft());
-            // inspect left border
-            fillTileBorderBitSet(t, it(t.getTile(), p -> new Pair<>(p.getLeft(), p.getRight() + 1), new Pair<>(0, 0)),
-                            EdgeDirection.NORTH_SOUTH, tile -> tile.getLeftBorder(), p -> p.getRight());
-            // inspect right border
-            fillTileBorderBitSet(t,
-                            it(t.getTile(), p -> new Pair<>(p.getLeft(), p.getRight() + 1),
-                                            new Pair<>(0, t.getTile().getWidth() - 1)),
-                            EdgeDirection.NORTH_SOUTH, tile -> tile.getRightBorder(), p -> p.getRight());
-
-            // for quick access, add tile to the maps
-            topBorderEdgeCountTiles.computeIfAbsent(t.getTopBorder().cardinality(), k -> new ArrayList<>()).add(t);
-            leftBorderEdgeCountTiles.computeIfAbsent(t.getLeftBorder().cardinality(), k -> new ArrayList<>()).add(t);
-            rightBorderEdgeCountTiles.computeIfAbsent(t.getRightBorder().cardinality(), k -> new ArrayList<>()).add(t);
-            bottomBorderEdgeCountTiles.computeIfAbsent(t.getBottomBorder().cardinality(), k -> new ArrayList<>())
-                            .add(t);
+        return findBestAssemblies(bestStitchPercent, MetricsRegistry.NOOP);
+    }
+
+    /**
+     * Same as {@link #findBestAssemblies(double)}, but records the stages "graph" and "strategy" in the given
+     * {@link MetricsRegistry}.
+     */
+    public Set<Assembly> findBestAssemblies(double bestStitchPercent, MetricsRegistry metrics) {
+        return findBestAssemblies(bestStitchPercent, metrics, SolutionListener.NONE);
+    }
+
+    /**
+     * Same as {@link #findBestAssemblies(double, MetricsRegistry)}, but informs the given listener about each
+     * {@link Assembly} as soon as it is found, see {@link JigsawSolverStrategy#solve(Image, java.util.Collection, int,
+     * int, SolutionListener)}.
+     *
+     * @throws SolveCancelledException
+     *             If the {@link SolutionListener#getContext()} is cancelled while building the graph. If it is
+     *             cancelled while the strategy runs, the assemblies found so far are returned.
+     */
+    public Set<Assembly> findBestAssemblies(double bestStitchPercent, MetricsRegistry metrics,
+                    SolutionListener listener) {
+        List<TileInfo> tileInfos;
+        try (Stage stage = metrics.startStage("graph")) {
+            tileInfos = buildGraph(listener.getContext());
+        }
+        try (Stage stage = metrics.startStage("strategy")) {
+            return solverStrategy.solve(origImg, tileInfos, tileCountWidth, tileCountHeight, listener);
+        }
+    }
+
+    /**
+     * Inspect the borders of all tiles and build a graph of {@link TileInfo}s, where each vertex is connected to those
+     * tiles that could potentially be placed next to it.
+     */
+    /* package */ List<TileInfo> buildGraph() {
+        return buildGraph(SolveContext.NONE);
+    }
+
+    /**
+     * Same as {@link #buildGraph()}, but checks the given context for each tile.
+     *
+     * @throws SolveCancelledException
+     *             If the context was cancelled.
+     */
+    /* package */ List<TileInfo> buildGraph(SolveContext context) throws SolveCancelledException {
+        logger.debug("Identifying the edges on the borders of tiles (max tile size {}/{} => tileWidth={}, "
+                        + "tileHeight={})", maxTileWidth, maxTileHeight, tileCountWidth, tileCountHeight);
+        List<TileBorders> tileBorders = tiles.stream().map(TileBorders::new).collect(Collectors.toList());
+        tileBorders.stream().parallel().forEach(b -> {
+            context.checkCancelled();
+            b.fill(edgeBitIndex);
+        });
+
+        List<TileInfo> tileInfos = new ArrayList<>(tiles.size());
+        for (int rotation = 0; rotation < (rotationAware ? 4 : 1); rotation++) {
+            for (int tileIndex = 0; tileIndex < tiles.size(); tileIndex++) {
+                Tile t = tiles.get(tileIndex);
+                if (rotation % 2 == 1 && t.getWidth() != t.getHeight()) {
+                    // a non-square tile turned by a quarter would not fit into the cell of the tile.
+                    continue;
+                }
+                Tile rotatedTile = (rotation == 0) ? t
+                                : new Tile(origImg, t.getSourceX(), t.getSourceY(), t.getWidth(), t.getHeight(),
+                                                rotation);
+                tileInfos.add(new TileInfo(tileInfos.size(), tileIndex, rotatedTile, tileBorders.get(tileIndex)));
+            }
+        }
+
+        int verticalCutsMaxDiff = (int) Math.round(maxTileHeight * TILE_BORDER_MATCH_COUNT_DIFF_PERCENT);
+        int horizontalCutsMaxDiff = (int) Math.round(maxTileWidth * TILE_BORDER_MATCH_COUNT_DIFF_PERCENT);
+
+        // for quick access to the tiles that could match a border, index the bottom and right borders.
+        Function<BitSet, List<TileInfo>> bottomBorderCandidates;
+        Function<BitSet, List<TileInfo>> rightBorderCandidates;
+        if (tileInfos.size() >= LSH_MIN_TILE_COUNT) {
+            logger.debug("Indexing borders of {} tiles using locality-sensitive hashing", tileInfos.size());
+            bottomBorderCandidates = new BorderLshIndex(tileInfos, ti -> ti.getBottomBorder(),
+                            horizontalCutsMaxDiff, LSH_SEED)::findCandidates;
+            rightBorderCandidates = new BorderLshIndex(tileInfos, ti -> ti.getRightBorder(), verticalCutsMaxDiff,
+                            LSH_SEED)::findCandidates;
+        } else {
+            Map<Integer, List<TileInfo>> bottomBorderEdgeCountTiles = new HashMap<>();
+            Map<Integer, List<TileInfo>> rightBorderEdgeCountTiles = new HashMap<>();
+            for (TileInfo t : tileInfos) {
+                rightBorderEdgeCountTiles.computeIfAbsent(t.getRightBorder().cardinality(), k -> new ArrayList<>())
+                                .add(t);
+                bottomBorderEdgeCountTiles.computeIfAbsent(t.getBottomBorder().cardinality(), k -> new ArrayList<>())
+                                .add(t);
+            }
+            bottomBorderCandidates = b -> findCandidatesByEdgeCount(bottomBorderEdgeCountTiles, b.cardinality(),
+                            horizontalCutsMaxDiff);
+            rightBorderCandidates = b -> findCandidatesByEdgeCount(rightBorderEdgeCountTiles, b.cardinality(),
+                            verticalCutsMaxDiff);
         }
 
-        int verticalCutsMaxDiff = (int) Math.round(cutEveryY * TILE_BORDER_MATCH_COUNT_DIFF_PERCENT);
-        int horizontalCutsMaxDiff = (int) Math.round(cutEveryX * TILE_BORDER_MATCH_COUNT_DIFF_PERCENT);
         logger.debug("Building a graph by accepting neighbours with a max edge count diff of {}/{}",
                         verticalCutsMaxDiff, horizontalCutsMaxDiff);
+        // find the matches of each tile independently of the others...
+        @SuppressWarnings("unchecked")
+        List<Pair<TileInfo, Double>>[] topMatches = new List[tileInfos.size()];
+        @SuppressWarnings("unchecked")
+        List<Pair<TileInfo, Double>>[] leftMatches = new List[tileInfos.size()];
+        tileInfos.stream().parallel().forEach(t -> {
+            context.checkCancelled();
+            topMatches[t.getId()] = findMatches(t, t.getTopBorder(), bottomBorderCandidates.apply(t.getTopBorder()),
+                            ti -> ti.getBottomBorder(), horizontalCutsMaxDiff);
+            leftMatches[t.getId()] = findMatches(t, t.getLeftBorder(), rightBorderCandidates.apply(t.getLeftBorder()),
+                            ti -> ti.getRightBorder(), verticalCutsMaxDiff);
+        });
+        // ... and then connect both endpoints of each match, in order of the tile ids so the graph is deterministic.
         for (TileInfo t : tileInfos) {
-            populateNextSet(t, t.getTopBorder(), bottomBorderEdgeCountTiles, ti -> ti.getBottomBorder(),
-                            p -> {
-                                t.getNextTop().add(p);
-                                p.getLeft().getNextBottom().add(new Pair<>(t, p.getRight()));
-                            }, horizontalCutsMaxDiff);
-            populateNextSet(t, t.getLeftBorder(), rightBorderEdgeCountTiles, ti -> ti.getRightBorder(),
-                            p -> {
-                                t.getNextLeft().add(p);
-                                p.getLeft().getNextRight().add(new Pair<>(t, p.getRight()));
-                            }, verticalCutsMaxDiff);
-            // populateNextSet(t, t.getBottomBorder(), topBorderEdgeCountTiles, ti -> ti.getTopBorder(),
-            // p -> t.getNextBottom().add(p), horizontalCutsMaxDiff);
-            // populateNextSet(t, t.getRightBorder(), leftBorderEdgeCountTiles, ti -> ti.getLeftBorder(),
-            // p -> t.getNextRight().add(p), verticalCutsMaxDiff);
+            for (Pair<TileInfo, Double> p : topMatches[t.getId()]) {
+                t.getNextTop().add(p.getLeft(), p.getRight());
+                p.getLeft().getNextBottom().add(t, p.getRight());
+            }
+            for (Pair<TileInfo, Double> p : leftMatches[t.getId()]) {
+                t.getNextLeft().add(p.getLeft(), p.getRight());
+                p.getLeft().getNextRight().add(t, p.getRight());
+            }
         }
+        context.checkCancelled();
+        TileInfo[] tilesById = tileInfos.toArray(new TileInfo[tileInfos.size()]);
+        tileInfos.stream().parallel().forEach(t -> t.freezeNeighbours(tilesById));
 
         if (logger.isDebugEnabled()) {
             long edgeCount = 0;
@@ -152,89 +286,152 @@ public class AssemblyJigsaw {
             logger.debug("Found a graph with {} vertices and {} edges", tileInfos.size(), edgeCount);
         }
 
-        return SOLVER_STRATEGY.solve(origImg, tileInfos, tileCountWidth, tileCountHeight);
+        return tileInfos;
     }
 
-    private void fillTileBorderBitSet(TileInfo t, Iterator<Pair<Integer, Integer>> posIt, EdgeDirection ignoreDirection,
-                    Function<TileInfo, BitSet> bitSetSelector, Function<Pair<Integer, Integer>, Integer> bitSelector) {
-        while (posIt.hasNext()) {
-            Pair<Integer, Integer> curPos = posIt.next();
+    /**
+     * Judge how plausible it is that the input image was cut at the cuts of this jigsaw: If the cuts are right, each
+     * inner tile border matches about one other tile border. If they are wrong, borders either match no other border
+     * or lots of them.
+     *
+     * <p>
+     * This does not build the graph of tiles, but only matches the left and top borders of up to
+     * {@link #PLAUSIBILITY_SAMPLE_TILES} tiles against the right and bottom borders of all tiles, accepting the same
+     * matches as {@link #buildGraph()}. It is therefore cheap enough to judge all cut variants before solving any.
+     *
+     * @return Value in (0, 1], higher means more plausible.
+     */
+    public double judgeGraphPlausibility() {
+        return judgeGraphPlausibility(SolveContext.NONE);
+    }
 
-            if (t.getTile().getColor(curPos.getLeft(), curPos.getRight()) != 0 && !ignoreDirection.equals(EdgeDirection
-                            .fromGradientRadian(t.getTile().getDirection(curPos.getLeft(), curPos.getRight())))) {
-                int bit = bitSelector.apply(curPos);
-                bitSetSelector.apply(t).set(bit);
-            }
+    /**
+     * Same as {@link #judgeGraphPlausibility()}, but checks the given context for each sampled tile.
+     *
+     * @throws SolveCancelledException
+     *             If the context was cancelled.
+     */
+    public double judgeGraphPlausibility(SolveContext context) throws SolveCancelledException {
+        long innerBorderCount = (long) (tileCountWidth - 1) * tileCountHeight
+                        + (long) tileCountWidth * (tileCountHeight - 1);
+        if (innerBorderCount == 0) {
+            return 1.;
         }
-    }
+        List<TileBorders> tileBorders = tiles.stream().map(TileBorders::new).collect(Collectors.toList());
+        tileBorders.stream().parallel().forEach(b -> {
+            context.checkCancelled();
+            b.fill(edgeBitIndex);
+        });
 
-    private void populateNextSet(TileInfo t, BitSet tBitSet, Map<Integer, List<TileInfo>> borderCountMap,
-                    Function<TileInfo, BitSet> otherBitSetProvider, Consumer<Pair<TileInfo, Double>> resConsumer,
-                    int maxEdgeCountDiff) {
-        int cardinality = tBitSet.cardinality();
-        // if (cardinality == 0) {
-        // return;
-        // }
-        Set<TileInfo> visited = new HashSet<>(Arrays.asList(t));
-
-        for (int absDelta = 0; absDelta <= maxEdgeCountDiff; absDelta++) {
-            Set<Integer> deltasWorkedOn = new HashSet<>();
-            for (int delta = absDelta; !deltasWorkedOn.contains(delta); delta = delta * -1) {
-                try {
-                    int idx = cardinality + delta;
-                    if (!borderCountMap.containsKey(idx)) {
+        int verticalCutsMaxDiff = (int) Math.round(maxTileHeight * TILE_BORDER_MATCH_COUNT_DIFF_PERCENT);
+        int horizontalCutsMaxDiff = (int) Math.round(maxTileWidth * TILE_BORDER_MATCH_COUNT_DIFF_PERCENT);
+        int step = Math.max(1, tiles.size() / PLAUSIBILITY_SAMPLE_TILES);
+        long matchCount = 0;
+        // number of sampled vertices of the graph, i.e. sampled tiles in all their rotations.
+        int sampleCount = 0;
+        for (int tileIndex = 0; tileIndex < tiles.size(); tileIndex += step) {
+            context.checkCancelled();
+            for (int rotation = 0; rotation < (rotationAware ? 4 : 1); rotation++) {
+                if (!isValidRotation(tiles.get(tileIndex), rotation)) {
+                    continue;
+                }
+                sampleCount++;
+                BitSet leftBorder = tileBorders.get(tileIndex).get(TileBorders.LEFT, rotation);
+                BitSet topBorder = tileBorders.get(tileIndex).get(TileBorders.TOP, rotation);
+                for (int otherIndex = 0; otherIndex < tiles.size(); otherIndex++) {
+                    if (otherIndex == tileIndex) {
                         continue;
                     }
-
-                    for (TileInfo interestingTile : borderCountMap.get(idx)) {
-                        if (visited.contains(interestingTile)) {
+                    TileBorders otherBorders = tileBorders.get(otherIndex);
+                    for (int otherRotation = 0; otherRotation < (rotationAware ? 4 : 1); otherRotation++) {
+                        if (!isValidRotation(tiles.get(otherIndex), otherRotation)) {
                             continue;
                         }
-                        visited.add(interestingTile);
-                        BitSet workBitSet = BitSet.valueOf(otherBitSetProvider.apply(interestingTile).toLongArray());
-                        workBitSet.xor(tBitSet);
-
-                        int c = workBitSet.cardinality();
-                        if (c <= maxEdgeCountDiff) {
-                            Pair<TileInfo, Double> r = new Pair<>(interestingTile,
-                                            (double) (maxEdgeCountDiff - absDelta));
-                            // logger.trace("Found neighbour of {}: {}", t, r);
-                            resConsumer.accept(r);
-                        } else {
-                            // System.out.println();
+                        if (bordersMatch(leftBorder, otherBorders.get(TileBorders.RIGHT, otherRotation),
+                                        verticalCutsMaxDiff)) {
+                            matchCount++;
+                        }
+                        if (bordersMatch(topBorder, otherBorders.get(TileBorders.BOTTOM, otherRotation),
+                                        horizontalCutsMaxDiff)) {
+                            matchCount++;
                         }
                     }
-                } finally {
-                    deltasWorkedOn.add(delta);
                 }
             }
         }
+        // extrapolate the matches of the sampled vertices to all vertices and count each tile once, not once per
+        // rotation.
+        double neighboursPerBorder = matchCount * ((double) tiles.size() / sampleCount) / innerBorderCount;
+        return 1. / (1. + Math.abs(neighboursPerBorder - 1.));
     }
 
+    /* package */ int getTileCountWidth() {
+        return tileCountWidth;
+    }
 
+    /* package */ int getTileCountHeight() {
+        return tileCountHeight;
+    }
 
     /**
-     * @return An {@link Iterator} that iterates over valid x/y values in the given tile, computing a new pair of values
-     *         with the given function and starting by the given start location.
+     * @return All tiles whose border has an edge count that differs at most maxEdgeCountDiff from the given one.
      */
-    private Iterator<Pair<Integer, Integer>> it(Tile tile,
-                    Function<Pair<Integer, Integer>, Pair<Integer, Integer>> providerFn, Pair<Integer, Integer> start) {
-        return new Iterator<Pair<Integer, Integer>>() {
-            private Pair<Integer, Integer> next = start;
-
-            @Override
-            public boolean hasNext() {
-                return next.getLeft() >= 0 && next.getLeft() < tile.getWidth() && next.getRight() >= 0
-                                && next.getRight() < tile.getHeight();
+    private List<TileInfo> findCandidatesByEdgeCount(Map<Integer, List<TileInfo>> borderCountMap, int cardinality,
+                    int maxEdgeCountDiff) {
+        List<TileInfo> res = new ArrayList<>();
+        for (int idx = cardinality - maxEdgeCountDiff; idx <= cardinality + maxEdgeCountDiff; idx++) {
+            List<TileInfo> tiles = borderCountMap.get(idx);
+            if (tiles != null) {
+                res.addAll(tiles);
             }
+        }
+        return res;
+    }
 
-            @Override
-            public Pair<Integer, Integer> next() {
-                Pair<Integer, Integer> cur = next;
-                next = providerFn.apply(cur);
-                return cur;
-            }
-        };
+    /**
+     * @return <code>false</code> if the tile would not fit into its cell in the given rotation.
+     */
+    private boolean isValidRotation(Tile tile, int rotation) {
+        return rotation % 2 == 0 || tile.getWidth() == tile.getHeight();
     }
 
+    /**
+     * @return <code>true</code> if the borders differ in at most maxEdgeCountDiff bits, like in
+     *         {@link #findMatches(TileInfo, BitSet, List, Function, int)}.
+     */
+    private boolean bordersMatch(BitSet border, BitSet otherBorder, int maxEdgeCountDiff) {
+        if (Math.abs(otherBorder.cardinality() - border.cardinality()) > maxEdgeCountDiff) {
+            return false;
+        }
+        BitSet workBitSet = (BitSet) otherBorder.clone();
+        workBitSet.xor(border);
+        return workBitSet.cardinality() <= maxEdgeCountDiff;
+    }
+
+    /**
+     * Find all candidates whose border differs from tBitSet in at most maxEdgeCountDiff bits. The candidates are scored
+     * by how much their edge count differs. Only reads the given data, so can be called for multiple tiles in parallel.
+     */
+    private List<Pair<TileInfo, Double>> findMatches(TileInfo t, BitSet tBitSet, List<TileInfo> candidates,
+                    Function<TileInfo, BitSet> otherBitSetProvider, int maxEdgeCountDiff) {
+        List<Pair<TileInfo, Double>> res = new ArrayList<>();
+        int cardinality = tBitSet.cardinality();
+        for (TileInfo interestingTile : candidates) {
+            if (interestingTile.getTileIndex() == t.getTileIndex()) {
+                continue;
+            }
+            BitSet otherBitSet = otherBitSetProvider.apply(interestingTile);
+            int absDelta = Math.abs(otherBitSet.cardinality() - cardinality);
+            if (absDelta > maxEdgeCountDiff) {
+                continue;
+            }
+            BitSet workBitSet = (BitSet) otherBitSet.clone();
+            workBitSet.xor(tBitSet);
+
+            if (workBitSet.cardinality() <= maxEdgeCountDiff) {
+                res.add(new Pair<>(interestingTile, (double) (maxEdgeCountDiff - absDelta)));
+            }
+        }
+        return res;
+    }
 }
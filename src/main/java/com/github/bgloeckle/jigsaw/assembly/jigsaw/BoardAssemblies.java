@@ -0,0 +1,66 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+import com.github.bgloeckle.jigsaw.image.Image;
+
+/**
+ * Helper for {@link JigsawSolverStrategy}s to create {@link Assembly}s out of a board of {@link TileInfo}s.
+ *
+ * @author Bastian Gloeckle
+ */
+/* package */ class BoardAssemblies {
+    private BoardAssemblies() {
+    }
+
+    /**
+     * Create a new {@link Assembly} from the given board. The tiles on the board are placed next to each other,
+     * respecting the actual size of each tile. Each column is as wide as its widest tile.
+     *
+     * <p>
+     * The returned {@link Assembly} does not reference the board, the board can therefore be changed afterwards.
+     *
+     * @param board
+     *            Fully set board, indexed [x][y].
+     */
+    public static Assembly toAssembly(Image origImage, TileInfo[][] board) {
+        NavigableMap<Integer, NavigableMap<Integer, Tile>> tiles = new TreeMap<>();
+        int destX = 0;
+        for (int x = 0; x < board.length; x++) {
+            NavigableMap<Integer, Tile> column = new TreeMap<>();
+            int destY = 0;
+            int columnWidth = 0;
+            for (int y = 0; y < board[x].length; y++) {
+                column.put(destY, board[x][y].getTile());
+                destY += board[x][y].getTile().getHeight();
+                columnWidth = Math.max(columnWidth, board[x][y].getTile().getWidth());
+            }
+            tiles.put(destX, column);
+            destX += columnWidth;
+        }
+        return new Assembly(origImage, tiles);
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Locality-sensitive hashing index of one border of all tiles, which finds tiles whose border is likely to be within a
+ * small Hamming distance of a given border without comparing it to the borders of all tiles.
+ *
+ * <p>
+ * Edge borders are sparse, so the index hashes the positions of the set bits (MinHash): Each table applies a few
+ * random hash functions to all set positions of a border and keys the border by the minimum of each. Two borders
+ * collide in a table with probability J^k, where J is the Jaccard similarity of their set positions and k is the
+ * number of hash functions of a table. Borders that share most of their edge pixels therefore collide in at least one
+ * of the tables with high probability, while borders whose edges are at different positions rarely collide. Borders
+ * without any edge have no key: They are neither indexed nor returned as candidates, as they carry no information
+ * about the neighbour.
+ *
+ * <p>
+ * Like the exact search in {@link AssemblyJigsaw#buildGraph()}, only tiles whose border cardinality differs by at most
+ * the max edge count diff are returned. The result is only a candidate set: It may contain distant borders and may
+ * (rarely) miss close ones, the caller has to verify the actual distance.
+ *
+ * @author Bastian Gloeckle
+ */
+/* package */ class BorderLshIndex {
+    /** Number of hash functions whose minimums form the key of a table. */
+    private static final int HASHES_PER_TABLE = 4;
+    /**
+     * Number of tables. With {@link #HASHES_PER_TABLE}, borders whose set positions have a Jaccard similarity of 0.8
+     * are found with a probability of more than 99.9%, those with a similarity of 0.5 with about 87%.
+     */
+    private static final int TABLE_COUNT = 32;
+
+    private TileInfo[] tilesById;
+    private int[] cardinalityById;
+    private int maxEdgeCountDiff;
+    private long[][] hashSeeds;
+    private List<Map<Long, List<TileInfo>>> tables;
+
+    /**
+     * @param borderFn
+     *            Selects the border of a tile that is indexed.
+     * @param maxEdgeCountDiff
+     *            Maximum difference of the number of set bits of a candidate border and the queried border.
+     * @param seed
+     *            Seed for choosing the hash functions, so the index is deterministic.
+     */
+    /* package */ BorderLshIndex(List<TileInfo> tiles, Function<TileInfo, BitSet> borderFn, int maxEdgeCountDiff,
+                    long seed) {
+        this.maxEdgeCountDiff = maxEdgeCountDiff;
+        SplittableRandom random = new SplittableRandom(seed);
+        hashSeeds = new long[TABLE_COUNT][HASHES_PER_TABLE];
+        for (int table = 0; table < TABLE_COUNT; table++) {
+            for (int i = 0; i < HASHES_PER_TABLE; i++) {
+                hashSeeds[table][i] = random.nextLong();
+            }
+        }
+
+        int maxId = -1;
+        for (TileInfo t : tiles) {
+            maxId = Math.max(maxId, t.getId());
+        }
+        tilesById = new TileInfo[maxId + 1];
+        cardinalityById = new int[maxId + 1];
+        tables = new ArrayList<>(TABLE_COUNT);
+        for (int table = 0; table < TABLE_COUNT; table++) {
+            tables.add(new HashMap<>());
+        }
+        for (TileInfo t : tiles) {
+            BitSet border = borderFn.apply(t);
+            tilesById[t.getId()] = t;
+            cardinalityById[t.getId()] = border.cardinality();
+            if (border.isEmpty()) {
+                continue;
+            }
+            for (int table = 0; table < TABLE_COUNT; table++) {
+                tables.get(table).computeIfAbsent(hash(table, border), k -> new ArrayList<>()).add(t);
+            }
+        }
+    }
+
+    /**
+     * @return All indexed tiles whose border collides with the given border in at least one table and whose
+     *         cardinality differs by at most the max edge count diff, each tile once, in order of their id. Empty if
+     *         the given border has no set bit.
+     */
+    /* package */ List<TileInfo> findCandidates(BitSet border) {
+        if (border.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int cardinality = border.cardinality();
+        BitSet candidateIds = new BitSet(tilesById.length);
+        for (int table = 0; table < TABLE_COUNT; table++) {
+            List<TileInfo> bucket = tables.get(table).get(hash(table, border));
+            if (bucket != null) {
+                for (TileInfo t : bucket) {
+                    if (Math.abs(cardinalityById[t.getId()] - cardinality) <= maxEdgeCountDiff) {
+                        candidateIds.set(t.getId());
+                    }
+                }
+            }
+        }
+
+        List<TileInfo> res = new ArrayList<>(candidateIds.cardinality());
+        for (int id = candidateIds.nextSetBit(0); id >= 0; id = candidateIds.nextSetBit(id + 1)) {
+            res.add(tilesById[id]);
+        }
+        return res;
+    }
+
+    /**
+     * @return The key of a non-empty border in the given table: The minimums of the hash functions of the table over
+     *         all set positions, combined.
+     */
+    private long hash(int table, BitSet border) {
+        long res = 0;
+        for (long hashSeed : hashSeeds[table]) {
+            long min = Long.MAX_VALUE;
+            for (int bit = border.nextSetBit(0); bit >= 0; bit = border.nextSetBit(bit + 1)) {
+                min = Math.min(min, mix(hashSeed + bit));
+            }
+            res = mix(res ^ min);
+        }
+        return res;
+    }
+
+    /**
+     * @return The finalizer of MurmurHash3, which scrambles the bits of the given value.
+     */
+    private static long mix(long value) {
+        long res = value;
+        res ^= res >>> 33;
+        res *= 0xff51afd7ed558ccdL;
+        res ^= res >>> 33;
+        res *= 0xc4ceb93e10fe1a85L;
+        res ^= res >>> 33;
+        return res;
+    }
+}
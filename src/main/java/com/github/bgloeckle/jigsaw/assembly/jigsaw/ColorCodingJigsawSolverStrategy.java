@@ -20,9 +20,18 @@
  */
 package com.github.bgloeckle.jigsaw.assembly.jigsaw;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -34,7 +43,8 @@ import com.github.bgloeckle.jigsaw.assembly.Assembly;
 import com.github.bgloeckle.jigsaw.colorcoding.ColorCoding;
 import com.github.bgloeckle.jigsaw.image.Image;
 import com.github.bgloeckle.jigsaw.util.Pair;
-import com.google.common.collect.Sets;
+import com.github.bgloeckle.jigsaw.util.RandomProvider;
+import com.github.bgloeckle.jigsaw.util.WordBitSets;
 
 /**
  * A {@link JigsawSolverStrategy} which uses {@link ColorCoding} to select the left-sided tiles, startuing from those it
@@ -48,10 +58,45 @@ import com.google.common.collect.Sets;
 public class ColorCodingJigsawSolverStrategy implements JigsawSolverStrategy {
     private static final Logger logger = LoggerFactory.getLogger(ColorCodingJigsawSolverStrategy.class);
 
+    /** Number of positions right of the left column whose subtrees are split into separate tasks. */
+    private static final int SPLIT_DEPTH = 8;
+    /** Do not split if the current thread has more than this many tasks queued that were not stolen yet. */
+    private static final int MAX_SURPLUS_TASKS = 2;
+
+    private int maxSolutions;
+    private RandomProvider randomProvider;
+
+    /**
+     * Find all solutions.
+     */
+    public ColorCodingJigsawSolverStrategy() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSolutions
+     *            Stop searching as soon as this many solutions have been found.
+     */
+    public ColorCodingJigsawSolverStrategy(int maxSolutions) {
+        this(maxSolutions, RandomProvider.UNSEEDED);
+    }
+
+    /**
+     * @param randomProvider
+     *            Provides the random colors of {@link ColorCoding}.
+     * @see #ColorCodingJigsawSolverStrategy(int)
+     */
+    public ColorCodingJigsawSolverStrategy(int maxSolutions, RandomProvider randomProvider) {
+        this.maxSolutions = maxSolutions;
+        this.randomProvider = randomProvider;
+    }
+
     @Override
-    public Set<Assembly> solve(Image origImage, Collection<TileInfo> graph, int tileCountWidth, int tileCountHeight) {
-        ColorCoding<TileInfo> colorCoding = new ColorCoding<>(graph);
-        Set<TileInfo> potentialLeftTiles = colorCoding.findVerticesWithLengthGreater(tileCountWidth);
+    public Set<Assembly> solve(Image origImage, Collection<TileInfo> graph, int tileCountWidth, int tileCountHeight,
+                    SolutionListener listener) {
+        ColorCoding<TileInfo> colorCoding = new ColorCoding<>(graph, randomProvider);
+        Set<TileInfo> potentialLeftTiles = colorCoding.findVerticesWithLengthGreater(tileCountWidth,
+                        listener.getContext());
 
         if (potentialLeftTiles.size() < tileCountHeight) {
             logger.warn("Did not find enough tiles that could potentially be placed on the left border. Found {} but need {}.",
@@ -60,124 +105,417 @@ public class ColorCodingJigsawSolverStrategy implements JigsawSolverStrategy {
         }
 
         logger.debug("Placing left tiles in all combinations and trying to find solutions");
-        ThreadLocal<TileInfo[][]> boards = ThreadLocal.withInitial(() -> new TileInfo[tileCountWidth][tileCountHeight]);
-        potentialLeftTiles.stream().parallel().forEach(startTile -> {
-            TileInfo[][] board = boards.get();
-            Set<TileInfo> visited = new HashSet<>();
-            for (int y = 0; y < board[0].length; y++) {
-                // try to place this tile at all x=0 locations.
-                visited.clear();
-                board[0][y] = startTile;
-                fillLeftSide(board, y, visited, () -> {
-                    logger.debug("Inspecting possibilities with left side: {}", IntStream.range(0, board[0].length)
-                                    .mapToObj(ty -> board[0][ty]).collect(Collectors.toList()));
-                    for (Pair<TileInfo, Double> p : board[0][0].getNextRight()) {
-                        if (!visited.contains(p.getLeft())) {
-                            board[1][0] = p.getLeft();
-                            findAllPossibleSolutions(board, 1, 0, visited, 0., tileCountWidth, tileCountHeight,
-                                            solutionPair -> {
-                                                System.out.println("Found new solution: " + solutionPair);
-                                            });
-                            board[1][0] = null;
-                        }
-                    }
-                });
-                board[0][y] = null;
+        Set<Assembly> res = ConcurrentHashMap.newKeySet();
+        AtomicInteger numberOfSolutions = new AtomicInteger(0);
+        Consumer<Pair<TileInfo[][], Double>> resConsumer = solutionPair -> {
+            if (numberOfSolutions.incrementAndGet() <= maxSolutions) {
+                logger.debug("Found new solution with judgement {}", solutionPair.getRight());
+                Assembly assembly = BoardAssemblies.toAssembly(origImage, solutionPair.getLeft());
+                res.add(assembly);
+                listener.solutionFound(assembly);
+            }
+        };
+        BooleanSupplier done = () -> numberOfSolutions.get() >= maxSolutions || listener.isDone();
+
+        TileInfo[] tilesById = new TileInfo[graph.size()];
+        for (TileInfo t : graph) {
+            tilesById[t.getId()] = t;
+        }
+        Search search = new Search(new NeighbourMasks(tilesById), tileCountWidth, tileCountHeight, done, resConsumer,
+                        new SearchCache(graph.size(), tileCountWidth, tileCountHeight));
+        List<ForkJoinTask<?>> leftTasks = new ArrayList<>();
+        for (TileInfo startTile : potentialLeftTiles) {
+            for (int y = 0; y < tileCountHeight; y++) {
+                int startY = y;
+                leftTasks.add(ForkJoinTask.adapt(() -> search.searchLeftColumn(startTile, startY)));
             }
-        });
-        return null;
+        }
+        ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(leftTasks)));
+        logger.debug("Transposition table had {} hits and {} misses", search.cache.table.getHits(),
+                        search.cache.table.getMisses());
+        return res;
     }
 
-    private void fillLeftSide(TileInfo[][] board, int curY, Set<TileInfo> visited, Runnable innerExecution) {
-        TileInfo curTile = board[0][curY];
-        visited.add(curTile);
-        try {
-            if (curY > 0 && board[0][curY - 1] == null) {
-                // go up
-                for (Pair<TileInfo, Double> p : curTile.getNextTop()) {
-                    if (!visited.contains(p.getLeft())) {
-                        board[0][curY - 1] = p.getLeft();
-                        fillLeftSide(board, curY - 1, visited, innerExecution);
-                        board[0][curY - 1] = null;
+    /**
+     * State of the search of one call to {@link ColorCodingJigsawSolverStrategy#solve(Image, Collection, int, int,
+     * SolutionListener)} that is shared between all threads.
+     *
+     * <p>
+     * The left columns are searched by separate tasks of the {@link ForkJoinPool#commonPool()}. The first positions
+     * right of the left column are split into {@link SearchTask}s, each working on its own copy of the
+     * {@link SearchState}, so idle threads can steal large subtrees from busy ones.
+     */
+    private class Search {
+        private NeighbourMasks masks;
+        private int tileCountWidth;
+        private int tileCountHeight;
+        private BooleanSupplier done;
+        private Consumer<Pair<TileInfo[][], Double>> resConsumer;
+        private SearchCache cache;
+
+        private Search(NeighbourMasks masks, int tileCountWidth, int tileCountHeight, BooleanSupplier done,
+                        Consumer<Pair<TileInfo[][], Double>> resConsumer, SearchCache cache) {
+            this.masks = masks;
+            this.tileCountWidth = tileCountWidth;
+            this.tileCountHeight = tileCountHeight;
+            this.done = done;
+            this.resConsumer = resConsumer;
+            this.cache = cache;
+        }
+
+        /**
+         * Find all solutions with the given tile at the given position of the left column.
+         */
+        private void searchLeftColumn(TileInfo startTile, int y) {
+            SearchState state = new SearchState(masks, tileCountWidth, tileCountHeight);
+            TileInfo[][] board = state.board;
+            board[0][y] = startTile;
+            fillLeftSide(state, y, () -> {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Inspecting possibilities with left side: {}", IntStream.range(0, board[0].length)
+                                    .mapToObj(ty -> board[0][ty]).collect(Collectors.toList()));
+                }
+                if (tileCountWidth == 1) {
+                    resConsumer.accept(new Pair<>(board, 0.));
+                    return;
+                }
+                long usedHash = cache.usedHash(board[0]);
+                List<SearchTask> tasks = shouldSplit(1, 0) ? new ArrayList<>() : null;
+                Neighbours right = board[0][0].getNextRight();
+                for (int i = 0; i < right.size(); i++) {
+                    if (!state.isUsed(right.getId(i))) {
+                        descend(state, 1, 0, right.getTile(i), usedHash, 0., tasks);
                     }
                 }
+                joinAll(tasks);
+            });
+        }
+
+        private void fillLeftSide(SearchState state, int curY, Runnable innerExecution) {
+            if (done.getAsBoolean()) {
                 return;
             }
-            if (curY == 0) {
-                while (curY < board[0].length && board[0][curY] != null) {
-                    curY++;
+            TileInfo[][] board = state.board;
+            TileInfo entryTile = board[0][curY];
+            state.place(entryTile);
+            try {
+                TileInfo curTile = entryTile;
+                if (curY > 0 && board[0][curY - 1] == null) {
+                    // go up
+                    Neighbours top = curTile.getNextTop();
+                    for (int i = 0; i < top.size(); i++) {
+                        if (!state.isUsed(top.getId(i))) {
+                            board[0][curY - 1] = top.getTile(i);
+                            fillLeftSide(state, curY - 1, innerExecution);
+                            board[0][curY - 1] = null;
+                        }
+                    }
+                    return;
                 }
-                if (curY < board[0].length && board[0][curY] == null) {
-                    curY--;
+                if (curY == 0) {
+                    while (curY < board[0].length && board[0][curY] != null) {
+                        curY++;
+                    }
+                    if (curY < board[0].length && board[0][curY] == null) {
+                        curY--;
+                    }
+                }
+                if (curY < board[0].length - 1) {
+                    curTile = board[0][curY];
+
+                    // go down
+                    Neighbours bottom = curTile.getNextBottom();
+                    for (int i = 0; i < bottom.size(); i++) {
+                        if (!state.isUsed(bottom.getId(i))) {
+                            board[0][curY + 1] = bottom.getTile(i);
+                            fillLeftSide(state, curY + 1, innerExecution);
+                            board[0][curY + 1] = null;
+                        }
+                    }
+                    return;
                 }
+
+                // we're fully down, execute inner stuff
+                innerExecution.run();
+            } finally {
+                state.remove(entryTile);
+            }
+        }
+
+        /**
+         * Place the tile at the given position and recursively fill the remaining board, column by column.
+         *
+         * <p>
+         * The remaining search only depends on the position, the tiles that were used already and the "frontier": the
+         * last tileCountHeight tiles placed, which are the neighbours of all tiles placed later. The number of
+         * solutions found from such a state is stored in the {@link SearchCache}, if the same state is reached again
+         * (e.g. via a different left column) and is known to have no solution, it is skipped.
+         *
+         * @param usedHash
+         *            {@link SearchCache#usedHash(TileInfo[])} of the tiles placed so far.
+         * @return The number of solutions found.
+         */
+        private int findAllPossibleSolutions(SearchState state, int curX, int curY, long usedHash,
+                        double curJudgement) {
+            if (done.getAsBoolean()) {
+                return 0;
+            }
+
+            TileInfo[][] board = state.board;
+            TileInfo curTile = board[curX][curY];
+
+            if (state.isUsed(curTile.getId())) {
+                return 0;
             }
-            if (curY < board[0].length - 1) {
-                curTile = board[0][curY];
 
-                // go down
-                for (Pair<TileInfo, Double> p : curTile.getNextBottom()) {
-                    if (!visited.contains(p.getLeft())) {
-                        board[0][curY + 1] = p.getLeft();
-                        fillLeftSide(board, curY + 1, visited, innerExecution);
-                        board[0][curY + 1] = null;
+            // logger.trace("Inspecting with tile at pos {}: {}", new Pair<>(curX, curY), curTile);
+            state.place(curTile);
+            usedHash ^= cache.usedKey(curTile);
+
+            int solutions = 0;
+            if (curX == tileCountWidth - 1 && curY == tileCountHeight - 1) {
+                // all tiles placed.
+                resConsumer.accept(new Pair<>(board, curJudgement));
+                solutions = 1;
+            } else {
+                long stateKey = cache.stateKey(board, curX, curY, usedHash);
+                if (cache.table.get(stateKey) == 0) {
+                    // known dead end.
+                    state.remove(curTile);
+                    return 0;
+                }
+
+                if (curY == board[0].length - 1) {
+                    // next column to the right
+                    List<SearchTask> tasks = shouldSplit(curX + 1, 0) ? new ArrayList<>() : null;
+                    Neighbours right = board[curX][0].getNextRight();
+                    for (int i = 0; i < right.size(); i++) {
+                        if (!state.isUsed(right.getId(i))) {
+                            solutions += descend(state, curX + 1, 0, right.getTile(i), usedHash, curJudgement, tasks);
+                        }
+                    }
+                    solutions += joinAll(tasks);
+                } else {
+                    // next down in same column: tiles that fit below the current one and right of the one on the
+                    // left.
+                    long[] candidates = state.candidates(curX * tileCountHeight + curY + 1);
+                    if (state.findCandidates(candidates, masks.get(NeighbourMasks.BOTTOM, curTile.getId()),
+                                    masks.get(NeighbourMasks.RIGHT, board[curX - 1][curY + 1].getId()))) {
+                        List<SearchTask> tasks = shouldSplit(curX, curY + 1) ? new ArrayList<>() : null;
+                        // walk the candidates in the order of their score.
+                        Neighbours bottom = curTile.getNextBottom();
+                        for (int i = 0; i < bottom.size(); i++) {
+                            if (WordBitSets.get(candidates, bottom.getId(i))) {
+                                solutions += descend(state, curX, curY + 1, bottom.getTile(i), usedHash,
+                                                curJudgement, tasks);
+                            }
+                        }
+                        solutions += joinAll(tasks);
                     }
                 }
-                return;
+
+                if (solutions == 0 && !done.getAsBoolean()) {
+                    // only fully explored dead ends are cached, any other state is explored again when reached.
+                    cache.table.put(stateKey, solutions);
+                }
             }
 
-            // we're fully down, execute inner stuff
-            innerExecution.run();
-        } finally {
-            visited.remove(curTile);
+            state.remove(curTile);
+            return solutions;
+        }
+
+        /**
+         * Search with the given tile at the given position: Directly, or if tasks is not <code>null</code>, by adding
+         * a new {@link SearchTask} working on a copy of the state to tasks.
+         *
+         * @return The number of solutions found directly.
+         */
+        private int descend(SearchState state, int x, int y, TileInfo tile, long usedHash, double curJudgement,
+                        List<SearchTask> tasks) {
+            if (tasks != null) {
+                SearchState copy = state.copy();
+                copy.board[x][y] = tile;
+                tasks.add(new SearchTask(this, copy, x, y, usedHash, curJudgement));
+                return 0;
+            }
+            state.board[x][y] = tile;
+            int res = findAllPossibleSolutions(state, x, y, usedHash, curJudgement);
+            state.board[x][y] = null;
+            return res;
+        }
+
+        /**
+         * @return <code>true</code> if the tiles at the given position should be searched by separate
+         *         {@link SearchTask}s.
+         */
+        private boolean shouldSplit(int x, int y) {
+            return x * tileCountHeight + y < tileCountHeight + SPLIT_DEPTH
+                            && ForkJoinTask.getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS;
+        }
+
+        /**
+         * Run all tasks, possibly in parallel.
+         *
+         * @return The number of solutions found by the tasks.
+         */
+        private int joinAll(List<SearchTask> tasks) {
+            if (tasks == null) {
+                return 0;
+            }
+            int res = 0;
+            for (SearchTask task : ForkJoinTask.invokeAll(tasks)) {
+                res += task.join();
+            }
+            return res;
         }
     }
 
-    private void findAllPossibleSolutions(TileInfo[][] board, int curX, int curY, Set<TileInfo> visited,
-                    double curJudgement, int tileCountWidth, int tileCountHeight,
-                    Consumer<Pair<TileInfo[][], Double>> resConsumer) {
-        if (visited.size() == tileCountHeight * tileCountWidth) {
-            resConsumer.accept(new Pair<>(board, curJudgement));
-            return;
+    /**
+     * Searches a subtree of {@link Search#findAllPossibleSolutions(SearchState, int, int, long, double)} on its own
+     * {@link SearchState}.
+     */
+    private static class SearchTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private transient Search search;
+        private transient SearchState state;
+        private int x;
+        private int y;
+        private long usedHash;
+        private double curJudgement;
+
+        private SearchTask(Search search, SearchState state, int x, int y, long usedHash, double curJudgement) {
+            this.search = search;
+            this.state = state;
+            this.x = x;
+            this.y = y;
+            this.usedHash = usedHash;
+            this.curJudgement = curJudgement;
         }
 
-        TileInfo curTile = board[curX][curY];
+        @Override
+        protected Integer compute() {
+            return search.findAllPossibleSolutions(state, x, y, usedHash, curJudgement);
+        }
+    }
+
+    /**
+     * The board and the used tiles of a search that is executed by a single thread at a time.
+     */
+    private static class SearchState {
+        private NeighbourMasks masks;
+        private TileInfo[][] board;
+        /** Ids of all vertices whose tile is placed on the board, see {@link TileInfo#getTileIndex()}. */
+        private long[] usedIds;
+        /** Indexed by x * tileCountHeight + y: Space for the candidates of that position, allocated on first use. */
+        private long[][] candidates;
 
-        if (visited.contains(curTile)) {
-            return;
+        private SearchState(NeighbourMasks masks, int tileCountWidth, int tileCountHeight) {
+            this.masks = masks;
+            board = new TileInfo[tileCountWidth][tileCountHeight];
+            usedIds = new long[masks.getWordCount()];
+            candidates = new long[tileCountWidth * tileCountHeight][];
         }
 
-        // logger.trace("Inspecting with tile at pos {}: {}", new Pair<>(curX, curY), curTile);
-        visited.add(curTile);
+        /**
+         * @return A copy of the board and the used tiles that can be used independently of this state.
+         */
+        private SearchState copy() {
+            SearchState res = new SearchState(masks, board.length, board[0].length);
+            for (int x = 0; x < board.length; x++) {
+                System.arraycopy(board[x], 0, res.board[x], 0, board[x].length);
+            }
+            System.arraycopy(usedIds, 0, res.usedIds, 0, usedIds.length);
+            return res;
+        }
 
-        if (curY == board[0].length - 1) {
-            // next column to the right
-            for (Pair<TileInfo, Double> p : board[curX][0].getNextRight()) {
-                if (!visited.contains(p.getLeft())) {
-                    board[curX + 1][0] = p.getLeft();
-                    findAllPossibleSolutions(board, curX + 1, 0, visited, curJudgement, tileCountWidth, tileCountHeight,
-                                    resConsumer);
-                    board[curX + 1][0] = null;
-                }
+        private boolean isUsed(int id) {
+            return WordBitSets.get(usedIds, id);
+        }
+
+        private void place(TileInfo tile) {
+            WordBitSets.or(usedIds, masks.getTile(tile.getTileIndex()));
+        }
+
+        private void remove(TileInfo tile) {
+            WordBitSets.andNot(usedIds, masks.getTile(tile.getTileIndex()));
+        }
+
+        private long[] candidates(int position) {
+            if (candidates[position] == null) {
+                candidates[position] = new long[usedIds.length];
             }
-        } else {
-            // next down in same column
-            Set<TileInfo> bottomSet = curTile.getNextBottom().stream().map(p -> p.getLeft())
-                            .collect(Collectors.toSet());
-            Set<TileInfo> rightSet = board[curX - 1][curY + 1].getNextRight().stream().map(p -> p.getLeft())
-                            .collect(Collectors.toSet());
-            Set<TileInfo> possibleTiles = Sets.difference(Sets.intersection(bottomSet, rightSet), visited);
-            if (!possibleTiles.isEmpty()) {
-                logger.debug("Will try {} variants advancing down", possibleTiles.size());
+            return candidates[position];
+        }
+
+        /**
+         * Fill target with the ids that are in both masks and whose tile is not used yet.
+         *
+         * @return <code>false</code> if there is no such id.
+         */
+        private boolean findCandidates(long[] target, long[] mask1, long[] mask2) {
+            if (!WordBitSets.and(target, mask1, mask2)) {
+                return false;
             }
-            for (TileInfo t : possibleTiles) {
-                board[curX][curY + 1] = t;
-                findAllPossibleSolutions(board, curX, curY + 1, visited, curJudgement, tileCountWidth, tileCountHeight,
-                                resConsumer);
-                board[curX][curY + 1] = null;
+            WordBitSets.andNot(target, usedIds);
+            return !WordBitSets.isEmpty(target);
+        }
+    }
+
+    /**
+     * Zobrist hashing of the states of {@link ColorCodingJigsawSolverStrategy#findAllPossibleSolutions} and a
+     * {@link TranspositionTable} of the states that are known to be dead ends.
+     */
+    private static class SearchCache {
+        private static final int TABLE_CAPACITY = 1 << 18;
+        private static final long SEED = 0x2c1b3c6dL;
+
+        private TranspositionTable table = new TranspositionTable(TABLE_CAPACITY);
+        /** Indexed by tile index. */
+        private long[] usedKeys;
+        /** Indexed by y and vertex id. */
+        private long[][] frontierKeys;
+        /** Indexed by x * tileCountHeight + y. */
+        private long[] positionKeys;
+        private int tileCountHeight;
+
+        private SearchCache(int vertexCount, int tileCountWidth, int tileCountHeight) {
+            this.tileCountHeight = tileCountHeight;
+            Random random = new Random(SEED);
+            usedKeys = random.longs(vertexCount).toArray();
+            frontierKeys = new long[tileCountHeight][];
+            for (int y = 0; y < tileCountHeight; y++) {
+                frontierKeys[y] = random.longs(vertexCount).toArray();
+            }
+            positionKeys = random.longs(tileCountWidth * tileCountHeight).toArray();
+        }
+
+        private long usedKey(TileInfo tile) {
+            return usedKeys[tile.getTileIndex()];
+        }
+
+        /**
+         * @return Hash of the tile indices of the given tiles.
+         */
+        private long usedHash(TileInfo[] tiles) {
+            long res = 0;
+            for (TileInfo tile : tiles) {
+                res ^= usedKey(tile);
             }
+            return res;
         }
 
-        visited.remove(curTile);
+        /**
+         * @return Hash of the state after placing the tile at (curX, curY).
+         */
+        private long stateKey(TileInfo[][] board, int curX, int curY, long usedHash) {
+            long res = usedHash ^ positionKeys[curX * tileCountHeight + curY];
+            for (int y = 0; y < tileCountHeight; y++) {
+                TileInfo frontierTile = (y <= curY) ? board[curX][y] : board[curX - 1][y];
+                res ^= frontierKeys[y][frontierTile.getId()];
+            }
+            return res;
+        }
     }
 
     @Override
@@ -0,0 +1,278 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.util.WordBitSets;
+
+/**
+ * A {@link JigsawSolverStrategy} that models each cell of the board as a variable whose domain are the
+ * {@link TileInfo}s that can still be placed there, solving it as a constraint satisfaction problem.
+ *
+ * <p>
+ * Two cells next to each other are constrained by the neighbours of the {@link TileInfo}s; additionally each tile can
+ * only be placed once. Domains are {@link WordBitSets} over the vertex ids. After each placement, the domains are made
+ * arc consistent using AC-3, so tiles that have no possible neighbour in an adjacent cell are removed early. The cell
+ * with the smallest domain is filled next.
+ *
+ * @author Bastian Gloeckle
+ */
+public class ConstraintPropagationJigsawSolverStrategy implements JigsawSolverStrategy {
+    private static final Logger logger = LoggerFactory.getLogger(ConstraintPropagationJigsawSolverStrategy.class);
+
+    private int maxSolutions;
+
+    /**
+     * Find all solutions.
+     */
+    public ConstraintPropagationJigsawSolverStrategy() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSolutions
+     *            Stop searching as soon as this many solutions have been found.
+     */
+    public ConstraintPropagationJigsawSolverStrategy(int maxSolutions) {
+        this.maxSolutions = maxSolutions;
+    }
+
+    @Override
+    public Set<Assembly> solve(Image origImage, Collection<TileInfo> graph, int tileCountWidth, int tileCountHeight,
+                    SolutionListener listener) {
+        TileInfo[] tilesById = new TileInfo[graph.size()];
+        for (TileInfo t : graph) {
+            tilesById[t.getId()] = t;
+        }
+        Search search = new Search(origImage, tilesById, tileCountWidth, tileCountHeight, listener);
+
+        long[][] domains = new long[tileCountWidth * tileCountHeight][];
+        for (int cell = 0; cell < domains.length; cell++) {
+            domains[cell] = WordBitSets.full(tilesById.length);
+        }
+        Deque<Integer> arcs = new ArrayDeque<>();
+        boolean[] queuedArcs = new boolean[4 * domains.length];
+        for (int cell = 0; cell < domains.length; cell++) {
+            search.enqueueArcsTo(cell, arcs, queuedArcs);
+        }
+        if (!search.propagate(domains, arcs, queuedArcs)) {
+            logger.debug("Initial domains are not arc consistent, there is no solution");
+            return search.res;
+        }
+
+        search.search(domains, new boolean[domains.length], 0);
+        logger.debug("Found {} solutions after placing {} tiles", search.res.size(), search.placements);
+        return search.res;
+    }
+
+    /**
+     * State of the search of one call to {@link ConstraintPropagationJigsawSolverStrategy#solve(Image, Collection,
+     * int, int, SolutionListener)}. Cells are indexed by x * tileCountHeight + y.
+     */
+    private class Search {
+        private Image origImage;
+        private TileInfo[] tilesById;
+        private NeighbourMasks masks;
+        private int tileCountWidth;
+        private int tileCountHeight;
+        private SolutionListener listener;
+
+        private Set<Assembly> res = new HashSet<>();
+        private long placements = 0;
+
+        private Search(Image origImage, TileInfo[] tilesById, int tileCountWidth, int tileCountHeight,
+                        SolutionListener listener) {
+            this.origImage = origImage;
+            this.tilesById = tilesById;
+            this.masks = new NeighbourMasks(tilesById);
+            this.tileCountWidth = tileCountWidth;
+            this.tileCountHeight = tileCountHeight;
+            this.listener = listener;
+        }
+
+        private boolean isDone() {
+            return res.size() >= maxSolutions || listener.isDone();
+        }
+
+        private void search(long[][] domains, boolean[] assigned, int assignedCount) {
+            if (assignedCount == domains.length) {
+                solutionFound(domains);
+                return;
+            }
+
+            // most constrained cell first.
+            int cell = -1;
+            int cellCardinality = Integer.MAX_VALUE;
+            for (int c = 0; c < domains.length; c++) {
+                if (!assigned[c]) {
+                    int cardinality = WordBitSets.cardinality(domains[c]);
+                    if (cardinality < cellCardinality) {
+                        cell = c;
+                        cellCardinality = cardinality;
+                    }
+                }
+            }
+
+            long[] values = domains[cell];
+            for (int id = WordBitSets.nextSetBit(values, 0); id >= 0 && !isDone(); id = WordBitSets
+                            .nextSetBit(values, id + 1)) {
+                placements++;
+                long[][] newDomains = new long[domains.length][];
+                for (int c = 0; c < domains.length; c++) {
+                    newDomains[c] = domains[c].clone();
+                }
+                if (place(newDomains, cell, id)) {
+                    assigned[cell] = true;
+                    search(newDomains, assigned, assignedCount + 1);
+                    assigned[cell] = false;
+                }
+            }
+        }
+
+        /**
+         * Place the given vertex in the given cell, remove its tile from all other cells and propagate the changes.
+         *
+         * @return <code>false</code> if some cell cannot be filled anymore.
+         */
+        private boolean place(long[][] domains, int cell, int id) {
+            Deque<Integer> arcs = new ArrayDeque<>();
+            boolean[] queuedArcs = new boolean[4 * domains.length];
+
+            long[] tileMask = masks.getTile(tilesById[id].getTileIndex());
+            for (int c = 0; c < domains.length; c++) {
+                if (c == cell) {
+                    domains[c] = new long[domains[c].length];
+                    WordBitSets.set(domains[c], id);
+                    enqueueArcsTo(c, arcs, queuedArcs);
+                } else if (WordBitSets.andNot(domains[c], tileMask)) {
+                    if (WordBitSets.isEmpty(domains[c])) {
+                        return false;
+                    }
+                    enqueueArcsTo(c, arcs, queuedArcs);
+                }
+            }
+            return propagate(domains, arcs, queuedArcs);
+        }
+
+        /**
+         * AC-3: Revise the given arcs until all domains are arc consistent.
+         *
+         * @param arcs
+         *            Arcs encoded as 4 * cell + direction. The domain of the cell is revised against the domain of
+         *            the neighbour cell in that direction.
+         * @return <code>false</code> if some domain became empty.
+         */
+        private boolean propagate(long[][] domains, Deque<Integer> arcs, boolean[] queuedArcs) {
+            while (!arcs.isEmpty()) {
+                int arc = arcs.poll();
+                queuedArcs[arc] = false;
+                int cell = arc >>> 2;
+                int direction = arc & 3;
+                if (revise(domains, cell, direction)) {
+                    if (WordBitSets.isEmpty(domains[cell])) {
+                        return false;
+                    }
+                    enqueueArcsTo(cell, arcs, queuedArcs);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Remove all values from the domain of the cell that have no supporting value in the neighbour cell in the
+         * given direction.
+         *
+         * @return <code>true</code> if the domain changed.
+         */
+        private boolean revise(long[][] domains, int cell, int direction) {
+            long[] otherDomain = domains[neighbourCell(cell, direction)];
+            long[] domain = domains[cell];
+            boolean changed = false;
+            for (int id = WordBitSets.nextSetBit(domain, 0); id >= 0; id = WordBitSets.nextSetBit(domain, id + 1)) {
+                if (!WordBitSets.intersects(masks.get(direction, id), otherDomain)) {
+                    WordBitSets.clear(domain, id);
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Enqueue the arcs of all neighbour cells towards the given cell, whose domain changed.
+         */
+        private void enqueueArcsTo(int cell, Deque<Integer> arcs, boolean[] queuedArcs) {
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbour = neighbourCell(cell, direction);
+                if (neighbour != -1) {
+                    int arc = 4 * neighbour + NeighbourMasks.opposite(direction);
+                    if (!queuedArcs[arc]) {
+                        queuedArcs[arc] = true;
+                        arcs.add(arc);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return The cell next to the given one in the given direction or -1 if there is none.
+         */
+        private int neighbourCell(int cell, int direction) {
+            int x = cell / tileCountHeight;
+            int y = cell % tileCountHeight;
+            switch (direction) {
+            case NeighbourMasks.RIGHT:
+                return (x + 1 < tileCountWidth) ? cell + tileCountHeight : -1;
+            case NeighbourMasks.LEFT:
+                return (x > 0) ? cell - tileCountHeight : -1;
+            case NeighbourMasks.BOTTOM:
+                return (y + 1 < tileCountHeight) ? cell + 1 : -1;
+            default:
+                return (y > 0) ? cell - 1 : -1;
+            }
+        }
+
+        private void solutionFound(long[][] domains) {
+            TileInfo[][] board = new TileInfo[tileCountWidth][tileCountHeight];
+            for (int cell = 0; cell < domains.length; cell++) {
+                board[cell / tileCountHeight][cell % tileCountHeight] = tilesById[WordBitSets
+                                .nextSetBit(domains[cell], 0)];
+            }
+            Assembly assembly = BoardAssemblies.toAssembly(origImage, board);
+            res.add(assembly);
+            listener.solutionFound(assembly);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConstraintPropagationJigsawSolverStrategy []";
+    }
+}
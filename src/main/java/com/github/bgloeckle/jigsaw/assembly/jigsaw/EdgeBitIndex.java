@@ -0,0 +1,119 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.BitSet;
+
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+/**
+ * Index of the edge pixels of an edge {@link Image} that are relevant on tile borders, stored as bits of each row and
+ * each column.
+ *
+ * <p>
+ * A pixel on a horizontal border (top/bottom) is relevant if it is an edge that does not run along the border, i.e. is
+ * not {@link EdgeDirection#EAST_WEST}, analogous for vertical borders (left/right) and
+ * {@link EdgeDirection#NORTH_SOUTH}. As the index covers the whole image, the border of any tile of any cut variant can
+ * be extracted by shifting and masking words, without touching the single pixels again.
+ *
+ * @author Bastian Gloeckle
+ */
+public class EdgeBitIndex {
+    private int width;
+    private int height;
+
+    /** Bits of each row (index y), bit x set if the pixel is relevant on a horizontal border. */
+    private long[][] rowBits;
+    /** Bits of each column (index x), bit y set if the pixel is relevant on a vertical border. */
+    private long[][] columnBits;
+
+    public EdgeBitIndex(Image edgeImage) {
+        width = edgeImage.getWidth();
+        height = edgeImage.getHeight();
+        rowBits = new long[height][wordCount(width)];
+        columnBits = new long[width][wordCount(height)];
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (edgeImage.getColor(x, y) == 0) {
+                    continue;
+                }
+                EdgeDirection direction = EdgeDirection.fromGradientRadian(edgeImage.getDirection(x, y));
+                if (direction != EdgeDirection.EAST_WEST) {
+                    rowBits[y][x >>> 6] |= 1L << x;
+                }
+                if (direction != EdgeDirection.NORTH_SOUTH) {
+                    columnBits[x][y >>> 6] |= 1L << y;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Bits of the horizontal border in row y from fromX (inclusive, bit 0 of the result) with the given length.
+     */
+    public BitSet horizontalBorder(int y, int fromX, int length) {
+        return BitSet.valueOf(slice(rowBits[y], fromX, length));
+    }
+
+    /**
+     * @return Bits of the vertical border in column x from fromY (inclusive, bit 0 of the result) with the given
+     *         length.
+     */
+    public BitSet verticalBorder(int x, int fromY, int length) {
+        return BitSet.valueOf(slice(columnBits[x], fromY, length));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The bits [from, from + length) of the given words, shifted so that bit "from" is bit 0.
+     */
+    /* package */ static long[] slice(long[] words, int from, int length) {
+        long[] res = new long[wordCount(length)];
+        for (int i = 0; i < res.length; i++) {
+            int bit = from + (i << 6);
+            int word = bit >>> 6;
+            int shift = bit & 63;
+            long value = words[word] >>> shift;
+            if (shift != 0 && word + 1 < words.length) {
+                value |= words[word + 1] << (64 - shift);
+            }
+            res[i] = value;
+        }
+        int remainingBits = length & 63;
+        if (remainingBits != 0) {
+            res[res.length - 1] &= (1L << remainingBits) - 1;
+        }
+        return res;
+    }
+
+    private static int wordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+}
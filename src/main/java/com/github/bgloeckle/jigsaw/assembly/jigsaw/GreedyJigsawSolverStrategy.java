@@ -29,6 +29,7 @@ import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
@@ -42,7 +43,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.bgloeckle.jigsaw.assembly.Assembly;
-import com.github.bgloeckle.jigsaw.assembly.Tile;
 import com.github.bgloeckle.jigsaw.image.Image;
 import com.github.bgloeckle.jigsaw.util.Pair;
 import com.google.common.collect.Sets;
@@ -91,7 +91,8 @@ public class GreedyJigsawSolverStrategy implements JigsawSolverStrategy {
     };
 
     @Override
-    public Set<Assembly> solve(Image origImage, Collection<TileInfo> graph, int tileCountWidth, int tileCountHeight) {
+    public Set<Assembly> solve(Image origImage, Collection<TileInfo> graph, int tileCountWidth, int tileCountHeight,
+                    SolutionListener listener) {
         // SortedSet<Pair<Double, Pair<Pair<TileInfo, TileInfo>, Orientation>>> edges = new TreeSet<>(EDGE_COMPARATOR);
         // for (TileInfo source : graph) {
         // source.getNextRight().stream().forEach(p -> edges.add(new Pair<>(p.getRight(),
@@ -133,18 +134,24 @@ public class GreedyJigsawSolverStrategy implements JigsawSolverStrategy {
                         .collect(Collectors.toSet()));
 
         for (Pair<TileInfo, Pair<Integer, Integer>> startTilePair : startTiles) {
+            if (listener.isDone()) {
+                break;
+            }
             TileInfo[][] board = new TileInfo[tileCountWidth][tileCountHeight];
 
             TileInfo startTile = startTilePair.getLeft();
             Pair<Integer, Integer> startTilePos = startTilePair.getRight();
             board[startTilePos.getLeft()][startTilePos.getRight()] = startTile;
-            Set<TileInfo> visited = new HashSet<>();
+            // indices of the tiles placed on the board, see TileInfo#getTileIndex().
+            Set<Integer> visited = new HashSet<>();
 
             fillAll(board, startTilePos.getLeft(), startTilePos.getRight(), visited, tileCountWidth, tileCountHeight);
 
-            // fill up with tiles that did not have good edges
-            if (visited.size() != graph.size()) {
-                Set<TileInfo> remaining = Sets.difference(new HashSet<>(graph), visited);
+            // fill up with (unrotated) tiles that did not have good edges
+            if (visited.size() != tileCountWidth * tileCountHeight) {
+                List<TileInfo> remaining = graph.stream()
+                                .filter(t -> t.getTile().getRotation() == 0 && !visited.contains(t.getTileIndex()))
+                                .collect(Collectors.toList());
                 Iterator<TileInfo> it = remaining.iterator();
 
                 logger.debug("Need to fill up {} unset fields on board when using the following tile on {}: {}",
@@ -158,49 +165,40 @@ public class GreedyJigsawSolverStrategy implements JigsawSolverStrategy {
                 }
             }
 
-            int tileHeight = board[0][0].getTile().getHeight();
-            int tileWidth = board[0][0].getTile().getWidth();
-
-            NavigableMap<Integer, NavigableMap<Integer, Tile>> tiles = new TreeMap<>();
-            for (int x = 0; x < tileCountWidth; x++) {
-                tiles.put(x * tileWidth, new TreeMap<>());
-                for (int y = 0; y < tileCountHeight; y++) {
-                    tiles.get(x * tileWidth).put(y * tileHeight, board[x][y].getTile());
-                }
-            }
-
-            res.add(new Assembly(origImage, tiles));
+            Assembly assembly = BoardAssemblies.toAssembly(origImage, board);
+            res.add(assembly);
+            listener.solutionFound(assembly);
         }
         return res;
 
     }
 
-    private void fillAll(TileInfo[][] board, int curX, int curY, Set<TileInfo> visited, int tileCountWidth,
+    private void fillAll(TileInfo[][] board, int curX, int curY, Set<Integer> visited, int tileCountWidth,
                     int tileCountHeight) {
         if (visited.size() == board.length * board[0].length || curX >= board.length || curY > board[0].length) {
             return;
         }
 
         TileInfo curTile = board[curX][curY];
-        if (visited.contains(curTile)) {
+        if (visited.contains(curTile.getTileIndex())) {
             return;
         }
-        visited.add(curTile);
+        visited.add(curTile.getTileIndex());
 
         // fill right
         if (!curTile.getNextRight().isEmpty()) {
             Deque<TileInfo> rightQueue = new LinkedList<>();
-            rightQueue.add(curTile.getNextRight().first().getLeft());
+            rightQueue.add(curTile.getNextRight().getTile(0));
             int newX = curX + 1;
             while (!rightQueue.isEmpty() && newX < tileCountWidth) {
                 board[newX][curY] = rightQueue.poll();
-                if (visited.contains(board[newX][curY])) {
+                if (visited.contains(board[newX][curY].getTileIndex())) {
                     board[newX][curY] = null;
                     break;
                 }
-                visited.add(board[newX][curY]);
+                visited.add(board[newX][curY].getTileIndex());
                 if (!board[newX][curY].getNextRight().isEmpty()) {
-                    rightQueue.add(board[newX][curY].getNextRight().first().getLeft());
+                    rightQueue.add(board[newX][curY].getNextRight().getTile(0));
                 }
                 newX++;
             }
@@ -209,37 +207,37 @@ public class GreedyJigsawSolverStrategy implements JigsawSolverStrategy {
         // fill down
         if (!curTile.getNextBottom().isEmpty()) {
             Deque<TileInfo> bottomQueue = new LinkedList<>();
-            bottomQueue.add(curTile.getNextBottom().first().getLeft());
+            bottomQueue.add(curTile.getNextBottom().getTile(0));
             int newY = curY + 1;
             while (!bottomQueue.isEmpty() && newY < tileCountHeight) {
                 board[curX][newY] = bottomQueue.poll();
-                if (visited.contains(board[curX][newY])) {
+                if (visited.contains(board[curX][newY].getTileIndex())) {
                     board[curX][newY] = null;
                     break;
                 }
-                visited.add(board[curX][newY]);
+                visited.add(board[curX][newY].getTileIndex());
                 if (!board[curX][newY].getNextBottom().isEmpty()) {
-                    bottomQueue.add(board[curX][newY].getNextBottom().first().getLeft());
+                    bottomQueue.add(board[curX][newY].getNextBottom().getTile(0));
                 }
                 newY++;
             }
         }
 
         if (curX < board.length - 1 && curY < board[0].length - 1) {
-            Map<TileInfo, Double> leftTiles;
+            Map<TileInfo, Double> leftTiles = new HashMap<>();
             if (board[curX][curY + 1] != null) {
-                leftTiles = board[curX][curY + 1].getNextRight().stream()
-                                .collect(Collectors.toMap(p -> p.getLeft(), p -> p.getRight()));
-            } else {
-                leftTiles = new HashMap<>();
+                Neighbours n = board[curX][curY + 1].getNextRight();
+                for (int i = 0; i < n.size(); i++) {
+                    leftTiles.put(n.getTile(i), (double) n.getScore(i));
+                }
             }
 
-            Map<TileInfo, Double> topTiles;
+            Map<TileInfo, Double> topTiles = new HashMap<>();
             if (board[curX + 1][curY] != null) {
-                topTiles = board[curX + 1][curY].getNextBottom().stream()
-                                .collect(Collectors.toMap(p -> p.getLeft(), p -> p.getRight()));
-            } else {
-                topTiles = new HashMap<>();
+                Neighbours n = board[curX + 1][curY].getNextBottom();
+                for (int i = 0; i < n.size(); i++) {
+                    topTiles.put(n.getTile(i), (double) n.getScore(i));
+                }
             }
 
             NavigableMap<Double, TileInfo> maxJudgementMap = new TreeMap<>((d1, d2) -> -d1.compareTo(d2));
@@ -268,11 +266,11 @@ public class GreedyJigsawSolverStrategy implements JigsawSolverStrategy {
         }
     }
 
-    private void removeUnmatchedLink(TileInfo t, Function<TileInfo, NavigableSet<Pair<TileInfo, Double>>> setFn) {
+    private void removeUnmatchedLink(TileInfo t, Function<TileInfo, Neighbours> setFn) {
         if (!setFn.apply(t).isEmpty()) {
-            TileInfo other = setFn.apply(t).first().getLeft();
+            TileInfo other = setFn.apply(t).getTile(0);
             if (!setFn.apply(other).isEmpty()) {
-                if (setFn.apply(other).first().getLeft() != t) {
+                if (setFn.apply(other).getTile(0) != t) {
                     setFn.apply(t).clear();
                 }
             }
@@ -45,5 +45,16 @@ public interface JigsawSolverStrategy {
      *            Number of tiles to be placed vertically
      * @return <code>null</code> or a set of result {@link Assembly}s to place at the left border.
      */
-    public Set<Assembly> solve(Image origImage, Collection<TileInfo> graph, int tileCountWidth, int tileCountHeight);
+    public default Set<Assembly> solve(Image origImage, Collection<TileInfo> graph, int tileCountWidth,
+                    int tileCountHeight) {
+        return solve(origImage, graph, tileCountWidth, tileCountHeight, SolutionListener.NONE);
+    }
+
+    /**
+     * Same as {@link #solve(Image, Collection, int, int)}, but informs the given listener about each result
+     * {@link Assembly} as soon as it is found. When the listener is done, the strategy returns as soon as possible with
+     * the results found up until then.
+     */
+    public Set<Assembly> solve(Image origImage, Collection<TileInfo> graph, int tileCountWidth, int tileCountHeight,
+                    SolutionListener listener);
 }
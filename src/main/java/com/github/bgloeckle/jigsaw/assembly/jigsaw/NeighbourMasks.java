@@ -0,0 +1,108 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.function.Function;
+
+import com.github.bgloeckle.jigsaw.util.WordBitSets;
+
+/**
+ * The neighbours of all {@link TileInfo}s of a graph in each direction as {@link WordBitSets} over the vertex ids,
+ * precomputed once so searches can combine them using word operations.
+ *
+ * @author Bastian Gloeckle
+ */
+/* package */ class NeighbourMasks {
+    /* package */ static final int RIGHT = 0;
+    /* package */ static final int LEFT = 1;
+    /* package */ static final int BOTTOM = 2;
+    /* package */ static final int TOP = 3;
+
+    /** Indexed by direction and vertex id. */
+    private long[][][] masks = new long[4][][];
+    /** Indexed by tile index: The ids of all rotations of the tile. */
+    private long[][] tileMasks;
+    private int wordCount;
+
+    /**
+     * @param tilesById
+     *            The vertices of a fully built graph, indexed by their id.
+     */
+    /* package */ NeighbourMasks(TileInfo[] tilesById) {
+        wordCount = WordBitSets.wordCount(tilesById.length);
+        masks[RIGHT] = buildMasks(tilesById, t -> t.getNextRight());
+        masks[LEFT] = buildMasks(tilesById, t -> t.getNextLeft());
+        masks[BOTTOM] = buildMasks(tilesById, t -> t.getNextBottom());
+        masks[TOP] = buildMasks(tilesById, t -> t.getNextTop());
+
+        int tileCount = 0;
+        for (TileInfo t : tilesById) {
+            tileCount = Math.max(tileCount, t.getTileIndex() + 1);
+        }
+        tileMasks = new long[tileCount][wordCount];
+        for (TileInfo t : tilesById) {
+            WordBitSets.set(tileMasks[t.getTileIndex()], t.getId());
+        }
+    }
+
+    /**
+     * @param direction
+     *            One of {@link #RIGHT}, {@link #LEFT}, {@link #BOTTOM}, {@link #TOP}.
+     * @return The ids of the vertices that can be placed next to the given vertex in the given direction. Must not be
+     *         modified.
+     */
+    /* package */ long[] get(int direction, int id) {
+        return masks[direction][id];
+    }
+
+    /**
+     * @return The ids of all vertices that represent the given tile, see {@link TileInfo#getTileIndex()}. Must not be
+     *         modified.
+     */
+    /* package */ long[] getTile(int tileIndex) {
+        return tileMasks[tileIndex];
+    }
+
+    /**
+     * @return The number of words of all masks.
+     */
+    /* package */ int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * @return The direction pointing back.
+     */
+    /* package */ static int opposite(int direction) {
+        return direction ^ 1;
+    }
+
+    private long[][] buildMasks(TileInfo[] tilesById, Function<TileInfo, Neighbours> neighboursFn) {
+        long[][] res = new long[tilesById.length][WordBitSets.wordCount(tilesById.length)];
+        for (TileInfo t : tilesById) {
+            Neighbours neighbours = neighboursFn.apply(t);
+            for (int i = 0; i < neighbours.size(); i++) {
+                WordBitSets.set(res[t.getId()], neighbours.getId(i));
+            }
+        }
+        return res;
+    }
+}
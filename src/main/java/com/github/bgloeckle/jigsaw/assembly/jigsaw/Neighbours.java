@@ -0,0 +1,188 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.Arrays;
+
+/**
+ * The tiles that could potentially be placed next to a {@link TileInfo} in one direction, together with a score of how
+ * well they match.
+ *
+ * <p>
+ * Neighbours are first collected using {@link #add(TileInfo, double)} and then frozen using {@link #freeze(TileInfo[])},
+ * which sorts them by their score, highest first, and by their id for equal scores. After that, they are held in
+ * primitive arrays and accessed by index, which does not allocate any objects.
+ *
+ * @author Bastian Gloeckle
+ */
+/* package */ class Neighbours {
+    private static final int[] EMPTY_IDS = new int[0];
+    private static final float[] EMPTY_SCORES = new float[0];
+
+    private TileInfo[] tilesById;
+    private int[] ids = EMPTY_IDS;
+    private float[] scores = EMPTY_SCORES;
+    private int size = 0;
+
+    /**
+     * Add a neighbour. Only valid before {@link #freeze(TileInfo[])} was called.
+     */
+    public void add(TileInfo tile, double score) {
+        if (tilesById != null) {
+            throw new IllegalStateException("Neighbours are frozen already.");
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size * 2));
+            scores = Arrays.copyOf(scores, ids.length);
+        }
+        ids[size] = tile.getId();
+        scores[size] = (float) score;
+        size++;
+    }
+
+    /**
+     * Sort the neighbours and trim the internal arrays, removing duplicate tiles (keeping their highest score).
+     *
+     * @param tilesById
+     *            All tiles of the graph, indexed by their id.
+     */
+    public void freeze(TileInfo[] tilesById) {
+        this.tilesById = tilesById;
+        // Sort primitive keys instead of boxed indices: First by id and score (highest first) to keep only the first
+        // entry of each id, then by score (highest first) and id.
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) ids[i] << 32) | ((descendingScoreKey(scores[i]) ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+        }
+        Arrays.sort(keys);
+
+        int newSize = 0;
+        int prevId = -1;
+        for (int i = 0; i < size; i++) {
+            int id = (int) (keys[i] >>> 32);
+            if (id != prevId) {
+                int scoreKey = (int) keys[i] ^ Integer.MIN_VALUE;
+                keys[newSize++] = ((long) scoreKey << 32) | id;
+                prevId = id;
+            }
+        }
+        Arrays.sort(keys, 0, newSize);
+
+        ids = new int[newSize];
+        scores = new float[newSize];
+        for (int i = 0; i < newSize; i++) {
+            ids[i] = (int) keys[i];
+            scores[i] = scoreOf((int) (keys[i] >> 32));
+        }
+        size = newSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Id of the neighbour at the given index.
+     */
+    public int getId(int idx) {
+        return ids[idx];
+    }
+
+    /**
+     * @return The neighbour at the given index.
+     */
+    public TileInfo getTile(int idx) {
+        return tilesById[ids[idx]];
+    }
+
+    /**
+     * @return Score of the neighbour at the given index.
+     */
+    public float getScore(int idx) {
+        return scores[idx];
+    }
+
+    /**
+     * @return The ids of all neighbours, best first. Must not be modified.
+     */
+    public int[] getIds() {
+        return ids;
+    }
+
+    /**
+     * @return Index of the neighbour with the given tile id or -1.
+     */
+    public int indexOf(int id) {
+        return indexOf(ids, size, id);
+    }
+
+    /**
+     * Remove all neighbours.
+     */
+    public void clear() {
+        ids = EMPTY_IDS;
+        scores = EMPTY_SCORES;
+        size = 0;
+    }
+
+    /**
+     * @return A key whose signed int order is the reverse of the order of the scores according to
+     *         {@link Float#compare(float, float)}.
+     */
+    private static int descendingScoreKey(float score) {
+        int bits = Float.floatToIntBits(score);
+        // negative floats are ordered reversely by their bits, flip all but the sign bit to correct that.
+        return ~(bits ^ ((bits >> 31) & Integer.MAX_VALUE));
+    }
+
+    /**
+     * @return The score of a key computed by {@link #descendingScoreKey(float)}.
+     */
+    private static float scoreOf(int descendingScoreKey) {
+        int bits = ~descendingScoreKey;
+        return Float.intBitsToFloat(bits ^ ((bits >> 31) & Integer.MAX_VALUE));
+    }
+
+    private static int indexOf(int[] ids, int size, int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(ids[i]).append("=").append(scores[i]);
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.util.SolveContext;
+
+/**
+ * Is informed by {@link JigsawSolverStrategy}s about each {@link Assembly} as soon as it is found and tells the
+ * strategies when to stop searching.
+ *
+ * <p>
+ * The listener also provides the {@link SolveContext} of the solve, which the strategies and
+ * {@link AssemblyJigsaw} use to stop the stages that do not produce solutions.
+ *
+ * @author Bastian Gloeckle
+ */
+public interface SolutionListener {
+    /** Listener that ignores all solutions and never stops a strategy. */
+    public static final SolutionListener NONE = new SolutionListener() {
+        @Override
+        public void solutionFound(Assembly assembly) {
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+    };
+
+    /**
+     * @return A listener that ignores all solutions and is done as soon as the given context is cancelled.
+     */
+    public static SolutionListener cancelledBy(SolveContext context) {
+        return new SolutionListener() {
+            @Override
+            public void solutionFound(Assembly assembly) {
+            }
+
+            @Override
+            public boolean isDone() {
+                return context.isCancelled();
+            }
+
+            @Override
+            public SolveContext getContext() {
+                return context;
+            }
+        };
+    }
+
+    /**
+     * A new solution was found. May be called concurrently from multiple threads.
+     */
+    public void solutionFound(Assembly assembly);
+
+    /**
+     * @return <code>true</code> if the strategy should stop searching for further solutions as soon as possible.
+     */
+    public boolean isDone();
+
+    /**
+     * @return The context of the solve. {@link #isDone()} must be <code>true</code> as soon as it is cancelled.
+     */
+    public default SolveContext getContext() {
+        return SolveContext.NONE;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.BitSet;
+
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+
+/**
+ * The relevant edge pixels on the four borders of an unrotated {@link Tile}, shared by the {@link TileInfo}s of all
+ * rotations of that tile.
+ *
+ * <p>
+ * Top and bottom borders are indexed from left to right, left and right borders from top to bottom. Rotating a tile
+ * moves each border to another side, reversing its bit order if needed. As both the borders and their bit-reversed
+ * variants are calculated once, the borders of any rotation are available without copying.
+ *
+ * @author Bastian Gloeckle
+ */
+/* package */ class TileBorders {
+    /* package */ static final int TOP = 0;
+    /* package */ static final int RIGHT = 1;
+    /* package */ static final int BOTTOM = 2;
+    /* package */ static final int LEFT = 3;
+
+    private Tile tile;
+    private BitSet[] borders = new BitSet[4];
+    private BitSet[] reversedBorders = new BitSet[4];
+
+    /**
+     * @param tile
+     *            Any rotation of the tile, only its area in the source image is used.
+     */
+    /* package */ TileBorders(Tile tile) {
+        this.tile = tile;
+        for (int side = 0; side < 4; side++) {
+            borders[side] = new BitSet();
+            reversedBorders[side] = new BitSet();
+        }
+    }
+
+    /**
+     * Extract the relevant edge pixels on all four borders of the tile from the given index.
+     */
+    /* package */ void fill(EdgeBitIndex edgeBitIndex) {
+        int x = tile.getSourceX();
+        int y = tile.getSourceY();
+        int width = tile.getSourceWidth();
+        int height = tile.getSourceHeight();
+        borders[TOP] = edgeBitIndex.horizontalBorder(y, x, width);
+        borders[BOTTOM] = edgeBitIndex.horizontalBorder(y + height - 1, x, width);
+        borders[LEFT] = edgeBitIndex.verticalBorder(x, y, height);
+        borders[RIGHT] = edgeBitIndex.verticalBorder(x + width - 1, y, height);
+        for (int side = 0; side < 4; side++) {
+            reversedBorders[side] = reverse(borders[side], (side == TOP || side == BOTTOM) ? width : height);
+        }
+    }
+
+    /**
+     * @param side
+     *            One of {@link #TOP}, {@link #RIGHT}, {@link #BOTTOM}, {@link #LEFT}.
+     * @param rotation
+     *            Number of clockwise quarter turns the tile is rotated by.
+     * @return The border on the given side of the rotated tile. Must not be modified.
+     */
+    /* package */ BitSet get(int side, int rotation) {
+        int sourceSide = (side - rotation + 4) % 4;
+        // reading all borders clockwise around the tile is independent of the rotation; top and right borders are
+        // indexed clockwise, bottom and left ones counter-clockwise.
+        if (isIndexedClockwise(side) == isIndexedClockwise(sourceSide)) {
+            return borders[sourceSide];
+        }
+        return reversedBorders[sourceSide];
+    }
+
+    private boolean isIndexedClockwise(int side) {
+        return side == TOP || side == RIGHT;
+    }
+
+    private BitSet reverse(BitSet bitSet, int length) {
+        BitSet res = new BitSet(length);
+        for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+            res.set(length - 1 - i);
+        }
+        return res;
+    }
+}
@@ -21,78 +21,103 @@
 package com.github.bgloeckle.jigsaw.assembly.jigsaw;
 
 import java.util.BitSet;
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.NavigableSet;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
 
 import com.github.bgloeckle.jigsaw.assembly.Tile;
 import com.github.bgloeckle.jigsaw.colorcoding.Vertex;
-import com.github.bgloeckle.jigsaw.util.Pair;
 
 class TileInfo implements Vertex {
-    private static final Comparator<Pair<?, Double>> COMPARATOR_HIGHEST_FRONT = (l,
-                    r) -> -l.getRight().compareTo(r.getRight());
-
+    private int id;
+    private int tileIndex;
     private Tile tile;
+    private TileBorders borders;
 
-    private BitSet topBorder;
-    private BitSet bottomBorder;
-    private BitSet leftBorder;
-    private BitSet rightBorder;
-
-    private NavigableSet<Pair<TileInfo, Double>> nextTop = new TreeSet<>(COMPARATOR_HIGHEST_FRONT);
-    private NavigableSet<Pair<TileInfo, Double>> nextLeft = new TreeSet<>(COMPARATOR_HIGHEST_FRONT);
-    private NavigableSet<Pair<TileInfo, Double>> nextBottom = new TreeSet<>(COMPARATOR_HIGHEST_FRONT);
-    private NavigableSet<Pair<TileInfo, Double>> nextRight = new TreeSet<>(COMPARATOR_HIGHEST_FRONT);
+    private Neighbours nextTop = new Neighbours();
+    private Neighbours nextLeft = new Neighbours();
+    private Neighbours nextBottom = new Neighbours();
+    private Neighbours nextRight = new Neighbours();
 
     // private int maxWidthRightStartingThisTile = -1;
 
-    TileInfo(Tile tile) {
+    /**
+     * @param id
+     *            Index of the tile in its graph.
+     */
+    TileInfo(int id, Tile tile) {
+        this(id, id, tile, new TileBorders(tile));
+    }
+
+    /**
+     * @param id
+     *            Index of the vertex in its graph.
+     * @param tileIndex
+     *            Index of the tile in the jigsaw. All rotations of the same tile share the same index, as only one of
+     *            them can be placed.
+     * @param tile
+     *            The tile, possibly rotated.
+     * @param borders
+     *            The borders of the tile, shared with the {@link TileInfo}s of the other rotations.
+     */
+    TileInfo(int id, int tileIndex, Tile tile, TileBorders borders) {
+        this.id = id;
+        this.tileIndex = tileIndex;
         this.tile = tile;
-        topBorder = new BitSet(tile.getWidth());
-        bottomBorder = new BitSet(tile.getWidth());
-        leftBorder = new BitSet(tile.getHeight());
-        rightBorder = new BitSet(tile.getHeight());
+        this.borders = borders;
     }
 
     public Tile getTile() {
         return tile;
     }
 
+    public int getTileIndex() {
+        return tileIndex;
+    }
+
     public BitSet getTopBorder() {
-        return topBorder;
+        return borders.get(TileBorders.TOP, tile.getRotation());
     }
 
     public BitSet getBottomBorder() {
-        return bottomBorder;
+        return borders.get(TileBorders.BOTTOM, tile.getRotation());
     }
 
     public BitSet getLeftBorder() {
-        return leftBorder;
+        return borders.get(TileBorders.LEFT, tile.getRotation());
     }
 
     public BitSet getRightBorder() {
-        return rightBorder;
+        return borders.get(TileBorders.RIGHT, tile.getRotation());
+    }
+
+    /* package */ TileBorders getBorders() {
+        return borders;
     }
 
-    public NavigableSet<Pair<TileInfo, Double>> getNextLeft() {
+    public Neighbours getNextLeft() {
         return nextLeft;
     }
 
-    public NavigableSet<Pair<TileInfo, Double>> getNextBottom() {
+    public Neighbours getNextBottom() {
         return nextBottom;
     }
 
-    public NavigableSet<Pair<TileInfo, Double>> getNextRight() {
+    public Neighbours getNextRight() {
         return nextRight;
     }
 
-    public NavigableSet<Pair<TileInfo, Double>> getNextTop() {
+    public Neighbours getNextTop() {
         return nextTop;
     }
 
+    /**
+     * Freeze the neighbours in all directions after the graph was built, see {@link Neighbours#freeze(TileInfo[])}.
+     */
+    /* package */ void freezeNeighbours(TileInfo[] tilesById) {
+        nextTop.freeze(tilesById);
+        nextLeft.freeze(tilesById);
+        nextBottom.freeze(tilesById);
+        nextRight.freeze(tilesById);
+    }
+
     // private int calculateMaxWidth(TileInfo pos, Set<TileInfo> visited) {
     // visited.add(pos);
     //
@@ -128,8 +153,21 @@ class TileInfo implements Vertex {
     }
 
     @Override
-    public Collection<Vertex> getNext() {
-        return getNextRight().stream().map(p -> p.getLeft()).collect(Collectors.toList());
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public int[] getNextIds() {
+        return nextRight.getIds();
+    }
+
+    /**
+     * @return The {@link #getTileIndex()}, so a colorful path never contains multiple rotations of the same tile.
+     */
+    @Override
+    public int getColorGroup() {
+        return tileIndex;
     }
 
-}
\ No newline at end of file
+}
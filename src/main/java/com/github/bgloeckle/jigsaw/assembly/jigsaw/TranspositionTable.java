@@ -0,0 +1,149 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of values of search states, keyed by a 64 bit hash of the state (e.g. a Zobrist hash).
+ *
+ * <p>
+ * {@link ColorCodingJigsawSolverStrategy} only caches dead ends, i.e. fully explored states that have 0 completions, to
+ * prune them when they are reached again. It does not cache completion counts or the scores of the best completions:
+ * Solutions are reported while descending, so a state with completions has to be explored again anyway.
+ *
+ * <p>
+ * The table is set-associative: A key can be stored in any of the {@link #WAYS} slots of the bucket it hashes to. If
+ * all slots are taken, an entry is evicted using the clock algorithm: Each lookup hit marks an entry as referenced, the
+ * clock hand of the bucket skips (and un-marks) referenced entries and evicts the first unreferenced one.
+ *
+ * <p>
+ * Only hashes are stored, two states with the same hash are therefore indistinguishable. With 64 bit hashes this is
+ * very unlikely.
+ *
+ * @author Bastian Gloeckle
+ */
+/* package */ class TranspositionTable {
+    private static final int WAYS = 4;
+    private static final int STRIPES = 64;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] referenced;
+    private int[] clockHands;
+    private int bucketCount;
+    private Object[] locks;
+
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity
+     *            Maximum number of entries, rounded down to a multiple of {@link #WAYS}, but at least {@link #WAYS}.
+     */
+    /* package */ TranspositionTable(int capacity) {
+        bucketCount = Math.max(1, capacity / WAYS);
+        keys = new long[bucketCount * WAYS];
+        values = new int[bucketCount * WAYS];
+        referenced = new boolean[bucketCount * WAYS];
+        clockHands = new int[bucketCount];
+        locks = new Object[Math.min(STRIPES, bucketCount)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return The value stored for the key or -1 if there is none.
+     */
+    /* package */ int get(long key) {
+        key = nonEmpty(key);
+        int bucket = bucket(key);
+        synchronized (locks[bucket % locks.length]) {
+            for (int slot = bucket * WAYS; slot < (bucket + 1) * WAYS; slot++) {
+                if (keys[slot] == key) {
+                    referenced[slot] = true;
+                    hits.increment();
+                    return values[slot];
+                }
+            }
+        }
+        misses.increment();
+        return -1;
+    }
+
+    /**
+     * Store a non-negative value for the given key, possibly evicting another entry.
+     */
+    /* package */ void put(long key, int value) {
+        key = nonEmpty(key);
+        int bucket = bucket(key);
+        synchronized (locks[bucket % locks.length]) {
+            int firstSlot = bucket * WAYS;
+            for (int slot = firstSlot; slot < firstSlot + WAYS; slot++) {
+                if (keys[slot] == key || keys[slot] == 0) {
+                    keys[slot] = key;
+                    values[slot] = value;
+                    return;
+                }
+            }
+            // all slots taken: clock eviction.
+            while (true) {
+                int slot = firstSlot + clockHands[bucket];
+                clockHands[bucket] = (clockHands[bucket] + 1) % WAYS;
+                if (referenced[slot]) {
+                    referenced[slot] = false;
+                } else {
+                    keys[slot] = key;
+                    values[slot] = value;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Maximum number of entries.
+     */
+    /* package */ int getCapacity() {
+        return keys.length;
+    }
+
+    /* package */ long getHits() {
+        return hits.sum();
+    }
+
+    /* package */ long getMisses() {
+        return misses.sum();
+    }
+
+    private int bucket(long key) {
+        // the low bits of Zobrist hashes are as random as the high ones.
+        return ((int) (key ^ (key >>> 32)) & Integer.MAX_VALUE) % bucketCount;
+    }
+
+    /**
+     * @return The key mapped so that it is not 0, which marks empty slots.
+     */
+    private long nonEmpty(long key) {
+        return (key == 0) ? 1 : key;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.bgloeckle.jigsaw.image.BinaryImageIo;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.pipeline.Pipeline;
+
+/**
+ * Cache of the results of a {@link Pipeline} (i.e. edge images) in a directory on disk.
+ *
+ * <p>
+ * Entries are addressed by a hash of the contents of the input file and the {@link Pipeline#getDescription()}, i.e. a
+ * changed input file or changed parameters of the pipeline lead to a new entry. Entries are stored using
+ * {@link BinaryImageIo} and are memory mapped when loading them.
+ *
+ * @author Bastian Gloeckle
+ */
+public class EdgeImageCache {
+    private static final Logger logger = LoggerFactory.getLogger(EdgeImageCache.class);
+
+    private static final String FILE_SUFFIX = ".edges";
+
+    private File directory;
+
+    /**
+     * @param directory
+     *            Directory of the cache, will be created if it does not exist.
+     */
+    public EdgeImageCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the result of the given pipeline on the given input file from the cache or compute and store it.
+     *
+     * @param inputFile
+     *            The file the input image of the pipeline was loaded from.
+     * @param computeFn
+     *            Executes the pipeline on the input image, only called if the result is not cached.
+     * @return The result of the pipeline, either computed or loaded from the cache.
+     */
+    public Image getOrCompute(File inputFile, Pipeline pipeline, Supplier<Image> computeFn) {
+        File cacheFile;
+        try {
+            cacheFile = new File(directory, key(inputFile, pipeline) + FILE_SUFFIX);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read input file '" + inputFile + "'", e);
+        }
+
+        if (cacheFile.isFile()) {
+            try {
+                Image res = new BinaryImageIo().mapImage(cacheFile);
+                logger.info("Loaded edge image from cache file '{}'", cacheFile);
+                return res;
+            } catch (IOException e) {
+                logger.warn("Could not load cache file '{}', will re-compute it.", cacheFile, e);
+            }
+        }
+
+        Image res = computeFn.get();
+        store(cacheFile, res);
+        return res;
+    }
+
+    /**
+     * @return The key of the cache entry for the given input file and pipeline, in hex.
+     */
+    /* package */ String key(File inputFile, Pipeline pipeline) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+
+        try (InputStream is = Files.newInputStream(inputFile.toPath())) {
+            byte[] buf = new byte[64 * 1024];
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                digest.update(buf, 0, len);
+            }
+        }
+        digest.update((byte) 0);
+        digest.update(pipeline.getDescription().getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private void store(File cacheFile, Image img) {
+        File tmpFile = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            // write to a temp file first and move that, so concurrent readers never see a partially written file.
+            tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", directory);
+            new BinaryImageIo().writeImage(img, tmpFile);
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Stored edge image in cache file '{}'", cacheFile);
+        } catch (IOException e) {
+            logger.warn("Could not store edge image in cache file '{}'", cacheFile, e);
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+}
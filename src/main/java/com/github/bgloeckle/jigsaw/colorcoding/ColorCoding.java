@@ -20,22 +20,22 @@
  */
 package com.github.bgloeckle.jigsaw.colorcoding;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.function.Function;
-import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.bgloeckle.jigsaw.util.Pair;
+import com.github.bgloeckle.jigsaw.util.RandomProvider;
+import com.github.bgloeckle.jigsaw.util.SolveContext;
 
 /**
  * Color-coding graphs in order to find simple paths inside it that have a specific minimum length, being only
@@ -53,53 +53,70 @@ public class ColorCoding<V extends Vertex> {
     private static final Logger logger = LoggerFactory.getLogger(ColorCoding.class);
 
     private Collection<V> inGraph;
+    private RandomProvider randomProvider;
 
     public ColorCoding(Collection<V> inGraph) {
+        this(inGraph, RandomProvider.UNSEEDED);
+    }
+
+    /**
+     * @param randomProvider
+     *            Provides the random colors of the vertices. Used by the calling thread only.
+     */
+    public ColorCoding(Collection<V> inGraph, RandomProvider randomProvider) {
         this.inGraph = inGraph;
+        this.randomProvider = randomProvider;
     }
 
     public Set<V> findVerticesWithLengthGreater(int k) {
-        Supplier<Integer> nextIdSupplier = new Supplier<Integer>() {
-            int nextId = 0;
+        return findVerticesWithLengthGreater(k, SolveContext.NONE);
+    }
 
-            @Override
-            public Integer get() {
-                return nextId++;
-            }
-        };
-        Map<Vertex, VertexInfo> toInfoMap = new IdentityHashMap<>();
-        List<VertexInfo> graph = inGraph.stream().map(v -> {
-            VertexInfo res = new VertexInfo(nextIdSupplier.get(), v, k, vertex -> toInfoMap.get(vertex));
-            toInfoMap.put(v, res);
-            return res;
-        }).collect(Collectors.toList());
+    /**
+     * Same as {@link #findVerticesWithLengthGreater(int)}, but stops as soon as the given context is cancelled,
+     * returning the vertices found until then.
+     */
+    public Set<V> findVerticesWithLengthGreater(int k, SolveContext context) {
+        // indexed by vertex id.
+        List<VertexInfo> graph = new ArrayList<>(Collections.nCopies(inGraph.size(), null));
+        for (V v : inGraph) {
+            graph.set(v.getId(), new VertexInfo(v, k, graph));
+        }
 
-        Set<VertexInfo> res = new HashSet<>();
+        Set<VertexInfo> res = ConcurrentHashMap.newKeySet();
 
         long numberOfTimesToExecute = (long) Math.ceil(Math.exp(k));
         logger.debug("Color-Coding will need {} iterations", numberOfTimesToExecute);
         for (long l = 0; l < numberOfTimesToExecute; l++) {
-            if (l % (numberOfTimesToExecute / 10) == 0) {
+            if (context.isCancelled()) {
+                logger.debug("Cancelled after {} iterations", l);
+                break;
+            }
+            if (l % Math.max(1, numberOfTimesToExecute / 10) == 0) {
                 logger.debug("Executed {} iterations", l);
             }
+            int groupColor[] = new int[graph.size()];
+            for (int i = 0; i < groupColor.length; i++) {
+                groupColor[i] = randomProvider.provideRandomInt(k);
+            }
             int color[] = new int[graph.size()];
-            for (int i = 0; i < color.length; i++) {
-                color[i] = ThreadLocalRandom.current().nextInt(k);
+            for (VertexInfo v : graph) {
+                color[v.getId()] = groupColor[v.getVertex().getColorGroup()];
             }
 
             graph.stream().parallel().forEach(v -> v.removeVisitedColors(k));
 
             // len = 1, initialize
             for (VertexInfo v : graph) {
-                for (VertexInfo u : v.getNext()) {
+                for (int uId : v.getNextIds()) {
                     BitSet s = new BitSet(k);
                     s.set(color[v.getId()]);
-                    u.addVisitedColorsWithStartVertex(1, new Pair<>(s, v));
+                    v.getNext(uId).addVisitedColorsWithStartVertex(1, new Pair<>(s, v));
                 }
             }
 
             // len > 1, reduce all the color-sets
-            for (int curLen = 2; curLen <= k; curLen++) {
+            for (int curLen = 2; curLen <= k && !context.isCancelled(); curLen++) {
                 // walk along all edges and the color sets of the originating vertex
                 int len = curLen;
                 // release some memory
@@ -108,16 +125,16 @@ public class ColorCoding<V extends Vertex> {
                         BitSet visitedColors = visitedColorsPair.getLeft();
                         VertexInfo startVertex = visitedColorsPair.getRight();
 
-                        for (VertexInfo u : v.getNext()) {
-                            if (!visitedColors.get(color[u.getId()])) {
+                        for (int uId : v.getNextIds()) {
+                            if (!visitedColors.get(color[uId])) {
                                 if (len == k) {
                                     res.add(startVertex);
                                     // logger.debug("Found valid start at {}", startVertex.getVertex());
                                 } else {
                                     BitSet newVisitedColors = new BitSet(k);
                                     newVisitedColors.or(visitedColors);
-                                    newVisitedColors.set(color[u.getId()]);
-                                    u.addVisitedColorsWithStartVertex(len,
+                                    newVisitedColors.set(color[uId]);
+                                    v.getNext(uId).addVisitedColorsWithStartVertex(len,
                                                     new Pair<>(newVisitedColors, startVertex));
                                 }
                             }
@@ -133,22 +150,16 @@ public class ColorCoding<V extends Vertex> {
     private class VertexInfo {
         private V vertex;
         private Set<Pair<BitSet, VertexInfo>>[] visitedColorsWithStartVertex;
-        private int id;
-        private Object nextSync = new Object();
-        private volatile List<VertexInfo> next;
-        private Function<Vertex, VertexInfo> toInfoFn;
+        private List<VertexInfo> infoById;
 
         @SuppressWarnings("unchecked")
-        public VertexInfo(int id, V vertex, int k, Function<Vertex, VertexInfo> toInfoFn) {
-            this.id = id;
+        public VertexInfo(V vertex, int k, List<VertexInfo> infoById) {
             this.vertex = vertex;
-            this.toInfoFn = toInfoFn;
+            this.infoById = infoById;
             visitedColorsWithStartVertex = new Set[k];
             for (int i = 0; i < k; i++) {
                 visitedColorsWithStartVertex[i] = new HashSet<>();
             }
-
-            next = null;
         }
 
         public V getVertex() {
@@ -173,19 +184,16 @@ public class ColorCoding<V extends Vertex> {
             }
         }
 
-        public Collection<VertexInfo> getNext() {
-            if (next == null) {
-                synchronized (nextSync) {
-                    if (next == null) {
-                        next = vertex.getNext().stream().map(v -> toInfoFn.apply(v)).collect(Collectors.toList());
-                    }
-                }
-            }
-            return next;
+        public int[] getNextIds() {
+            return vertex.getNextIds();
+        }
+
+        public VertexInfo getNext(int id) {
+            return infoById.get(id);
         }
 
         public int getId() {
-            return id;
+            return vertex.getId();
         }
     }
 }
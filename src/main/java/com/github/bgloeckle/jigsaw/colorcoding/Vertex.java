@@ -20,8 +20,27 @@
  */
 package com.github.bgloeckle.jigsaw.colorcoding;
 
-import java.util.Collection;
-
+/**
+ * A vertex of a directed graph inspected by {@link ColorCoding}.
+ *
+ * @author Bastian Gloeckle
+ */
 public interface Vertex {
-    public Collection<Vertex> getNext();
+    /**
+     * @return Id of this vertex. The ids of the vertices of a graph are 0, 1, ..., number of vertices - 1.
+     */
+    public int getId();
+
+    /**
+     * @return The ids of the vertices this vertex has an edge to. Must not be modified.
+     */
+    public int[] getNextIds();
+
+    /**
+     * @return Vertices with the same color group always get the same color, therefore a colorful path contains at most
+     *         one of them. Color groups are in the range of the ids.
+     */
+    public default int getColorGroup() {
+        return getId();
+    }
 }
@@ -0,0 +1,100 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.cutjudge;
+
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.util.Autocorrelation;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+import com.github.bgloeckle.jigsaw.util.Pair;
+
+/**
+ * Finds the distances of cuts in an edge image by inspecting the periodicity of the edges along the x and y axis.
+ *
+ * <p>
+ * The edges that run in the direction of the cuts are projected onto the axis orthogonal to the cuts. Cutting the
+ * image every n pixels leads to a peak in that profile every n pixels, which is found using the
+ * {@link Autocorrelation} of the profile. This is an alternative to judging each possible cut using a
+ * {@link CutJudge}.
+ *
+ * @author Bastian Gloeckle
+ */
+public class PeriodicityCutDetector {
+    /** Sorts by the Double highest first, then by the Integer. */
+    private static final Comparator<Pair<Integer, Double>> COMPARATOR_HIGHEST_FRONT = (l, r) -> {
+        int res = -l.getRight().compareTo(r.getRight());
+        return (res != 0) ? res : l.getLeft().compareTo(r.getLeft());
+    };
+
+    private Image img;
+
+    public PeriodicityCutDetector(Image edgeImg) {
+        this.img = edgeImg;
+    }
+
+    /**
+     * @return Distances of vertical cuts (between minDistance and half the width of the image) together with their
+     *         judgement in [-1, 1], highest judgement first.
+     */
+    public NavigableSet<Pair<Integer, Double>> findVerticalCutDistances(int minDistance) {
+        double[] profile = new double[img.getWidth()];
+        for (int x = 0; x < img.getWidth(); x++) {
+            for (int y = 0; y < img.getHeight(); y++) {
+                if (isEdgeInDirection(x, y, EdgeDirection.NORTH_SOUTH)) {
+                    profile[x]++;
+                }
+            }
+        }
+        return findPeriods(profile, minDistance);
+    }
+
+    /**
+     * @return Distances of horizontal cuts (between minDistance and half the height of the image) together with their
+     *         judgement in [-1, 1], highest judgement first.
+     */
+    public NavigableSet<Pair<Integer, Double>> findHorizontalCutDistances(int minDistance) {
+        double[] profile = new double[img.getHeight()];
+        for (int x = 0; x < img.getWidth(); x++) {
+            for (int y = 0; y < img.getHeight(); y++) {
+                if (isEdgeInDirection(x, y, EdgeDirection.EAST_WEST)) {
+                    profile[y]++;
+                }
+            }
+        }
+        return findPeriods(profile, minDistance);
+    }
+
+    private boolean isEdgeInDirection(int x, int y, EdgeDirection direction) {
+        return img.getColor(x, y) != 0 && direction.equals(EdgeDirection.fromGradientRadian(img.getDirection(x, y)));
+    }
+
+    private NavigableSet<Pair<Integer, Double>> findPeriods(double[] profile, int minDistance) {
+        double[] autocorrelation = Autocorrelation.calculate(profile);
+        NavigableSet<Pair<Integer, Double>> res = new TreeSet<>(COMPARATOR_HIGHEST_FRONT);
+        for (int distance = Math.max(minDistance, 1); distance <= profile.length / 2; distance++) {
+            res.add(new Pair<>(distance, autocorrelation[distance]));
+        }
+        return res;
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input/output of edge images in a compact binary format that can be memory mapped.
+ *
+ * <p>
+ * The format consists of a header of four little endian ints (magic, version, width, height), followed by one byte per
+ * pixel with its {@link EdgeCodeImage#code(int, double)}. Pixels are ordered by x and then by y, just like in
+ * {@link BufferImage}. Colors of edge pixels and the exact directions are therefore not stored, see
+ * {@link EdgeCodeImage}.
+ *
+ * @author Bastian Gloeckle
+ */
+public class BinaryImageIo {
+    /** "JGEI" */
+    private static final int MAGIC = 0x4a474549;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    /** Files are mapped in chunks of 1 GB, as a single buffer holds at most 2 GB. */
+    private static final int DEFAULT_CHUNK_SHIFT = 30;
+
+    private int chunkShift;
+
+    public BinaryImageIo() {
+        this(DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * @param chunkShift
+     *            Files are mapped in chunks of 2^chunkShift bytes.
+     */
+    /* package */ BinaryImageIo(int chunkShift) {
+        this.chunkShift = chunkShift;
+    }
+
+    /**
+     * Write the edge codes of the image to the given file, overwriting it if it exists.
+     */
+    public void writeImage(Image img, File file) throws IOException {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            ByteBuffer[] chunks = map(channel, MapMode.READ_WRITE, (long) width * height);
+            long mask = (1L << chunkShift) - 1;
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    long idx = (long) x * height + y;
+                    chunks[(int) (idx >>> chunkShift)].put((int) (idx & mask),
+                                    EdgeCodeImage.code(img.getColor(x, y), img.getDirection(x, y)));
+                }
+            }
+            for (ByteBuffer chunk : chunks) {
+                ((MappedByteBuffer) chunk).force();
+            }
+        }
+    }
+
+    /**
+     * Memory map an image that was written using {@link #writeImage(Image, File)}.
+     *
+     * <p>
+     * The file is mapped read-only, the returned image is copied to the heap as soon as it is changed. Changes are
+     * therefore never written back to the file.
+     *
+     * @throws IOException
+     *             If the file cannot be read or is not in the expected format.
+     */
+    public Image mapImage(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("File '" + file + "' is too small");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("File '" + file + "' is too small");
+                }
+            }
+            header.flip();
+            int magic = header.getInt();
+            int version = header.getInt();
+            int width = header.getInt();
+            int height = header.getInt();
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException("File '" + file + "' is no image of the expected format");
+            }
+            if (width <= 0 || height <= 0 || channel.size() != HEADER_BYTES + (long) width * height) {
+                throw new IOException("File '" + file + "' has an invalid size");
+            }
+
+            // the mapping stays valid after closing the channel.
+            return new EdgeCodeImage(width, height, map(channel, MapMode.READ_ONLY, (long) width * height),
+                            chunkShift);
+        }
+    }
+
+    /**
+     * @return The pixel codes of the file in chunks of 2^chunkShift bytes.
+     */
+    private ByteBuffer[] map(FileChannel channel, MapMode mode, long pixelCount) throws IOException {
+        long chunkBytes = 1L << chunkShift;
+        ByteBuffer[] res = new ByteBuffer[(int) ((pixelCount + chunkBytes - 1) >>> chunkShift)];
+        for (int i = 0; i < res.length; i++) {
+            long offset = (long) i << chunkShift;
+            res[i] = channel.map(mode, HEADER_BYTES + offset, Math.min(chunkBytes, pixelCount - offset));
+        }
+        return res;
+    }
+}
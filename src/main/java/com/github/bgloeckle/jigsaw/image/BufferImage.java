@@ -0,0 +1,157 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.image;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * {@link Image} whose pixels are held in NIO buffers, with the pixels of one column being stored consecutively.
+ *
+ * <p>
+ * The buffers may be backed by a memory mapped file, see {@link BinaryImageIo}. If the buffers are read-only, the
+ * pixels are copied to the heap on the first change. {@link #copy()} always creates an image on the heap.
+ *
+ * @author Bastian Gloeckle
+ */
+public class BufferImage implements Image {
+    private static final long serialVersionUID = 1L;
+
+    private int width;
+    private int height;
+    private transient IntBuffer color;
+    private transient DoubleBuffer direction;
+
+    /**
+     * Create a new image on the heap with all colors being 0 and all directions being {@link #DIRECTION_UNDEFINED}.
+     */
+    public BufferImage(int width, int height) {
+        this(width, height, IntBuffer.allocate(width * height), DoubleBuffer.allocate(width * height));
+        for (int i = 0; i < width * height; i++) {
+            direction.put(i, DIRECTION_UNDEFINED);
+        }
+    }
+
+    /**
+     * @param color
+     *            Buffer with at least width*height elements, index of a pixel is x*height+y.
+     * @param direction
+     *            Buffer with at least width*height elements, index of a pixel is x*height+y.
+     */
+    /* package */ BufferImage(int width, int height, IntBuffer color, DoubleBuffer direction) {
+        this.width = width;
+        this.height = height;
+        this.color = color;
+        this.direction = direction;
+    }
+
+    @Override
+    public int getColor(int x, int y) {
+        return color.get(x * height + y);
+    }
+
+    @Override
+    public void setColor(int x, int y, int newColor) {
+        ensureWritable();
+        color.put(x * height + y, newColor);
+    }
+
+    @Override
+    public double getDirection(int x, int y) {
+        return direction.get(x * height + y);
+    }
+
+    @Override
+    public void setDirection(int x, int y, double direction) {
+        ensureWritable();
+        this.direction.put(x * height + y, direction);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public Image copy() {
+        BufferImage res = new BufferImage(width, height, IntBuffer.allocate(width * height),
+                        DoubleBuffer.allocate(width * height));
+        copyTo(res);
+        return res;
+    }
+
+    private void ensureWritable() {
+        if (color.isReadOnly() || direction.isReadOnly()) {
+            BufferImage heapCopy = (BufferImage) copy();
+            color = heapCopy.color;
+            direction = heapCopy.direction;
+        }
+    }
+
+    /**
+     * Copy all pixels of this image into the given one, which must have the same size.
+     */
+    private void copyTo(BufferImage other) {
+        IntBuffer colorSrc = color.duplicate();
+        colorSrc.clear();
+        colorSrc.limit(width * height);
+        IntBuffer colorDest = other.color.duplicate();
+        colorDest.clear();
+        colorDest.put(colorSrc);
+
+        DoubleBuffer directionSrc = direction.duplicate();
+        directionSrc.clear();
+        directionSrc.limit(width * height);
+        DoubleBuffer directionDest = other.direction.duplicate();
+        directionDest.clear();
+        directionDest.put(directionSrc);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < width * height; i++) {
+            out.writeInt(color.get(i));
+        }
+        for (int i = 0; i < width * height; i++) {
+            out.writeDouble(direction.get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        color = IntBuffer.allocate(width * height);
+        for (int i = 0; i < width * height; i++) {
+            color.put(i, in.readInt());
+        }
+        direction = DoubleBuffer.allocate(width * height);
+        for (int i = 0; i < width * height; i++) {
+            direction.put(i, in.readDouble());
+        }
+    }
+}
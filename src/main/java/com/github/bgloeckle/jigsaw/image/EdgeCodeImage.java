@@ -0,0 +1,159 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.image;
+
+import java.nio.ByteBuffer;
+
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+/**
+ * {@link Image} of edges that stores a single code per pixel: Whether the pixel is an edge and if so, its
+ * {@link EdgeDirection}. This is all that is used of an edge image after edge detection, so its colors are not stored:
+ * Edge pixels have the color {@link #EDGE_COLOR} and the directions are quantized to {@link EdgeDirection}s.
+ *
+ * <p>
+ * The codes may be backed by a memory mapped file, see {@link BinaryImageIo}. They are split into chunks of a power of
+ * two bytes, so images with more than 2^31 pixels can be held. The pixels are copied to the heap on the first change,
+ * with full colors and directions from then on. {@link #copy()} always creates an image on the heap.
+ *
+ * @author Bastian Gloeckle
+ */
+public class EdgeCodeImage implements Image {
+    private static final long serialVersionUID = 1L;
+
+    /** Code of a pixel that is no edge. */
+    public static final byte NO_EDGE = 0;
+    /** Code of an edge pixel without a direction, edge pixels with a direction have 1 + its ordinal. */
+    public static final byte UNDEFINED_DIRECTION = 5;
+    /** Color of edge pixels. */
+    public static final int EDGE_COLOR = 0xFFFFFF;
+
+    private static final EdgeDirection[] DIRECTIONS = EdgeDirection.values();
+
+    private int width;
+    private int height;
+    private int chunkShift;
+    private transient ByteBuffer[] chunks;
+    /** Copy of all pixels on the heap that is created on the first change, <code>null</code> before. */
+    private Image heapImage = null;
+
+    /**
+     * @param chunks
+     *            Codes of the pixels, index of a pixel is x*height+y. Each but the last chunk has 2^chunkShift bytes.
+     */
+    /* package */ EdgeCodeImage(int width, int height, ByteBuffer[] chunks, int chunkShift) {
+        this.width = width;
+        this.height = height;
+        this.chunks = chunks;
+        this.chunkShift = chunkShift;
+    }
+
+    /**
+     * @return {@link #NO_EDGE} if the color is 0, {@link #UNDEFINED_DIRECTION} if the direction is undefined,
+     *         otherwise 1 + the ordinal of the {@link EdgeDirection}.
+     */
+    public static byte code(int color, double direction) {
+        if (color == 0) {
+            return NO_EDGE;
+        }
+        EdgeDirection edgeDirection = EdgeDirection.fromGradientRadian(direction);
+        return (edgeDirection == null) ? UNDEFINED_DIRECTION : (byte) (edgeDirection.ordinal() + 1);
+    }
+
+    /**
+     * @return The direction of an edge pixel with the given code or <code>null</code> if it has none.
+     */
+    public static EdgeDirection direction(byte code) {
+        return (code == NO_EDGE || code == UNDEFINED_DIRECTION) ? null : DIRECTIONS[code - 1];
+    }
+
+    @Override
+    public int getColor(int x, int y) {
+        if (heapImage != null) {
+            return heapImage.getColor(x, y);
+        }
+        return (code(x, y) == NO_EDGE) ? 0 : EDGE_COLOR;
+    }
+
+    @Override
+    public void setColor(int x, int y, int newColor) {
+        ensureOnHeap();
+        heapImage.setColor(x, y, newColor);
+    }
+
+    @Override
+    public double getDirection(int x, int y) {
+        if (heapImage != null) {
+            return heapImage.getDirection(x, y);
+        }
+        EdgeDirection direction = direction(code(x, y));
+        return (direction == null) ? DIRECTION_UNDEFINED : direction.getGradientRadian();
+    }
+
+    @Override
+    public void setDirection(int x, int y, double direction) {
+        ensureOnHeap();
+        heapImage.setDirection(x, y, direction);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public Image copy() {
+        if (heapImage != null) {
+            return heapImage.copy();
+        }
+        BufferImage res = new BufferImage(width, height);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                res.setColor(x, y, getColor(x, y));
+                res.setDirection(x, y, getDirection(x, y));
+            }
+        }
+        return res;
+    }
+
+    private byte code(int x, int y) {
+        long idx = (long) x * height + y;
+        return chunks[(int) (idx >>> chunkShift)].get((int) (idx & ((1L << chunkShift) - 1)));
+    }
+
+    private void ensureOnHeap() {
+        if (heapImage == null) {
+            heapImage = copy();
+        }
+    }
+
+    /**
+     * The codes might be memory mapped, so serialize a copy on the heap instead.
+     */
+    private Object writeReplace() {
+        return (heapImage != null) ? heapImage : copy();
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of named stages of a computation.
+ *
+ * <p>
+ * A stage is measured from {@link #startStage(String)} until {@link Stage#close()}, which is best used in a
+ * try-with-resources block. Stages may be nested; each stage is recorded separately when it finishes. Use
+ * {@link #scope(String)} to get a registry that prefixes the names of all its stages, e.g. to record the same stages for
+ * different cut variants.
+ *
+ * <p>
+ * All recorded stages can be exported as JSON using {@link #toJson()} or {@link #writeJson(File)}.
+ *
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Bastian Gloeckle
+ */
+public class MetricsRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    /** A registry that does not measure or record anything. */
+    public static final MetricsRegistry NOOP = new MetricsRegistry(false, "", new ArrayList<>());
+
+    private static final Stage NOOP_STAGE = () -> {
+    };
+
+    private boolean enabled;
+    private String prefix;
+    private List<StageMetrics> stages;
+
+    public MetricsRegistry() {
+        this(true, "", Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    private MetricsRegistry(boolean enabled, String prefix, List<StageMetrics> stages) {
+        this.enabled = enabled;
+        this.prefix = prefix;
+        this.stages = stages;
+    }
+
+    /**
+     * Start measuring a new stage. The stage has to be closed on the same thread.
+     */
+    public Stage startStage(String name) {
+        if (!enabled) {
+            return NOOP_STAGE;
+        }
+
+        String fullName = prefix + name;
+        long startWall = System.nanoTime();
+        long startCpu = currentThreadCpuNanos();
+        long startProcessCpu = processCpuNanos();
+        long startAllocated = currentThreadAllocatedBytes();
+        return () -> {
+            long wall = System.nanoTime() - startWall;
+            long cpu = diff(startCpu, currentThreadCpuNanos());
+            long processCpu = diff(startProcessCpu, processCpuNanos());
+            long allocated = diff(startAllocated, currentThreadAllocatedBytes());
+            StageMetrics metrics = new StageMetrics(fullName, wall, cpu, processCpu, allocated);
+            logger.trace("Finished stage: {}", metrics);
+            stages.add(metrics);
+        };
+    }
+
+    /**
+     * @return A registry which records into this registry, but prefixes all names of stages with the given name.
+     */
+    public MetricsRegistry scope(String name) {
+        return new MetricsRegistry(enabled, prefix + name + "/", stages);
+    }
+
+    /**
+     * Forget all stages that have been recorded in the given scope, see {@link #scope(String)}.
+     */
+    public void removeScope(String name) {
+        String scopePrefix = prefix + name + "/";
+        synchronized (stages) {
+            stages.removeIf(stage -> stage.getName().startsWith(scopePrefix));
+        }
+    }
+
+    /**
+     * @return All stages that have been finished up until now, in the order they finished.
+     */
+    public List<StageMetrics> getStages() {
+        synchronized (stages) {
+            return new ArrayList<>(stages);
+        }
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"stages\": [");
+        boolean first = true;
+        for (StageMetrics s : getStages()) {
+            if (!first) {
+                sb.append(",");
+            }
+            first = false;
+            sb.append("\n    { \"name\": ");
+            appendJsonString(sb, s.getName());
+            sb.append(", \"wallNanos\": ").append(s.getWallNanos());
+            sb.append(", \"cpuNanos\": ").append(s.getCpuNanos());
+            sb.append(", \"processCpuNanos\": ").append(s.getProcessCpuNanos());
+            sb.append(", \"allocatedBytes\": ").append(s.getAllocatedBytes());
+            sb.append(" }");
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    public void writeJson(File file) throws IOException {
+        try (Writer w = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            w.write(toJson());
+        }
+    }
+
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static long diff(long start, long end) {
+        if (start < 0 || end < 0) {
+            return -1;
+        }
+        return end - start;
+    }
+
+    private static long currentThreadCpuNanos() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!threadBean.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+        return threadBean.getCurrentThreadCpuTime();
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!sunThreadBean.isThreadAllocatedMemorySupported() || !sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long processCpuNanos() {
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (!(osBean instanceof com.sun.management.OperatingSystemMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuTime();
+    }
+
+    /**
+     * A stage that is currently being measured. Closing it finishes the measurement and records the results.
+     */
+    public static interface Stage extends AutoCloseable {
+        @Override
+        public void close();
+    }
+}
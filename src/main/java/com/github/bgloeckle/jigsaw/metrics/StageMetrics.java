@@ -0,0 +1,77 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.metrics;
+
+/**
+ * Resources used by a single finished stage that was recorded in a {@link MetricsRegistry}.
+ *
+ * <p>
+ * CPU time and allocated bytes are measured on the thread that started the stage only. Work that a stage hands over to
+ * other threads (e.g. parallel streams) is therefore not contained in these values, but in {@link #getProcessCpuNanos()}
+ * which contains the CPU time of the whole JVM during the stage. Values that cannot be measured on the current JVM are
+ * -1.
+ *
+ * @author Bastian Gloeckle
+ */
+public class StageMetrics {
+    private String name;
+    private long wallNanos;
+    private long cpuNanos;
+    private long processCpuNanos;
+    private long allocatedBytes;
+
+    public StageMetrics(String name, long wallNanos, long cpuNanos, long processCpuNanos, long allocatedBytes) {
+        this.name = name;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.processCpuNanos = processCpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @return Full name of the stage, the names of the scopes the stage was recorded in separated by "/".
+     */
+    public String getName() {
+        return name;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getProcessCpuNanos() {
+        return processCpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "StageMetrics[name=" + name + ",wallNanos=" + wallNanos + ",cpuNanos=" + cpuNanos + ",processCpuNanos="
+                        + processCpuNanos + ",allocatedBytes=" + allocatedBytes + "]";
+    }
+}
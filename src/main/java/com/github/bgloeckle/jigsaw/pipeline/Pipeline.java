@@ -21,6 +21,10 @@
 package com.github.bgloeckle.jigsaw.pipeline;
 
 import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry.Stage;
+import com.github.bgloeckle.jigsaw.util.SolveCancelledException;
+import com.github.bgloeckle.jigsaw.util.SolveContext;
 
 /**
  * Pipeline of {@link Step}s which are executed consecutively on {@link #process(Image)}.
@@ -35,12 +39,47 @@ public class Pipeline {
     }
 
     public Image process(Image input) {
+        return process(input, MetricsRegistry.NOOP);
+    }
+
+    /**
+     * Same as {@link #process(Image)}, but records each step as stage named by the steps class in the given
+     * {@link MetricsRegistry}.
+     */
+    public Image process(Image input, MetricsRegistry metrics) {
+        return process(input, metrics, SolveContext.NONE);
+    }
+
+    /**
+     * Same as {@link #process(Image, MetricsRegistry)}, but checks the given context before each step.
+     *
+     * @throws SolveCancelledException
+     *             If the context was cancelled.
+     */
+    public Image process(Image input, MetricsRegistry metrics, SolveContext context) throws SolveCancelledException {
         Image result = input.copy();
 
         for (Step s : steps) {
-            s.accept(result);
+            context.checkCancelled();
+            try (Stage stage = metrics.startStage(s.getClass().getSimpleName())) {
+                s.accept(result);
+            }
         }
 
         return result;
     }
+
+    /**
+     * @return Description of all steps of this pipeline, see {@link Step#getDescription()}.
+     */
+    public String getDescription() {
+        StringBuilder sb = new StringBuilder();
+        for (Step s : steps) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(s.getDescription());
+        }
+        return sb.toString();
+    }
 }
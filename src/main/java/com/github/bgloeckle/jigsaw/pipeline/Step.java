@@ -31,4 +31,11 @@ import com.github.bgloeckle.jigsaw.image.Image;
  * @author Bastian Gloeckle
  */
 public interface Step extends Consumer<Image> {
+    /**
+     * @return A description of this step including all its parameters that influence the result. Two steps with equal
+     *         descriptions are expected to produce the same result.
+     */
+    public default String getDescription() {
+        return getClass().getSimpleName();
+    }
 }
@@ -0,0 +1,170 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.server;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.bgloeckle.jigsaw.JigsawSolver;
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.image.Image;
+
+/**
+ * A jigsaw that was posted to the {@link SolveServer}, executing all stages of {@link JigsawSolver} when run.
+ *
+ * <p>
+ * The input image and the results are stored in a working directory of the job.
+ *
+ * @author Bastian Gloeckle
+ */
+/* package */ class SolveJob implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(SolveJob.class);
+
+    public static enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /* package */ static final String INPUT_FILE_NAME = "input.png";
+    /* package */ static final String RESULT_FILE_PREFIX = "result";
+
+    private String id;
+    private File workDir;
+    private JigsawSolver solver;
+
+    private volatile State state = State.QUEUED;
+    private volatile String stage;
+    private volatile int resultCount;
+    private volatile String error;
+    private volatile long finishedNanos;
+
+    /* package */ SolveJob(String id, File workDir, JigsawSolver solver) {
+        this.id = id;
+        this.workDir = workDir;
+        this.solver = solver;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (state != State.QUEUED) {
+                // cancelled while queued.
+                return;
+            }
+            state = State.RUNNING;
+        }
+        try {
+            stage = "load";
+            Image inputImage = solver.loadInput();
+            stage = "detectEdges";
+            Image inputEdgeImage = solver.detectEdges(inputImage);
+            stage = "findCutVariants";
+            Set<List<Integer>> cutVariants = solver.findCutVariants(inputEdgeImage);
+            stage = "solveCutVariants";
+            Set<Assembly> assemblies = solver.solveCutVariants(inputEdgeImage, cutVariants);
+            stage = "writeResults";
+            solver.writeResults(inputImage, assemblies);
+            resultCount = assemblies.size();
+            stage = null;
+            finish(State.DONE);
+        } catch (Throwable t) {
+            // also catch Errors like OutOfMemoryError, otherwise the job would stay running forever.
+            logger.error("Job {} failed", id, t);
+            error = (t.getMessage() != null) ? t.getMessage() : t.getClass().getSimpleName();
+            finish(State.FAILED);
+        }
+    }
+
+    private void finish(State finalState) {
+        finishedNanos = System.nanoTime();
+        state = finalState;
+    }
+
+    /**
+     * Cancel the job: If it is still queued, it is {@link State#FAILED} right away and will not do anything when run.
+     * If it is running, it stops as soon as possible, keeping the results found so far, see
+     * {@link JigsawSolver#solve()}.
+     *
+     * @return <code>true</code> if the job was still queued, i.e. it can be removed from the queue.
+     */
+    /* package */ boolean cancel() {
+        synchronized (this) {
+            if (state == State.QUEUED) {
+                error = "Cancelled";
+                finish(State.FAILED);
+                return true;
+            }
+        }
+        solver.getSolveContext().cancel();
+        return false;
+    }
+
+    /**
+     * @return The file the result with the given index was written to.
+     */
+    /* package */ File getResultFile(int idx) {
+        return new File(workDir, RESULT_FILE_PREFIX + "-" + idx + ".png");
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public File getWorkDir() {
+        return workDir;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return The stage of {@link JigsawSolver} the job is currently executing, <code>null</code> if not running.
+     */
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * @return <code>true</code> if the job is {@link State#DONE} or {@link State#FAILED}.
+     */
+    public boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+
+    /**
+     * @return Value of {@link System#nanoTime()} when the job finished, only valid if {@link #isFinished()}.
+     */
+    public long getFinishedNanos() {
+        return finishedNanos;
+    }
+
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,386 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.bgloeckle.jigsaw.JigsawSolver;
+import com.github.bgloeckle.jigsaw.cache.EdgeImageCache;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP server that solves jigsaws posted to it, keeping a single JVM running for many jigsaws.
+ *
+ * <p>
+ * Endpoints:
+ *
+ * <ul>
+ * <li>POST /jobs with a PNG as body: Enqueue a new job, returns its id. Responds with 503 if the queue is full.
+ * <li>GET /jobs/{id}: State, current stage and number of results of a job.
+ * <li>GET /jobs/{id}/results/{idx}: The result PNG with the given index of a finished job.
+ * <li>POST /jobs/{id}/cancel: Cancel a queued or running job. A queued job fails right away and leaves the queue, a
+ * running job keeps the results found so far.
+ * <li>DELETE /jobs/{id}: Remove a job that is not running anymore, including its files.
+ * </ul>
+ *
+ * At most "concurrency" jobs are solved at the same time, at most "queueCapacity" further jobs wait for being solved.
+ * Finished jobs are removed including their files after {@link #FINISHED_JOB_TTL_MILLIS} or as soon as there are more
+ * than {@link #MAX_FINISHED_JOBS}, whichever comes first.
+ *
+ * <p>
+ * The server does not authenticate its clients, so by default it only listens on the loopback interface.
+ *
+ * @author Bastian Gloeckle
+ */
+public class SolveServer {
+    private static final Logger logger = LoggerFactory.getLogger(SolveServer.class);
+
+    private static final String JOBS_PATH = "/jobs";
+    private static final long MAX_UPLOAD_BYTES = 64L * 1024 * 1024;
+    /* package */ static final long FINISHED_JOB_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    /* package */ static final int MAX_FINISHED_JOBS = 100;
+    private static final long EVICTION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private File workDir;
+    private MetricsRegistry metrics;
+    private EdgeImageCache edgeImageCache;
+    private Consumer<JigsawSolver> solverConfigurer = solver -> {
+    };
+
+    private HttpServer httpServer;
+    private ThreadPoolExecutor solveExecutor;
+    private ExecutorService httpExecutor;
+    private ScheduledExecutorService evictionExecutor;
+    private Map<String, SolveJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Create a server that listens on the loopback interface only.
+     *
+     * @see #SolveServer(InetAddress, int, File, int, int, MetricsRegistry, EdgeImageCache)
+     */
+    public SolveServer(int port, File workDir, int concurrency, int queueCapacity, MetricsRegistry metrics,
+                    EdgeImageCache edgeImageCache) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, workDir, concurrency, queueCapacity, metrics, edgeImageCache);
+    }
+
+    /**
+     * @param bindAddress
+     *            The address to listen on, e.g. the wildcard address to listen on all interfaces.
+     * @param port
+     *            The port to listen on, 0 to choose a free one.
+     * @param workDir
+     *            Directory in which the input and result files of the jobs are stored.
+     * @param edgeImageCache
+     *            Cache of edge images or <code>null</code>.
+     */
+    public SolveServer(InetAddress bindAddress, int port, File workDir, int concurrency, int queueCapacity,
+                    MetricsRegistry metrics, EdgeImageCache edgeImageCache) throws IOException {
+        this.workDir = workDir;
+        this.metrics = metrics;
+        this.edgeImageCache = edgeImageCache;
+
+        solveExecutor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity),
+                        new ThreadFactoryBuilder().setNameFormat("solve-%d").setDaemon(true).build());
+        httpExecutor = Executors.newFixedThreadPool(2,
+                        new ThreadFactoryBuilder().setNameFormat("http-%d").setDaemon(true).build());
+
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setNameFormat("evict-jobs-%d").setDaemon(true).build());
+
+        httpServer = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        httpServer.createContext(JOBS_PATH, this::handle);
+        httpServer.setExecutor(httpExecutor);
+    }
+
+    /**
+     * @param solverConfigurer
+     *            Called with the {@link JigsawSolver} of each posted jigsaw before it is used, e.g. to set the cut
+     *            detection.
+     */
+    public void setSolverConfigurer(Consumer<JigsawSolver> solverConfigurer) {
+        this.solverConfigurer = solverConfigurer;
+    }
+
+    public void start() {
+        httpServer.start();
+        evictionExecutor.scheduleWithFixedDelay(() -> evictFinishedJobs(System.nanoTime()), EVICTION_INTERVAL_MILLIS,
+                        EVICTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        logger.info("Listening on {}:{}", httpServer.getAddress().getAddress().getHostAddress(), getPort());
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        jobs.values().forEach(SolveJob::cancel);
+        solveExecutor.shutdownNow();
+        httpExecutor.shutdownNow();
+        evictionExecutor.shutdownNow();
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().substring(JOBS_PATH.length()).split("/");
+            // path[0] is always empty.
+            if (path.length <= 1 && method.equals("POST")) {
+                postJob(exchange);
+            } else if (path.length == 2 && method.equals("GET")) {
+                getJob(exchange, path[1]);
+            } else if (path.length == 2 && method.equals("DELETE")) {
+                deleteJob(exchange, path[1]);
+            } else if (path.length == 3 && path[2].equals("cancel") && method.equals("POST")) {
+                cancelJob(exchange, path[1]);
+            } else if (path.length == 4 && path[2].equals("results") && method.equals("GET")) {
+                getResult(exchange, path[1], path[3]);
+            } else {
+                sendJson(exchange, 404, error("Not found"));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not handle request to {}", exchange.getRequestURI(), e);
+            sendJson(exchange, 500, error("Internal error"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void postJob(HttpExchange exchange) throws IOException {
+        String id = UUID.randomUUID().toString();
+        File jobDir = new File(workDir, id);
+        Files.createDirectories(jobDir.toPath());
+        File inputFile = new File(jobDir, SolveJob.INPUT_FILE_NAME);
+        if (!readBody(exchange.getRequestBody(), inputFile)) {
+            deleteDir(jobDir);
+            sendJson(exchange, 413, error("Image too large"));
+            return;
+        }
+
+        evictFinishedJobs(System.nanoTime());
+        JigsawSolver solver = createSolver(inputFile, new File(jobDir, SolveJob.RESULT_FILE_PREFIX), id);
+        SolveJob job = new SolveJob(id, jobDir, solver);
+        jobs.put(id, job);
+        try {
+            solveExecutor.execute(job);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            deleteDir(jobDir);
+            sendJson(exchange, 503, error("Queue full"));
+            return;
+        }
+        logger.info("Enqueued job {}", id);
+        sendJson(exchange, 202, "{\"id\": " + jsonString(id) + "}");
+    }
+
+    private void getJob(HttpExchange exchange, String id) throws IOException {
+        SolveJob job = jobs.get(id);
+        if (job == null) {
+            sendJson(exchange, 404, error("Unknown job"));
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"id\": ").append(jsonString(job.getId()));
+        sb.append(", \"state\": ").append(jsonString(job.getState().name()));
+        sb.append(", \"stage\": ").append(job.getStage() == null ? "null" : jsonString(job.getStage()));
+        sb.append(", \"results\": ").append(job.getResultCount());
+        if (job.getError() != null) {
+            sb.append(", \"error\": ").append(jsonString(job.getError()));
+        }
+        sb.append("}");
+        sendJson(exchange, 200, sb.toString());
+    }
+
+    private void getResult(HttpExchange exchange, String id, String idxString) throws IOException {
+        SolveJob job = jobs.get(id);
+        int idx;
+        try {
+            idx = Integer.parseInt(idxString);
+        } catch (NumberFormatException e) {
+            idx = -1;
+        }
+        if (job == null || job.getState() != SolveJob.State.DONE || idx < 0 || idx >= job.getResultCount()) {
+            sendJson(exchange, 404, error("Unknown result"));
+            return;
+        }
+        File resultFile = job.getResultFile(idx);
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.sendResponseHeaders(200, resultFile.length());
+        try (OutputStream os = exchange.getResponseBody()) {
+            Files.copy(resultFile.toPath(), os);
+        }
+    }
+
+    private void cancelJob(HttpExchange exchange, String id) throws IOException {
+        SolveJob job = jobs.get(id);
+        if (job == null) {
+            sendJson(exchange, 404, error("Unknown job"));
+            return;
+        }
+        if (job.getState() != SolveJob.State.QUEUED && job.getState() != SolveJob.State.RUNNING) {
+            sendJson(exchange, 409, error("Job finished already"));
+            return;
+        }
+        if (job.cancel()) {
+            // free the queue slot right away instead of waiting for a solve thread to skip the job.
+            solveExecutor.remove(job);
+        }
+        logger.info("Cancelled job {}", id);
+        sendJson(exchange, 202, "{\"id\": " + jsonString(id) + "}");
+    }
+
+    private void deleteJob(HttpExchange exchange, String id) throws IOException {
+        SolveJob job = jobs.get(id);
+        if (job == null) {
+            sendJson(exchange, 404, error("Unknown job"));
+            return;
+        }
+        if (job.getState() == SolveJob.State.QUEUED || job.getState() == SolveJob.State.RUNNING) {
+            sendJson(exchange, 409, error("Job not finished"));
+            return;
+        }
+        removeJob(job);
+        sendJson(exchange, 200, "{\"id\": " + jsonString(id) + "}");
+    }
+
+    /**
+     * @return A configured solver for a posted jigsaw.
+     */
+    /* package */ JigsawSolver createSolver(File inputFile, File outputFile, String id) {
+        JigsawSolver res = new JigsawSolver(inputFile, outputFile, metrics.scope(id), edgeImageCache);
+        solverConfigurer.accept(res);
+        return res;
+    }
+
+    /**
+     * Remove finished jobs that finished more than {@link #FINISHED_JOB_TTL_MILLIS} before the given time and the
+     * oldest finished jobs exceeding {@link #MAX_FINISHED_JOBS}.
+     *
+     * @param nowNanos
+     *            The current value of {@link System#nanoTime()}.
+     */
+    /* package */ void evictFinishedJobs(long nowNanos) {
+        List<SolveJob> finishedJobs = jobs.values().stream().filter(SolveJob::isFinished)
+                        .sorted(Comparator.comparingLong(SolveJob::getFinishedNanos)).collect(Collectors.toList());
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(FINISHED_JOB_TTL_MILLIS);
+        for (int i = 0; i < finishedJobs.size(); i++) {
+            SolveJob job = finishedJobs.get(i);
+            if (finishedJobs.size() - i > MAX_FINISHED_JOBS || nowNanos - job.getFinishedNanos() > ttlNanos) {
+                logger.info("Removing finished job {}", job.getId());
+                removeJob(job);
+            }
+        }
+    }
+
+    /**
+     * Remove a job that is not running anymore, including its files and metrics.
+     */
+    private void removeJob(SolveJob job) {
+        if (jobs.remove(job.getId(), job)) {
+            deleteDir(job.getWorkDir());
+            metrics.removeScope(job.getId());
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the body is larger than {@link #MAX_UPLOAD_BYTES}.
+     */
+    private boolean readBody(InputStream is, File target) throws IOException {
+        long total = 0;
+        byte[] buf = new byte[64 * 1024];
+        try (OutputStream os = Files.newOutputStream(target.toPath())) {
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                total += len;
+                if (total > MAX_UPLOAD_BYTES) {
+                    return false;
+                }
+                os.write(buf, 0, len);
+            }
+        }
+        return true;
+    }
+
+    private void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private String error(String message) {
+        return "{\"error\": " + jsonString(message) + "}";
+    }
+
+    private String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -22,7 +22,6 @@ package com.github.bgloeckle.jigsaw.steps;
 
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ThreadLocalRandom;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +30,7 @@ import com.github.bgloeckle.jigsaw.image.Image;
 import com.github.bgloeckle.jigsaw.pipeline.Step;
 import com.github.bgloeckle.jigsaw.util.Pair;
 import com.github.bgloeckle.jigsaw.util.Quantile;
+import com.github.bgloeckle.jigsaw.util.RandomProvider;
 
 /**
  * Executes the "double threshold" and "edge tracking by hysteresis" steps of the Canny algorithm. This thins out edges.
@@ -57,10 +57,15 @@ public class EdgeTrackingByDoubleThreshold implements Step {
      *            (0.0<=v<=1.0) of the 90%-quantile of all pixel values. Must be >= lowerThreshold.
      */
     public EdgeTrackingByDoubleThreshold(double lowerThreshold, double upperThreshold) {
-        this(lowerThreshold, upperThreshold, upperBound -> ThreadLocalRandom.current().nextInt(upperBound));
+        this(lowerThreshold, upperThreshold, RandomProvider.UNSEEDED);
     }
 
-    /* package */ EdgeTrackingByDoubleThreshold(double lowerThreshold, double upperThreshold,
+    /**
+     * @param randomProvider
+     *            Provides the positions of the pixels sampled on large images.
+     * @see #EdgeTrackingByDoubleThreshold(double, double)
+     */
+    public EdgeTrackingByDoubleThreshold(double lowerThreshold, double upperThreshold,
                     RandomProvider randomProvider) {
         this.lowerThresholdPercentage = lowerThreshold;
         this.upperThresholdPercentage = upperThreshold;
@@ -109,6 +114,12 @@ public class EdgeTrackingByDoubleThreshold implements Step {
         logger.debug("Cleaned {} unneeded pixels", cleanCount);
     }
 
+    @Override
+    public String getDescription() {
+        return "EdgeTrackingByDoubleThreshold[lower=" + lowerThresholdPercentage + ",upper="
+                        + upperThresholdPercentage + ",random=" + randomProvider.getDescription() + "]";
+    }
+
     private double approximateQuantile90(Image i) {
         long numberOfPixelsTotal = (long) i.getWidth() * i.getHeight();
         Quantile q = new Quantile();
@@ -133,8 +144,4 @@ public class EdgeTrackingByDoubleThreshold implements Step {
         }
         return q.calculateCurrentQuantile(.9);
     }
-
-    public interface RandomProvider {
-        public int provideRandomInt(int upperBound);
-    }
 }
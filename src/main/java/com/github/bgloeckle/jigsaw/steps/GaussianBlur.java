@@ -66,6 +66,11 @@ public class GaussianBlur implements Step {
     public void accept(Image output) {
         logger.info("Applying Gaussian blur filter with sigma={}", sigma);
 
-        Convolution.applyConvolution(kernel, output, true);
+        Convolution.engine().apply(kernel, output, true);
+    }
+
+    @Override
+    public String getDescription() {
+        return "GaussianBlur[sigma=" + sigma + "]";
     }
 }
@@ -60,10 +60,10 @@ public class SobelFilter implements Step {
         logger.info("Applying Sobel filter");
         // Do not normalize, since the sum of all weights for our kernels is 0.
         Image xImage = t.copy();
-        Convolution.applyConvolution(X_KERNEL, xImage, false);
+        Convolution.engine().apply(X_KERNEL, xImage, false);
 
         Image yImage = t.copy();
-        Convolution.applyConvolution(Y_KERNEL, yImage, false);
+        Convolution.engine().apply(Y_KERNEL, yImage, false);
         
         for (int x = 0; x < t.getWidth(); x++) {
             for (int y = 0; y < t.getHeight(); y++) {
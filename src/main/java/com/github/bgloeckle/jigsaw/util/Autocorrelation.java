@@ -0,0 +1,120 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+/**
+ * Calculates the autocorrelation of a 1D signal using a fast fourier transform.
+ *
+ * @author Bastian Gloeckle
+ */
+public class Autocorrelation {
+    private Autocorrelation() {
+    }
+
+    /**
+     * Calculate the normalized autocorrelation of the given signal after removing its mean.
+     *
+     * @return Array of the same length as the signal. Index i contains the correlation of the signal with itself shifted
+     *         by i, which is in [-1, 1]. Index 0 is 1, unless the signal is constant, in which case all values are 0.
+     */
+    public static double[] calculate(double[] signal) {
+        int n = signal.length;
+        double mean = 0;
+        for (double v : signal) {
+            mean += v;
+        }
+        mean /= n;
+
+        // pad to at least 2n to get the linear and not the circular correlation.
+        int size = Integer.highestOneBit(Math.max(1, 2 * n - 1));
+        if (size < 2 * n - 1) {
+            size <<= 1;
+        }
+        double[] re = new double[size];
+        double[] im = new double[size];
+        for (int i = 0; i < n; i++) {
+            re[i] = signal[i] - mean;
+        }
+
+        // Wiener-Khinchin: autocorrelation is the inverse transform of the power spectrum.
+        fft(re, im, false);
+        for (int i = 0; i < size; i++) {
+            re[i] = re[i] * re[i] + im[i] * im[i];
+            im[i] = 0;
+        }
+        fft(re, im, true);
+
+        double[] res = new double[n];
+        if (re[0] <= 0) {
+            return res;
+        }
+        for (int i = 0; i < n; i++) {
+            res[i] = re[i] / re[0];
+        }
+        return res;
+    }
+
+    /**
+     * In-place iterative radix-2 FFT. The length of the arrays must be a power of 2. The inverse transform is not
+     * scaled, as only relative values are of interest.
+     */
+    private static void fft(double[] re, double[] im, boolean inverse) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int len = 2; len <= n; len <<= 1) {
+            double angle = 2 * Math.PI / len * (inverse ? 1 : -1);
+            double wRe = Math.cos(angle);
+            double wIm = Math.sin(angle);
+            for (int i = 0; i < n; i += len) {
+                double curRe = 1;
+                double curIm = 0;
+                for (int j = 0; j < len / 2; j++) {
+                    int a = i + j;
+                    int b = i + j + len / 2;
+                    double bRe = re[b] * curRe - im[b] * curIm;
+                    double bIm = re[b] * curIm + im[b] * curRe;
+                    re[b] = re[a] - bRe;
+                    im[b] = im[a] - bIm;
+                    re[a] += bRe;
+                    im[a] += bIm;
+                    double nextRe = curRe * wRe - curIm * wIm;
+                    curIm = curRe * wIm + curIm * wRe;
+                    curRe = nextRe;
+                }
+            }
+        }
+    }
+}
@@ -20,9 +20,57 @@
  */
 package com.github.bgloeckle.jigsaw.util;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.bgloeckle.jigsaw.image.Image;
 
 public class Convolution {
+    private static final Logger logger = LoggerFactory.getLogger(Convolution.class);
+
+    /**
+     * Name of the system property which can be set to "false" in order to disable the vectorized
+     * {@link ConvolutionEngine}.
+     */
+    public static final String VECTOR_ENGINE_SYSTEM_PROPERTY = "jigsaw.convolution.vector";
+
+    private static final String VECTOR_ENGINE_CLASS = "com.github.bgloeckle.jigsaw.util.VectorConvolutionEngine";
+
+    private static volatile ConvolutionEngine engine = null;
+
+    /**
+     * @return The fastest {@link ConvolutionEngine} available. This is a vectorized engine if jigsaw was built with
+     *         the "vector-api" profile and the JVM was started with <code>--add-modules jdk.incubator.vector</code>,
+     *         otherwise a {@link PaddedConvolutionEngine}.
+     */
+    public static ConvolutionEngine engine() {
+        if (engine == null) {
+            synchronized (Convolution.class) {
+                if (engine == null) {
+                    engine = loadEngine();
+                }
+            }
+        }
+        return engine;
+    }
+
+    private static ConvolutionEngine loadEngine() {
+        if (!"false".equals(System.getProperty(VECTOR_ENGINE_SYSTEM_PROPERTY))) {
+            try {
+                ConvolutionEngine res = (ConvolutionEngine) Class.forName(VECTOR_ENGINE_CLASS).getConstructor()
+                                .newInstance();
+                logger.info("Using vectorized convolution engine");
+                return res;
+            } catch (ClassNotFoundException e) {
+                logger.debug("Vectorized convolution engine not available, jigsaw was built without it.");
+            } catch (ReflectiveOperationException | LinkageError e) {
+                logger.debug("Vectorized convolution engine not available, is the JVM running with "
+                                + "'--add-modules jdk.incubator.vector'?", e);
+            }
+        }
+        return new PaddedConvolutionEngine();
+    }
+
     /**
      * Apply a kernel on the given image using convolution, writing the results back into that image.
      * 
@@ -33,6 +81,9 @@ public class Convolution {
      * <p>
      * See https://en.wikipedia.org/wiki/Kernel_(image_processing)#Convolution.
      * 
+     * <p>
+     * This is the simple reference implementation, use {@link #engine()} for a faster one.
+     * 
      * @param kernel
      *            Kernel to apply. Needs to be square and have odd number of rows and columns.
      * @param img
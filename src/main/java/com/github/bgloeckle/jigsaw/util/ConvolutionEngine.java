@@ -0,0 +1,40 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+import com.github.bgloeckle.jigsaw.image.Image;
+
+/**
+ * Implementation of applying a convolution kernel on an {@link Image}.
+ *
+ * <p>
+ * All implementations need to produce exactly the same results as
+ * {@link Convolution#applyConvolution(double[][], Image, boolean)}. Use {@link Convolution#engine()} to get the best
+ * engine available in the current JVM.
+ *
+ * @author Bastian Gloeckle
+ */
+public interface ConvolutionEngine {
+    /**
+     * See {@link Convolution#applyConvolution(double[][], Image, boolean)}.
+     */
+    public void apply(double[][] kernel, Image img, boolean normalize);
+}
@@ -47,6 +47,22 @@ public enum EdgeDirection {
         return gradientRadian;
     }
 
+    /**
+     * @return The direction of this edge after rotating it by 90°.
+     */
+    public EdgeDirection rotateQuarter() {
+        switch (this) {
+        case NORTH_SOUTH:
+            return EAST_WEST;
+        case EAST_WEST:
+            return NORTH_SOUTH;
+        case NORTHEAST_SOUTHWEST:
+            return SOUTHEAST_NORTHWEST;
+        default:
+            return NORTHEAST_SOUTHWEST;
+        }
+    }
+
     public static EdgeDirection fromGradientRadian(double radianDirection) {
         if (radianDirection == Image.DIRECTION_UNDEFINED) {
             return null;
@@ -0,0 +1,127 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+import com.github.bgloeckle.jigsaw.image.Image;
+
+/**
+ * A {@link ConvolutionEngine} that copies the image once into a flat array which has its borders "extended" already.
+ *
+ * <p>
+ * The padded array is column-major (x-major, just like {@link Image} is indexed), i.e. the pixel at (x, y) of the
+ * original image is at index <code>(x + radius) * paddedHeight + (y + radius)</code>. This way the inner loops do not
+ * need to clamp any coordinates and the values of a single column are contiguous in memory.
+ *
+ * <p>
+ * Subclasses can override {@link #convolveColumn(double[], int, double[], int, int, double[])} to calculate multiple
+ * pixels at once.
+ *
+ * @author Bastian Gloeckle
+ */
+public class PaddedConvolutionEngine implements ConvolutionEngine {
+    @Override
+    public void apply(double[][] kernel, Image img, boolean normalize) {
+        if (kernel.length != kernel[0].length || kernel.length % 2 == 0) {
+            throw new IllegalArgumentException("kernel not square or not odd size.");
+        }
+
+        int radius = (kernel.length - 1) / 2;
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int paddedHeight = height + 2 * radius;
+
+        double[] padded = pad(img, radius);
+
+        // flatten kernel in the order in which the summands are added, which is the same order as in
+        // Convolution#applyConvolution. This makes sure that the result is exactly the same.
+        double[] flatKernel = new double[kernel.length * kernel.length];
+        double weightSum = 0;
+        int i = 0;
+        for (int kernelDeltaX = -radius; kernelDeltaX <= radius; kernelDeltaX++) {
+            for (int kernelDeltaY = -radius; kernelDeltaY <= radius; kernelDeltaY++) {
+                flatKernel[i++] = kernel[radius - kernelDeltaX][radius - kernelDeltaY];
+                weightSum += kernel[radius - kernelDeltaX][radius - kernelDeltaY];
+            }
+        }
+
+        double[] column = new double[height];
+        for (int x = 0; x < width; x++) {
+            convolveColumn(padded, paddedHeight, flatKernel, kernel.length, x, column);
+            for (int y = 0; y < height; y++) {
+                if (normalize) {
+                    img.setColor(x, y, (int) Math.round(column[y] / weightSum));
+                } else {
+                    img.setColor(x, y, (int) Math.round(column[y]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculate the non-normalized convolution sums of all pixels of a single column of the image.
+     *
+     * @param padded
+     *            The padded image, see class comment.
+     * @param paddedHeight
+     *            Number of entries per column in padded.
+     * @param flatKernel
+     *            The kernel, flattened in the order the summands need to be added.
+     * @param kernelSize
+     *            Number of rows/columns of the kernel.
+     * @param x
+     *            The column in the original image to calculate.
+     * @param res
+     *            Array of size "height of original image" to write the results to.
+     */
+    protected void convolveColumn(double[] padded, int paddedHeight, double[] flatKernel, int kernelSize, int x,
+                    double[] res) {
+        for (int y = 0; y < res.length; y++) {
+            double sum = 0;
+            int k = 0;
+            for (int kernelX = 0; kernelX < kernelSize; kernelX++) {
+                int base = (x + kernelX) * paddedHeight + y;
+                for (int kernelY = 0; kernelY < kernelSize; kernelY++) {
+                    sum += padded[base + kernelY] * flatKernel[k++];
+                }
+            }
+            res[y] = sum;
+        }
+    }
+
+    private double[] pad(Image img, int radius) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int paddedHeight = height + 2 * radius;
+        double[] res = new double[(width + 2 * radius) * paddedHeight];
+        for (int paddedX = 0; paddedX < width + 2 * radius; paddedX++) {
+            int sourceX = Math.min(Math.max(0, paddedX - radius), width - 1);
+            int base = paddedX * paddedHeight;
+            for (int y = 0; y < height; y++) {
+                res[base + radius + y] = img.getColor(sourceX, y);
+            }
+            for (int y = 0; y < radius; y++) {
+                res[base + y] = res[base + radius];
+                res[base + radius + height + y] = res[base + radius + height - 1];
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Source of the random numbers used while solving a jigsaw.
+ *
+ * <p>
+ * {@link #UNSEEDED} provides different numbers on each run. A provider created by {@link #seeded(long)} provides the
+ * same numbers on each run with the same seed, which makes run times and results reproducible.
+ *
+ * <p>
+ * Parallel work derives its own provider for each unit of work via {@link #derive(String)}. A derived seeded provider
+ * only depends on the seed and the name, not on the thread, the process or the order in which providers are derived,
+ * so parallel and distributed runs stay reproducible. A seeded provider must not be used by multiple threads at the
+ * same time.
+ *
+ * @author Bastian Gloeckle
+ */
+@FunctionalInterface
+public interface RandomProvider {
+    /** Provider of different numbers on each run, can be used by multiple threads at the same time. */
+    public static final RandomProvider UNSEEDED = upperBound -> ThreadLocalRandom.current().nextInt(upperBound);
+
+    /**
+     * @return A provider of the same numbers on each run with the same seed.
+     */
+    public static RandomProvider seeded(long seed) {
+        return new Seeded(seed);
+    }
+
+    /**
+     * @return A random int in [0, upperBound).
+     */
+    public int provideRandomInt(int upperBound);
+
+    /**
+     * @param name
+     *            Identifies the unit of work that uses the new provider, e.g. a cut variant.
+     * @return An independent provider for the given unit of work. Providers that are not seeded may return themselves.
+     */
+    public default RandomProvider derive(String name) {
+        return this;
+    }
+
+    /**
+     * @return Human readable description that differs for providers of different numbers, so it can be part of cache
+     *         keys. Providers that are not seeded are all described the same.
+     */
+    public default String getDescription() {
+        return "unseeded";
+    }
+
+    /**
+     * Provider based on a {@link SplittableRandom}.
+     */
+    static class Seeded implements RandomProvider {
+        private long seed;
+        private SplittableRandom random;
+
+        /* package */ Seeded(long seed) {
+            this.seed = seed;
+            random = new SplittableRandom(seed);
+        }
+
+        @Override
+        public int provideRandomInt(int upperBound) {
+            return random.nextInt(upperBound);
+        }
+
+        @Override
+        public RandomProvider derive(String name) {
+            // mix the bytes of the name into the seed, SplittableRandom scrambles the result.
+            long derivedSeed = seed;
+            for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+                derivedSeed = new SplittableRandom(derivedSeed ^ b).nextLong();
+            }
+            return new Seeded(derivedSeed);
+        }
+
+        @Override
+        public String getDescription() {
+            return "seeded(" + seed + ")";
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+/**
+ * Bounds a solve by an optional deadline and a cancellation flag.
+ *
+ * <p>
+ * All stages of a solve check the context at cheap points of their hot loops. Stages that find results one by one
+ * (like the solver strategies) return the results found so far as soon as the context is cancelled, all other stages
+ * throw a {@link SolveCancelledException} via {@link #checkCancelled()}.
+ *
+ * <p>
+ * A context created by {@link #withDeadline(long)} is cancelled as soon as its parent is, so a single
+ * {@link #cancel()} stops all nested time-limited parts of a solve.
+ *
+ * @author Bastian Gloeckle
+ */
+public class SolveContext {
+    /** Context that is never cancelled. */
+    public static final SolveContext NONE = new SolveContext() {
+        @Override
+        public void cancel() {
+            throw new UnsupportedOperationException("Cannot cancel SolveContext.NONE");
+        }
+    };
+
+    private SolveContext parent;
+    private boolean hasDeadline;
+    private long deadlineNanos;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Create a context without a deadline that is only cancelled by {@link #cancel()}.
+     */
+    public SolveContext() {
+        this(null, false, 0L);
+    }
+
+    /**
+     * @param deadlineNanos
+     *            Value of {@link System#nanoTime()} after which the context is cancelled.
+     */
+    public SolveContext(long deadlineNanos) {
+        this(null, true, deadlineNanos);
+    }
+
+    private SolveContext(SolveContext parent, boolean hasDeadline, long deadlineNanos) {
+        this.parent = parent;
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @param deadlineNanos
+     *            Value of {@link System#nanoTime()} after which the new context is cancelled.
+     * @return A new context that is cancelled at the given deadline or as soon as this context is cancelled.
+     */
+    public SolveContext withDeadline(long deadlineNanos) {
+        return new SolveContext(this, true, deadlineNanos);
+    }
+
+    /**
+     * Cancel this context and all contexts derived from it. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return <code>true</code> if {@link #cancel()} was called or the deadline passed, on this context or on one of
+     *         its parents.
+     */
+    public boolean isCancelled() {
+        if (cancelled || (hasDeadline && System.nanoTime() - deadlineNanos >= 0)) {
+            return true;
+        }
+        return parent != null && parent.isCancelled();
+    }
+
+    /**
+     * @throws SolveCancelledException
+     *             if {@link #isCancelled()}.
+     */
+    public void checkCancelled() throws SolveCancelledException {
+        if (isCancelled()) {
+            throw new SolveCancelledException();
+        }
+    }
+}
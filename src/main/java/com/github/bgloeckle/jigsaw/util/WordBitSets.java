@@ -0,0 +1,155 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+/**
+ * Operations on bit sets represented as plain long[] words, bit i being bit (i % 64) of word (i / 64).
+ *
+ * <p>
+ * In contrast to {@link java.util.BitSet}, all bit sets of the same universe have the same number of words and
+ * operations work in place without allocating, which makes them cheap in the inner loops of searches.
+ *
+ * @author Bastian Gloeckle
+ */
+public class WordBitSets {
+    private WordBitSets() {
+    }
+
+    /**
+     * @return Number of words needed for a bit set of the given number of bits.
+     */
+    public static int wordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /**
+     * @return A bit set with the bits 0 to bits - 1 set.
+     */
+    public static long[] full(int bits) {
+        long[] res = new long[wordCount(bits)];
+        for (int i = 0; i < bits >>> 6; i++) {
+            res[i] = -1L;
+        }
+        if ((bits & 63) != 0) {
+            res[res.length - 1] = (1L << bits) - 1;
+        }
+        return res;
+    }
+
+    public static boolean get(long[] words, int bit) {
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    public static void set(long[] words, int bit) {
+        words[bit >>> 6] |= 1L << bit;
+    }
+
+    public static void clear(long[] words, int bit) {
+        words[bit >>> 6] &= ~(1L << bit);
+    }
+
+    /**
+     * @return The index of the first set bit >= fromBit or -1.
+     */
+    public static int nextSetBit(long[] words, int fromBit) {
+        int wordIdx = fromBit >>> 6;
+        if (wordIdx >= words.length) {
+            return -1;
+        }
+        long word = words[wordIdx] & (-1L << fromBit);
+        while (true) {
+            if (word != 0) {
+                return (wordIdx << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIdx == words.length) {
+                return -1;
+            }
+            word = words[wordIdx];
+        }
+    }
+
+    public static int cardinality(long[] words) {
+        int res = 0;
+        for (long word : words) {
+            res += Long.bitCount(word);
+        }
+        return res;
+    }
+
+    public static boolean isEmpty(long[] words) {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the two bit sets have a set bit in common.
+     */
+    public static boolean intersects(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if ((a[i] & b[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Set target to the intersection of a and b.
+     *
+     * @return <code>true</code> if the intersection is not empty.
+     */
+    public static boolean and(long[] target, long[] a, long[] b) {
+        long any = 0;
+        for (int i = 0; i < target.length; i++) {
+            target[i] = a[i] & b[i];
+            any |= target[i];
+        }
+        return any != 0;
+    }
+
+    /**
+     * Set all bits in target that are set in mask.
+     */
+    public static void or(long[] target, long[] mask) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] |= mask[i];
+        }
+    }
+
+    /**
+     * Clear all bits in target that are set in mask.
+     *
+     * @return <code>true</code> if target changed.
+     */
+    public static boolean andNot(long[] target, long[] mask) {
+        boolean changed = false;
+        for (int i = 0; i < target.length; i++) {
+            long newWord = target[i] & ~mask[i];
+            changed |= newWord != target[i];
+            target[i] = newWord;
+        }
+        return changed;
+    }
+}
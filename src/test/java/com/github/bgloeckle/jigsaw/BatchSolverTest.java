@@ -0,0 +1,191 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry;
+import com.github.bgloeckle.jigsaw.metrics.StageMetrics;
+import com.github.bgloeckle.jigsaw.util.Pair;
+
+public class BatchSolverTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void inputDirectory() throws IOException {
+        // GIVEN
+        File inputDir = tmp.newFolder("in");
+        File outputDir = tmp.newFolder("out");
+        new File(inputDir, "b.png").createNewFile();
+        new File(inputDir, "a.PNG").createNewFile();
+        new File(inputDir, "readme.txt").createNewFile();
+
+        // WHEN
+        List<Pair<File, File>> res = BatchSolver.findInputOutputFiles(inputDir, outputDir);
+
+        // THEN
+        Assert.assertEquals("Expected correct files",
+                        Arrays.asList(new Pair<>(new File(inputDir, "a.PNG"), new File(outputDir, "a")),
+                                        new Pair<>(new File(inputDir, "b.png"), new File(outputDir, "b"))),
+                        res);
+    }
+
+    @Test
+    public void manifest() throws IOException {
+        // GIVEN
+        File manifest = tmp.newFile("manifest.txt");
+        File outputDir = tmp.newFolder("out");
+        File absolute = new File(tmp.getRoot(), "abs.png").getAbsoluteFile();
+        Files.write(manifest.toPath(), Arrays.asList("# comment", "rel.png", "", "  " + absolute.getPath() + "  "),
+                        StandardCharsets.UTF_8);
+
+        // WHEN
+        List<Pair<File, File>> res = BatchSolver.findInputOutputFiles(manifest, outputDir);
+
+        // THEN
+        Assert.assertEquals("Expected correct files", Arrays.asList(
+                        new Pair<>(new File(manifest.getAbsoluteFile().getParentFile(), "rel.png"),
+                                        new File(outputDir, "rel")),
+                        new Pair<>(absolute, new File(outputDir, "abs"))), res);
+    }
+
+    @Test
+    public void duplicateNamesGetDistinctOutputs() throws IOException {
+        // GIVEN
+        File manifest = tmp.newFile("manifest.txt");
+        File outputDir = tmp.newFolder("out");
+        Files.write(manifest.toPath(), Arrays.asList("a/x.png", "b/x.png", "c/X.png"), StandardCharsets.UTF_8);
+        File baseDir = manifest.getAbsoluteFile().getParentFile();
+
+        // WHEN
+        List<Pair<File, File>> res = BatchSolver.findInputOutputFiles(manifest, outputDir);
+        MetricsRegistry metrics = new MetricsRegistry();
+        BatchSolver batchSolver = new BatchSolver(res, metrics, null, 1);
+        for (Pair<File, File> inputOutput : res) {
+            batchSolver.createSolver(inputOutput.getLeft(), inputOutput.getRight()).getMetrics().startStage("solve")
+                            .close();
+        }
+
+        // THEN
+        Assert.assertEquals("Expected distinct output files", Arrays.asList(
+                        new Pair<>(new File(baseDir, "a/x.png"), new File(outputDir, "x")),
+                        new Pair<>(new File(baseDir, "b/x.png"), new File(outputDir, "x-2")),
+                        new Pair<>(new File(baseDir, "c/X.png"), new File(outputDir, "X-3"))), res);
+        Assert.assertEquals("Expected distinct metrics scopes", Arrays.asList("x/solve", "x-2/solve", "X-3/solve"),
+                        metrics.getStages().stream().map(StageMetrics::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void invalidInputsFail() throws IOException {
+        // GIVEN
+        File invalid = tmp.newFile("invalid.png");
+        Files.write(invalid.toPath(), new byte[] { 1, 2, 3 });
+        File missing = new File(tmp.getRoot(), "missing.png");
+        File outputDir = tmp.newFolder("out");
+
+        // WHEN
+        int failed = new BatchSolver(Arrays.asList(new Pair<>(invalid, new File(outputDir, "invalid")),
+                        new Pair<>(missing, new File(outputDir, "missing"))), MetricsRegistry.NOOP, null, 2)
+                                        .solveAll();
+
+        // THEN
+        Assert.assertEquals("Expected both jigsaws to fail", 2, failed);
+    }
+
+    @Test(timeout = 60_000)
+    public void solvesJigsaws() throws IOException {
+        // GIVEN
+        File first = writeJigsaw("first.png", 0);
+        File second = writeJigsaw("second.png", 2);
+        File outputDir = tmp.newFolder("out");
+        BatchSolver batchSolver = new BatchSolver(
+                        Arrays.asList(new Pair<>(first, new File(outputDir, "first")),
+                                        new Pair<>(second, new File(outputDir, "second"))),
+                        MetricsRegistry.NOOP, null, 2);
+        AtomicInteger configured = new AtomicInteger(0);
+        batchSolver.setSolverConfigurer(solver -> {
+            solver.setSeed(1L);
+            configured.incrementAndGet();
+        });
+
+        // WHEN
+        int failed = batchSolver.solveAll();
+
+        // THEN
+        Assert.assertEquals("Expected no jigsaw to fail", 0, failed);
+        Assert.assertEquals("Expected each solver to be configured", 2, configured.get());
+        Assert.assertTrue("Expected result of first jigsaw", new File(outputDir, "first-0.png").isFile());
+        Assert.assertTrue("Expected result of second jigsaw", new File(outputDir, "second-0.png").isFile());
+    }
+
+    @Test(timeout = 60_000)
+    public void errorInStageFailsOnlyThatJigsaw() throws IOException {
+        // GIVEN
+        File failing = writeJigsaw("failing.png", 0);
+        File working = writeJigsaw("working.png", 2);
+        File outputDir = tmp.newFolder("out");
+        BatchSolver batchSolver = new BatchSolver(
+                        Arrays.asList(new Pair<>(failing, new File(outputDir, "failing")),
+                                        new Pair<>(working, new File(outputDir, "working"))),
+                        MetricsRegistry.NOOP, null, 1) {
+            @Override
+            JigsawSolver createSolver(File inputFile, File outputFile) {
+                if (!inputFile.equals(failing)) {
+                    return super.createSolver(inputFile, outputFile);
+                }
+                return new JigsawSolver(inputFile, outputFile) {
+                    @Override
+                    public Set<List<Integer>> findCutVariants(Image inputEdgeImage) {
+                        throw new StackOverflowError("Test error");
+                    }
+                };
+            }
+        };
+
+        // WHEN
+        int failed = batchSolver.solveAll();
+
+        // THEN
+        Assert.assertEquals("Expected one jigsaw to fail", 1, failed);
+        Assert.assertTrue("Expected result of working jigsaw", new File(outputDir, "working-0.png").isFile());
+    }
+
+    private File writeJigsaw(String fileName, int stripeOffset) throws IOException {
+        File res = tmp.newFile(fileName);
+        TestResources.writeSmallJigsaw(res, stripeOffset);
+        return res;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+import com.github.bgloeckle.jigsaw.util.ArrayUtil;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+public class BestAssemblyTrackerTest {
+    private static final double UNDEF = Image.DIRECTION_UNDEFINED;
+    private static final double SOUTH = EdgeDirection.NORTH_SOUTH.getGradientRadian();
+    private static final long FAR_FUTURE = System.nanoTime() + 3_600_000_000_000L;
+
+    @Test
+    public void onlyImprovementsAreReported() {
+        // GIVEN
+        Assembly twoLines = verticalLines(1, 2);
+        Assembly oneLine = verticalLines(1);
+        List<Assembly> improvements = new ArrayList<>();
+        BestAssemblyTracker tracker = new BestAssemblyTracker(FAR_FUTURE, Double.POSITIVE_INFINITY,
+                        improvements::add);
+
+        // WHEN
+        tracker.solutionFound(twoLines);
+        tracker.solutionFound(oneLine);
+        tracker.solutionFound(verticalLines(0, 3));
+
+        // THEN
+        Assert.assertEquals("Expected correct improvements", Arrays.asList(twoLines, oneLine), improvements);
+        Assert.assertSame("Expected correct best", oneLine, tracker.getBest());
+        Assert.assertEquals("Expected correct best judgement", 16. / 1., tracker.getBestJudgement(), 1e-4);
+        Assert.assertFalse("Expected tracker to not be done", tracker.isDone());
+    }
+
+    @Test
+    public void doneWhenThresholdReached() {
+        // GIVEN
+        BestAssemblyTracker tracker = new BestAssemblyTracker(FAR_FUTURE, 16., a -> {
+        });
+
+        // WHEN
+        tracker.solutionFound(verticalLines(1, 2));
+        boolean doneAfterFirst = tracker.isDone();
+        tracker.solutionFound(verticalLines(1));
+
+        // THEN
+        Assert.assertFalse("Expected tracker to not be done after worse assembly", doneAfterFirst);
+        Assert.assertTrue("Expected tracker to be done", tracker.isDone());
+    }
+
+    @Test
+    public void doneWhenDeadlinePassed() {
+        // WHEN
+        BestAssemblyTracker tracker = new BestAssemblyTracker(System.nanoTime() - 1, Double.POSITIVE_INFINITY,
+                        a -> {
+                        });
+
+        // THEN
+        Assert.assertTrue("Expected tracker to be done", tracker.isDone());
+        Assert.assertNull("Expected no best assembly", tracker.getBest());
+    }
+
+    @Test
+    public void withoutDeadlineOnlyThreshold() {
+        // GIVEN
+        BestAssemblyTracker tracker = new BestAssemblyTracker(16., a -> {
+        });
+
+        // WHEN
+        boolean doneInitially = tracker.isDone();
+        tracker.solutionFound(verticalLines(1));
+
+        // THEN
+        Assert.assertFalse("Expected tracker to not be done initially", doneInitially);
+        Assert.assertTrue("Expected tracker to be done", tracker.isDone());
+    }
+
+    @Test(timeout = 10_000L)
+    public void consumerDoesNotBlockTrackerAndSkipsSuperseded() throws InterruptedException {
+        // GIVEN
+        Assembly threeLines = verticalLines(0, 1, 2);
+        Assembly twoLines = verticalLines(1, 2);
+        Assembly oneLine = verticalLines(1);
+        CountDownLatch consumerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseConsumer = new CountDownLatch(1);
+        List<Assembly> improvements = Collections.synchronizedList(new ArrayList<>());
+        BestAssemblyTracker tracker = new BestAssemblyTracker(FAR_FUTURE, Double.POSITIVE_INFINITY, a -> {
+            improvements.add(a);
+            consumerBlocked.countDown();
+            try {
+                releaseConsumer.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread first = startThread(() -> tracker.solutionFound(threeLines));
+        consumerBlocked.await();
+
+        // WHEN
+        Thread second = startThread(() -> tracker.solutionFound(twoLines));
+        while (tracker.getBestJudgement() < 16. / 2.) {
+            Thread.sleep(1);
+        }
+        Thread third = startThread(() -> tracker.solutionFound(oneLine));
+        while (tracker.getBestJudgement() < 16.) {
+            Thread.sleep(1);
+        }
+        releaseConsumer.countDown();
+        first.join();
+        second.join();
+        third.join();
+
+        // THEN
+        Assert.assertSame("Expected correct best", oneLine, tracker.getBest());
+        Assert.assertEquals("Expected superseded improvement to be skipped", Arrays.asList(threeLines, oneLine),
+                        improvements);
+    }
+
+    private Thread startThread(Runnable runnable) {
+        Thread res = new Thread(runnable, "test-solver");
+        res.setDaemon(true);
+        res.start();
+        return res;
+    }
+
+    /**
+     * @return Assembly of a single 4x4 tile containing vertical edges at the given x coordinates.
+     */
+    private Assembly verticalLines(int... xs) {
+        int[][] color = new int[4][4];
+        double[][] direction = new double[4][4];
+        for (int y = 0; y < 4; y++) {
+            Arrays.fill(direction[y], UNDEF);
+            for (int x : xs) {
+                color[y][x] = 1;
+                direction[y][x] = SOUTH;
+            }
+        }
+        ArrayBasedImage img = new ArrayBasedImage(ArrayUtil.transpose(color), ArrayUtil.transpose(direction));
+        NavigableMap<Integer, NavigableMap<Integer, Tile>> tiles = new TreeMap<>();
+        tiles.put(0, new TreeMap<>());
+        tiles.get(0).put(0, new Tile(img, 0, 0, 4, 4));
+        return new Assembly(img, tiles);
+    }
+}
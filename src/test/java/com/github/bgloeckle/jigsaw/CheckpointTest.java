@@ -0,0 +1,132 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+
+public class CheckpointTest {
+    private static final byte[] FINGERPRINT = new byte[] { 1, 2, 3 };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void writeRead() throws IOException {
+        // GIVEN
+        int[][] color = new int[4][4];
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                color[x][y] = x * 4 + y;
+            }
+        }
+        ArrayBasedImage img = new ArrayBasedImage(color);
+        NavigableMap<Integer, NavigableMap<Integer, Tile>> tiles = new TreeMap<>();
+        tiles.put(0, new TreeMap<>());
+        tiles.get(0).put(0, new Tile(img, 2, 0, 2, 2, 1));
+        tiles.get(0).put(2, new Tile(img, 0, 2, 2, 2));
+        tiles.put(2, new TreeMap<>());
+        tiles.get(2).put(0, new Tile(img, 0, 0, 2, 2, 3));
+        tiles.get(2).put(2, new Tile(img, 2, 2, 2, 2, 2));
+        Assembly best = new Assembly(img, tiles);
+        Checkpoint checkpoint = new Checkpoint(FINGERPRINT);
+        checkpoint.markDone("a");
+        checkpoint.setBest(best);
+        File file = new File(tmp.getRoot(), "checkpoint");
+
+        // WHEN
+        checkpoint.write(file, 0L);
+        Checkpoint res = Checkpoint.read(file, FINGERPRINT);
+
+        // THEN
+        Assert.assertNotNull("Expected checkpoint to be read", res);
+        Assert.assertTrue("Expected step to be done", res.isDone("a"));
+        Assert.assertFalse("Expected other step to not be done", res.isDone("b"));
+        Assembly resBest = res.getBest(img);
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                Assert.assertEquals("Expected same color at " + x + "/" + y, best.getColor(x, y),
+                                resBest.getColor(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void otherFingerprintIgnored() throws IOException {
+        // GIVEN
+        File file = new File(tmp.getRoot(), "checkpoint");
+        new Checkpoint(FINGERPRINT).write(file, 0L);
+
+        // WHEN
+        Checkpoint res = Checkpoint.read(file, new byte[] { 1, 2, 4 });
+
+        // THEN
+        Assert.assertNull("Expected checkpoint to be ignored", res);
+    }
+
+    @Test
+    public void fingerprintCoversSeed() throws IOException {
+        // GIVEN
+        File input = new File(tmp.getRoot(), "input.png");
+        Files.write(input.toPath(), new byte[] { 1, 2, 3, 4 });
+        JigsawSolver unseeded = new JigsawSolver(input, null);
+        JigsawSolver seeded = new JigsawSolver(input, null);
+        seeded.setSeed(42);
+        JigsawSolver otherSeed = new JigsawSolver(input, null);
+        otherSeed.setSeed(43);
+
+        // WHEN
+        byte[] unseededFingerprint = Checkpoint.fingerprint(input, unseeded.describeOptions());
+        byte[] seededFingerprint = Checkpoint.fingerprint(input, seeded.describeOptions());
+        byte[] otherSeedFingerprint = Checkpoint.fingerprint(input, otherSeed.describeOptions());
+
+        // THEN
+        Assert.assertFalse("Expected seed to change fingerprint",
+                        Arrays.equals(unseededFingerprint, seededFingerprint));
+        Assert.assertFalse("Expected other seed to change fingerprint",
+                        Arrays.equals(seededFingerprint, otherSeedFingerprint));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidFile() throws IOException {
+        // GIVEN
+        File file = new File(tmp.getRoot(), "checkpoint");
+        Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+        // WHEN
+        Checkpoint.read(file, FINGERPRINT);
+
+        // THEN: exception
+    }
+}
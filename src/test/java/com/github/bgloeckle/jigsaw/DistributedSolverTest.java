@@ -0,0 +1,242 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+public class DistributedSolverTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Image edgeImage;
+    private Set<List<Integer>> variants;
+    private JigsawSolver solver;
+
+    @Before
+    public void before() {
+        Random random = new Random(0);
+        int[][] color = new int[60][60];
+        double[][] direction = new double[60][60];
+        EdgeDirection[] directions = EdgeDirection.values();
+        for (int x = 0; x < 60; x++) {
+            for (int y = 0; y < 60; y++) {
+                // lines that cross the borders of the tiles, so neighbours can be found.
+                color[x][y] = ((x + 2 * y) % 7 == 0 || (3 * x + y) % 11 == 0) ? 0xFFFFFF : 0;
+                direction[x][y] = directions[random.nextInt(directions.length)].getGradientRadian();
+            }
+        }
+        edgeImage = new ArrayBasedImage(color, direction);
+        variants = new LinkedHashSet<>(Arrays.asList(Arrays.asList(20, 20), Arrays.asList(21, 20),
+                        Arrays.asList(20, 21)));
+        solver = new JigsawSolver(new File(tmp.getRoot(), "in.png"), new File(tmp.getRoot(), "out"));
+    }
+
+    @Test
+    public void workersSolveLikeLocalSolver() {
+        // GIVEN
+        DistributedSolver distributedSolver = new DistributedSolver(solver, 2, 0) {
+            @Override
+            List<Process> startWorkers(int coordinatorPort) {
+                for (int i = 0; i < 2; i++) {
+                    startThread(() -> {
+                        try {
+                            new DistributedWorker("localhost", coordinatorPort).run();
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                }
+                return Collections.emptyList();
+            }
+        };
+
+        // WHEN
+        Set<Assembly> res = distributedSolver.solveCutVariants(edgeImage, variants);
+
+        // THEN
+        Assert.assertFalse("Expected assemblies", res.isEmpty());
+        Assert.assertEquals("Expected same assemblies as local solver",
+                        colorsOf(solver.solveCutVariants(edgeImage, variants)), colorsOf(res));
+        Assert.assertFalse("Expected edge image file to be removed",
+                        new File(tmp.getRoot(), "out-edges.bin").exists());
+    }
+
+    @Test
+    public void failedWorkerFallsBackToLocal() {
+        // GIVEN
+        DistributedSolver distributedSolver = new DistributedSolver(solver, 1, 0) {
+            @Override
+            List<Process> startWorkers(int coordinatorPort) {
+                // worker that dies as soon as it received its first variant.
+                startThread(() -> {
+                    try (Socket socket = new Socket("localhost", coordinatorPort);
+                                    DataInputStream in = new DataInputStream(socket.getInputStream())) {
+                        in.readUTF();
+                        in.readUTF();
+                        in.readBoolean();
+                        in.readByte();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                return Collections.emptyList();
+            }
+        };
+
+        // WHEN
+        Set<Assembly> res = distributedSolver.solveCutVariants(edgeImage, variants);
+
+        // THEN
+        Assert.assertFalse("Expected assemblies", res.isEmpty());
+        Assert.assertEquals("Expected same assemblies as local solver",
+                        colorsOf(solver.solveCutVariants(edgeImage, variants)), colorsOf(res));
+    }
+
+    @Test
+    public void hungWorkerFallsBackToLocal() {
+        // GIVEN
+        DistributedSolver distributedSolver = new DistributedSolver(solver, 1, 0) {
+            @Override
+            List<Process> startWorkers(int coordinatorPort) {
+                // worker that never answers to its first variant, until the coordinator closes the connection.
+                startThread(() -> {
+                    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinatorPort);
+                                    DataInputStream in = new DataInputStream(socket.getInputStream())) {
+                        while (in.read() != -1) {
+                            // consume everything the coordinator sends.
+                        }
+                    } catch (IOException e) {
+                        // connection closed by coordinator.
+                    }
+                });
+                return Collections.emptyList();
+            }
+        };
+        distributedSolver.setVariantTimeoutMillis(500L);
+
+        // WHEN
+        Set<Assembly> res = distributedSolver.solveCutVariants(edgeImage, variants);
+
+        // THEN
+        Assert.assertFalse("Expected assemblies", res.isEmpty());
+        Assert.assertEquals("Expected same assemblies as local solver",
+                        colorsOf(solver.solveCutVariants(edgeImage, variants)), colorsOf(res));
+    }
+
+    @Test(timeout = 60_000L)
+    public void errorWhileCollectingReturnsVariant() {
+        // GIVEN
+        AtomicBoolean errorThrown = new AtomicBoolean(false);
+        JigsawSolver failingSolver = new JigsawSolver(new File(tmp.getRoot(), "in.png"),
+                        new File(tmp.getRoot(), "out")) {
+            @Override
+            BestAssemblyTracker createConfidenceTracker(Image inputEdgeImage) {
+                return new BestAssemblyTracker(Double.POSITIVE_INFINITY, a -> {
+                    if (!errorThrown.getAndSet(true)) {
+                        throw new StackOverflowError("test");
+                    }
+                });
+            }
+        };
+        DistributedSolver distributedSolver = new DistributedSolver(failingSolver, 1, 0) {
+            @Override
+            List<Process> startWorkers(int coordinatorPort) {
+                startThread(() -> {
+                    try {
+                        new DistributedWorker(InetAddress.getLoopbackAddress().getHostAddress(), coordinatorPort)
+                                        .run();
+                    } catch (IOException e) {
+                        // connection closed by coordinator.
+                    }
+                });
+                return Collections.emptyList();
+            }
+        };
+
+        // WHEN
+        Set<Assembly> res = distributedSolver.solveCutVariants(edgeImage, variants);
+
+        // THEN
+        Assert.assertTrue("Expected error to be thrown", errorThrown.get());
+        Assert.assertEquals("Expected same assemblies as local solver",
+                        colorsOf(solver.solveCutVariants(edgeImage, variants)), colorsOf(res));
+    }
+
+    @Test
+    public void workersGetOnlyHeapAndModuleOptions() {
+        // GIVEN
+        List<String> coordinatorArguments = Arrays.asList("-Xmx4g",
+                        "-agentlib:jdwp=transport=dt_socket,server=y,address=5005", "-Xlog:gc:file=gc.log",
+                        "-Dcom.sun.management.jmxremote.port=9010", "--add-opens", "java.base/java.lang=ALL-UNNAMED",
+                        "--enable-preview", "-Xss2m");
+
+        // WHEN
+        List<String> res = DistributedSolver.workerJvmArguments(coordinatorArguments);
+
+        // THEN
+        Assert.assertEquals("Expected only heap, stack and module options", Arrays.asList("-Xmx4g", "--add-opens",
+                        "java.base/java.lang=ALL-UNNAMED", "--enable-preview", "-Xss2m"), res);
+    }
+
+    private void startThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "test-worker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Set<List<Integer>> colorsOf(Set<Assembly> assemblies) {
+        Set<List<Integer>> res = new HashSet<>();
+        for (Assembly assembly : assemblies) {
+            List<Integer> colors = new ArrayList<>();
+            for (int x = 0; x < assembly.getWidth(); x++) {
+                for (int y = 0; y < assembly.getHeight(); y++) {
+                    colors.add(assembly.getColor(x, y));
+                }
+            }
+            res.add(colors);
+        }
+        return res;
+    }
+}
@@ -20,9 +20,14 @@
  */
 package com.github.bgloeckle.jigsaw;
 
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.function.Supplier;
 
+import javax.imageio.ImageIO;
+
 public class TestResources {
     public static final Supplier<InputStream> FOREST_ROAD = () -> TestResources.class
                     .getResourceAsStream("/road-in-autumn-forest-1318271179yAn.png");
@@ -35,4 +40,23 @@ public class TestResources {
                     .getResourceAsStream("/7952556075c7a428c286b1d3025ab5762e70088c.png");
     public static final Supplier<InputStream> PROPRIETARY_4 = () -> TestResources.class
                     .getResourceAsStream("/e30538c5d41121b68f20e7e245590a0114682d1e.png");
+
+    /**
+     * Write a small jigsaw of 3x3 tiles with differently colored backgrounds and stripes running over the tile borders,
+     * which is solved quickly.
+     *
+     * @param stripeOffset
+     *            Shifts the stripes, so different offsets create different jigsaws.
+     */
+    public static void writeSmallJigsaw(File target, int stripeOffset) throws IOException {
+        BufferedImage img = new BufferedImage(36, 36, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 36; x++) {
+            for (int y = 0; y < 36; y++) {
+                int background = ((x / 12) * 7 + (y / 12) * 13) % 5 * 50;
+                boolean stripe = ((x + y + stripeOffset) / 4) % 2 == 0;
+                img.setRGB(x, y, stripe ? 0xffffff : (background << 16 | (255 - background) << 8 | 40));
+            }
+        }
+        ImageIO.write(img, "png", target);
+    }
 }
@@ -0,0 +1,100 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+public class AssemblyTest {
+    @Test
+    public void tilesOfDifferentSizes() {
+        // GIVEN
+        int[][] color = new int[4][4];
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                color[x][y] = 1 + x * 4 + y;
+            }
+        }
+        ArrayBasedImage img = new ArrayBasedImage(color);
+        // column 0: a 3x2 tile above a 2x2 tile, column 1: a 1x4 tile.
+        NavigableMap<Integer, NavigableMap<Integer, Tile>> tiles = new TreeMap<>();
+        tiles.put(0, new TreeMap<>());
+        tiles.get(0).put(0, new Tile(img, 0, 0, 3, 2));
+        tiles.get(0).put(2, new Tile(img, 0, 2, 2, 2));
+        tiles.put(3, new TreeMap<>());
+        tiles.get(3).put(0, new Tile(img, 3, 0, 1, 4));
+
+        // WHEN
+        Assembly assembly = new Assembly(img, tiles);
+
+        // THEN
+        Assert.assertEquals("Expected pixel of first tile", color[2][1], assembly.getColor(2, 1));
+        Assert.assertEquals("Expected pixel of second tile", color[1][3], assembly.getColor(1, 3));
+        Assert.assertEquals("Expected gap next to smaller tile", 0, assembly.getColor(2, 3));
+        Assert.assertEquals("Expected gap next to smaller tile", Image.DIRECTION_UNDEFINED,
+                        assembly.getDirection(2, 2), 1e-10);
+        Assert.assertEquals("Expected pixel of third tile", color[3][3], assembly.getColor(3, 3));
+    }
+
+    @Test
+    public void edgeCodesMatchPixels() {
+        // GIVEN
+        int[][] color = new int[4][4];
+        double[][] direction = new double[4][4];
+        EdgeDirection[] directions = EdgeDirection.values();
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                color[x][y] = (x + y) % 3;
+                direction[x][y] = directions[(x * 4 + y) % directions.length].getGradientRadian();
+            }
+        }
+        ArrayBasedImage img = new ArrayBasedImage(color, direction);
+        // column 0: a rotated 2x2 tile above a 3x2 tile, which reaches into column 2 and leaves a gap in it. Column 2: A
+        // rotated 2x2 tile that reaches into column 3. Column 3: A 2x3 tile that reaches out of the image.
+        NavigableMap<Integer, NavigableMap<Integer, Tile>> tiles = new TreeMap<>();
+        tiles.put(0, new TreeMap<>());
+        tiles.get(0).put(0, new Tile(img, 2, 2, 2, 2, 1));
+        tiles.get(0).put(2, new Tile(img, 0, 0, 3, 2));
+        tiles.put(2, new TreeMap<>());
+        tiles.get(2).put(0, new Tile(img, 0, 2, 2, 2, 3));
+        tiles.put(3, new TreeMap<>());
+        tiles.get(3).put(2, new Tile(img, 1, 1, 2, 3));
+        Assembly assembly = new Assembly(img, tiles);
+
+        // WHEN
+        byte[] res = TileRaster.codes(assembly);
+
+        // THEN
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                Assert.assertEquals("Expected correct code at " + x + "/" + y, TileRaster.code(assembly, x, y),
+                                res[x * 4 + y]);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.image.AwtImageAdapter;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+public class TileTest {
+    @Test
+    public void rotation() {
+        // GIVEN
+        int[][] color = new int[4][4];
+        double[][] direction = new double[4][4];
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                color[x][y] = 1 + x * 4 + y;
+                direction[x][y] = EdgeDirection.NORTH_SOUTH.getGradientRadian();
+            }
+        }
+        direction[1][1] = EdgeDirection.SOUTHEAST_NORTHWEST.getGradientRadian();
+        ArrayBasedImage img = new ArrayBasedImage(color, direction);
+
+        // WHEN
+        // 3x2 area at (1, 1)
+        Tile unrotated = new Tile(img, 1, 1, 3, 2, 0);
+        Tile quarter = new Tile(img, 1, 1, 3, 2, 1);
+        Tile half = new Tile(img, 1, 1, 3, 2, 2);
+        Tile threeQuarters = new Tile(img, 1, 1, 3, 2, 3);
+
+        // THEN
+        Assert.assertEquals("Expected swapped width", 2, quarter.getWidth());
+        Assert.assertEquals("Expected swapped height", 3, quarter.getHeight());
+        Assert.assertEquals("Expected same width", 3, half.getWidth());
+        // the top left pixel of the area is at the top right after a clockwise quarter turn.
+        Assert.assertEquals("Expected correct pixel", color[1][1], unrotated.getColor(0, 0));
+        Assert.assertEquals("Expected correct pixel", color[1][1], quarter.getColor(1, 0));
+        Assert.assertEquals("Expected correct pixel", color[1][1], half.getColor(2, 1));
+        Assert.assertEquals("Expected correct pixel", color[1][1], threeQuarters.getColor(0, 2));
+        Assert.assertEquals("Expected correct pixel", color[3][2], quarter.getColor(0, 2));
+        Assert.assertEquals("Expected rotated direction", EdgeDirection.EAST_WEST,
+                        EdgeDirection.fromGradientRadian(quarter.getDirection(0, 2)));
+        Assert.assertEquals("Expected rotated direction", EdgeDirection.NORTHEAST_SOUTHWEST,
+                        EdgeDirection.fromGradientRadian(quarter.getDirection(1, 0)));
+        Assert.assertEquals("Expected unchanged direction", EdgeDirection.SOUTHEAST_NORTHWEST,
+                        EdgeDirection.fromGradientRadian(half.getDirection(2, 1)));
+    }
+
+    @Test
+    public void edgeCodesMatchPixels() {
+        // GIVEN
+        ArrayBasedImage img = createEdgeImage(6, 5);
+
+        for (int rotation = 0; rotation < 4; rotation++) {
+            // WHEN
+            Tile tile = new Tile(img, 1, 1, 4, 3, rotation);
+            byte[] copied = new byte[7 * 8];
+            tile.copyEdgeCodes(copied, 8, 2, 1, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+            // THEN
+            for (int x = 0; x < tile.getWidth(); x++) {
+                for (int y = 0; y < tile.getHeight(); y++) {
+                    byte expected = TileRaster.code(tile, x, y);
+                    Assert.assertEquals("Expected correct code at " + x + "/" + y + " in rotation " + rotation,
+                                    expected, tile.getEdgeCode(x, y));
+                    Assert.assertEquals("Expected correct copied code at " + x + "/" + y + " in rotation " + rotation,
+                                    expected, copied[(2 + x) * 8 + 1 + y]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void changedPixelVisibleInSharedRaster() {
+        // GIVEN
+        ArrayBasedImage img = createEdgeImage(4, 4);
+        Tile tile = new Tile(img, 0, 0, 3, 3);
+        Tile overlapping = new Tile(img, 1, 1, 3, 3, 2);
+        tile.getEdgeCode(0, 0);
+        overlapping.getEdgeCode(0, 0);
+
+        // WHEN
+        tile.setColor(2, 2, 1);
+        tile.setDirection(2, 2, EdgeDirection.EAST_WEST.getGradientRadian());
+
+        // THEN
+        Assert.assertEquals("Expected changed code", EdgeDirection.EAST_WEST,
+                        TileRaster.direction(tile.getEdgeCode(2, 2)));
+        // (2, 2) of the source image is at (1, 1) of the overlapping tile, which is turned by 180°.
+        Assert.assertEquals("Expected changed code in overlapping tile", EdgeDirection.EAST_WEST,
+                        TileRaster.direction(overlapping.getEdgeCode(1, 1)));
+    }
+
+    @Test
+    public void changedPixelVisibleInRasterOfImageWithContentEquality() {
+        // GIVEN
+        // AwtImageAdapter implements equals/hashCode on its pixels, so changing a pixel changes its hash code.
+        AwtImageAdapter img = new AwtImageAdapter(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB));
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                img.setColor(x, y, 0);
+            }
+        }
+        img.setColor(1, 1, 1);
+        img.setDirection(1, 1, EdgeDirection.NORTH_SOUTH.getGradientRadian());
+        AwtImageAdapter equalImg = (AwtImageAdapter) img.copy();
+        Tile tile = new Tile(img, 0, 0, 3, 3);
+        Tile equalImgTile = new Tile(equalImg, 0, 0, 3, 3);
+        tile.getEdgeCode(0, 0);
+        equalImgTile.getEdgeCode(0, 0);
+
+        // WHEN
+        tile.setColor(1, 1, 0);
+        tile.setColor(2, 2, 1);
+        tile.setDirection(2, 2, EdgeDirection.EAST_WEST.getGradientRadian());
+
+        // THEN
+        Assert.assertEquals("Expected changed code", TileRaster.NO_EDGE, tile.getEdgeCode(1, 1));
+        Assert.assertEquals("Expected changed code", EdgeDirection.EAST_WEST,
+                        TileRaster.direction(tile.getEdgeCode(2, 2)));
+        Assert.assertEquals("Expected raster of equal image to be unchanged", EdgeDirection.NORTH_SOUTH,
+                        TileRaster.direction(equalImgTile.getEdgeCode(1, 1)));
+        Assert.assertEquals("Expected raster of equal image to be unchanged", TileRaster.NO_EDGE,
+                        equalImgTile.getEdgeCode(2, 2));
+    }
+
+    private ArrayBasedImage createEdgeImage(int width, int height) {
+        Random random = new Random(42);
+        EdgeDirection[] directions = EdgeDirection.values();
+        int[][] color = new int[width][height];
+        double[][] direction = new double[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                color[x][y] = random.nextInt(3) == 0 ? 0 : 1;
+                direction[x][y] = random.nextInt(5) == 0 ? Image.DIRECTION_UNDEFINED
+                                : directions[random.nextInt(directions.length)].getGradientRadian();
+            }
+        }
+        return new ArrayBasedImage(color, direction);
+    }
+}
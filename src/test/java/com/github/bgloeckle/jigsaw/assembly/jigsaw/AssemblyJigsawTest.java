@@ -0,0 +1,195 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+import com.github.bgloeckle.jigsaw.util.SolveCancelledException;
+import com.github.bgloeckle.jigsaw.util.SolveContext;
+
+public class AssemblyJigsawTest {
+    @Test
+    public void uniformCuts() {
+        // WHEN
+        int[] exact = AssemblyJigsaw.uniformCuts(10, 30);
+        int[] remainder = AssemblyJigsaw.uniformCuts(10, 31);
+
+        // THEN
+        Assert.assertArrayEquals("Expected correct cuts", new int[] { 10, 20 }, exact);
+        Assert.assertArrayEquals("Expected correct cuts", new int[] { 10, 20, 30 }, remainder);
+    }
+
+    @Test
+    public void nonUniformCuts() {
+        // GIVEN
+        ArrayBasedImage img = new ArrayBasedImage(new int[20][20]);
+
+        // WHEN
+        AssemblyJigsaw jigsaw = new AssemblyJigsaw(img, new int[] { 9, 15 }, new int[] { 11 },
+                        new GreedyJigsawSolverStrategy());
+        List<TileInfo> graph = jigsaw.buildGraph();
+
+        // THEN
+        Assert.assertEquals("Expected correct tile count width", 3, jigsaw.getTileCountWidth());
+        Assert.assertEquals("Expected correct tile count height", 2, jigsaw.getTileCountHeight());
+        Assert.assertEquals("Expected correct tile widths", "9,9,6,6,5,5",
+                        graph.stream().map(t -> "" + t.getTile().getWidth()).collect(Collectors.joining(",")));
+        Assert.assertEquals("Expected correct tile heights", "11,9,11,9,11,9",
+                        graph.stream().map(t -> "" + t.getTile().getHeight()).collect(Collectors.joining(",")));
+    }
+
+    @Test
+    public void graphSymmetricAndDeterministic() {
+        // GIVEN
+        Random random = new Random(3);
+        int[][] color = new int[40][40];
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                color[x][y] = random.nextInt(4) == 0 ? 0xFFFFFF : 0;
+            }
+        }
+        AssemblyJigsaw jigsaw = new AssemblyJigsaw(new ArrayBasedImage(color), 10, 10,
+                        new GreedyJigsawSolverStrategy());
+
+        // WHEN
+        List<TileInfo> graph = jigsaw.buildGraph();
+        List<TileInfo> secondGraph = jigsaw.buildGraph();
+
+        // THEN
+        for (TileInfo t : graph) {
+            for (int i = 0; i < t.getNextTop().size(); i++) {
+                Assert.assertTrue("Expected " + t + " to be below its top neighbour",
+                                t.getNextTop().getTile(i).getNextBottom().indexOf(t.getId()) != -1);
+            }
+            for (int i = 0; i < t.getNextLeft().size(); i++) {
+                Assert.assertTrue("Expected " + t + " to be right of its left neighbour",
+                                t.getNextLeft().getTile(i).getNextRight().indexOf(t.getId()) != -1);
+            }
+            TileInfo second = secondGraph.get(t.getId());
+            Assert.assertArrayEquals("Expected same right neighbours", t.getNextRight().getIds(),
+                            second.getNextRight().getIds());
+            Assert.assertArrayEquals("Expected same bottom neighbours", t.getNextBottom().getIds(),
+                            second.getNextBottom().getIds());
+        }
+    }
+
+    @Test
+    public void rotationAwareGraph() {
+        // GIVEN
+        Random random = new Random(5);
+        int[][] color = new int[20][20];
+        for (int x = 0; x < 20; x++) {
+            for (int y = 0; y < 20; y++) {
+                color[x][y] = random.nextInt(4) == 0 ? 0xFFFFFF : 0;
+            }
+        }
+        AssemblyJigsaw jigsaw = new AssemblyJigsaw(new ArrayBasedImage(color), 10, 10,
+                        new GreedyJigsawSolverStrategy());
+        jigsaw.setRotationAware(true);
+
+        // WHEN
+        List<TileInfo> graph = jigsaw.buildGraph();
+
+        // THEN
+        Assert.assertEquals("Expected each tile in four rotations", 16, graph.size());
+        for (TileInfo t : graph) {
+            Assert.assertEquals("Expected correct tile index", t.getId() % 4, t.getTileIndex());
+            Assert.assertEquals("Expected correct rotation", t.getId() / 4, t.getTile().getRotation());
+            for (int i = 0; i < t.getNextRight().size(); i++) {
+                Assert.assertNotEquals("Expected tile not to be its own neighbour", t.getTileIndex(),
+                                t.getNextRight().getTile(i).getTileIndex());
+            }
+        }
+    }
+
+    @Test
+    public void plausibilityMatchesGraph() {
+        // GIVEN
+        Random random = new Random(7);
+        int[][] color = new int[40][40];
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                color[x][y] = random.nextInt(6) == 0 ? 0xFFFFFF : 0;
+            }
+        }
+        // repeat the pattern, so that some borders match.
+        for (int x = 0; x < 40; x++) {
+            for (int y = 20; y < 40; y++) {
+                color[x][y] = color[(x + 10) % 40][y - 20];
+            }
+        }
+
+        for (boolean rotationAware : new boolean[] { false, true }) {
+            AssemblyJigsaw jigsaw = new AssemblyJigsaw(new ArrayBasedImage(color), 10, 10,
+                            new GreedyJigsawSolverStrategy());
+            jigsaw.setRotationAware(rotationAware);
+
+            // WHEN
+            double plausibility = jigsaw.judgeGraphPlausibility();
+
+            // THEN
+            // all 16 tiles are sampled, so the result is the same as when counting the neighbours in the graph.
+            List<TileInfo> graph = jigsaw.buildGraph();
+            long neighbourCount = 0;
+            for (TileInfo t : graph) {
+                neighbourCount += t.getNextRight().size() + t.getNextBottom().size();
+            }
+            double neighboursPerBorder = neighbourCount / (graph.size() / 16.) / (2 * 4 * 3);
+            Assert.assertTrue("Expected some borders to match", neighbourCount > 0);
+            Assert.assertEquals("Expected same plausibility as graph (rotationAware=" + rotationAware + ")",
+                            1. / (1. + Math.abs(neighboursPerBorder - 1.)), plausibility, 1e-9);
+        }
+    }
+
+    @Test(expected = SolveCancelledException.class)
+    public void cancelledPlausibility() {
+        // GIVEN
+        AssemblyJigsaw jigsaw = new AssemblyJigsaw(new ArrayBasedImage(new int[40][40]), 10, 10,
+                        new GreedyJigsawSolverStrategy());
+        SolveContext context = new SolveContext();
+        context.cancel();
+
+        // WHEN
+        jigsaw.judgeGraphPlausibility(context);
+
+        // THEN: exception
+    }
+
+    @Test(expected = SolveCancelledException.class)
+    public void cancelledContextStopsGraph() {
+        // GIVEN
+        AssemblyJigsaw jigsaw = new AssemblyJigsaw(new ArrayBasedImage(new int[40][40]), 10, 10,
+                        new GreedyJigsawSolverStrategy());
+        SolveContext context = new SolveContext();
+        context.cancel();
+
+        // WHEN
+        jigsaw.buildGraph(context);
+
+        // THEN: exception
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+
+public class BorderLshIndexTest {
+    private static final int BORDER_LENGTH = 64;
+    private static final int MAX_EDGE_COUNT_DIFF = (int) Math.round(BORDER_LENGTH * .2);
+
+    @Test
+    public void closeBordersFoundDistantNot() {
+        // GIVEN
+        Random random = new Random(1);
+        ArrayBasedImage img = new ArrayBasedImage(new int[1][1]);
+        List<TileInfo> tiles = new ArrayList<>();
+        Map<TileInfo, BitSet> borders = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            TileInfo t = new TileInfo(i, new Tile(img, 0, 0, 1, 1));
+            BitSet border = new BitSet();
+            for (int bit = 0; bit < BORDER_LENGTH; bit++) {
+                if (random.nextBoolean()) {
+                    border.set(bit);
+                }
+            }
+            tiles.add(t);
+            borders.put(t, border);
+        }
+        BitSet query = (BitSet) borders.get(tiles.get(0)).clone();
+        // tile 1: two bits away from the query, tile 2: all bits differ.
+        BitSet close = (BitSet) query.clone();
+        close.flip(3);
+        close.flip(40);
+        borders.put(tiles.get(1), close);
+        BitSet distant = (BitSet) query.clone();
+        distant.flip(0, BORDER_LENGTH);
+        borders.put(tiles.get(2), distant);
+
+        // WHEN
+        List<TileInfo> candidates = new BorderLshIndex(tiles, borders::get, MAX_EDGE_COUNT_DIFF, 0L)
+                        .findCandidates(query);
+
+        // THEN
+        Assert.assertTrue("Expected equal border to be found", candidates.contains(tiles.get(0)));
+        Assert.assertTrue("Expected close border to be found", candidates.contains(tiles.get(1)));
+        Assert.assertFalse("Expected distant border not to be found", candidates.contains(tiles.get(2)));
+        Assert.assertTrue("Expected only a fraction of the tiles to be candidates, but were " + candidates.size(),
+                        candidates.size() < tiles.size() / 2);
+    }
+
+    @Test
+    public void sparseBordersFewCandidates() {
+        // GIVEN
+        Random random = new Random(2);
+        ArrayBasedImage img = new ArrayBasedImage(new int[1][1]);
+        List<TileInfo> tiles = new ArrayList<>();
+        Map<TileInfo, BitSet> borders = new HashMap<>();
+        for (int i = 0; i < 4096; i++) {
+            TileInfo t = new TileInfo(i, new Tile(img, 0, 0, 1, 1));
+            // like in an edge image, a border is crossed by a few edges only and a quarter has no edge at all.
+            BitSet border = new BitSet();
+            int edgeCount = random.nextInt(8) - 2;
+            for (int e = 0; e < edgeCount; e++) {
+                border.set(random.nextInt(BORDER_LENGTH));
+            }
+            tiles.add(t);
+            borders.put(t, border);
+        }
+        BorderLshIndex index = new BorderLshIndex(tiles, borders::get, MAX_EDGE_COUNT_DIFF, 0L);
+
+        // WHEN
+        long candidateCount = 0;
+        boolean emptyBorderFound = false;
+        boolean equalBorderMissed = false;
+        for (TileInfo t : tiles) {
+            List<TileInfo> candidates = index.findCandidates(borders.get(t));
+            candidateCount += candidates.size();
+            emptyBorderFound |= candidates.stream().anyMatch(c -> borders.get(c).isEmpty());
+            equalBorderMissed |= !borders.get(t).isEmpty() && !candidates.contains(t);
+        }
+
+        // THEN
+        double candidatesPerQuery = candidateCount / (double) tiles.size();
+        Assert.assertTrue("Expected few candidates per query, but were " + candidatesPerQuery,
+                        candidatesPerQuery < tiles.size() / 32.);
+        Assert.assertFalse("Expected borders without edges never to be candidates", emptyBorderFound);
+        Assert.assertFalse("Expected equal borders to be found", equalBorderMissed);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+
+public class ColorCodingJigsawSolverStrategyTest {
+    @Test
+    public void deadEndsSkippedSolutionFound() {
+        // GIVEN
+        int[][] color = createColors();
+        ArrayBasedImage img = new ArrayBasedImage(color);
+        TileInfo[] tiles = createGraph(img);
+
+        // WHEN
+        Set<Assembly> res = new ColorCodingJigsawSolverStrategy().solve(img, Arrays.asList(tiles), 3, 3);
+
+        // THEN
+        // the connections back to the left column allow some further solutions.
+        Assert.assertFalse("Expected solutions", res.isEmpty());
+        Assert.assertTrue("Expected original image to be found", res.stream().anyMatch(assembly -> {
+            for (int x = 0; x < 3; x++) {
+                for (int y = 0; y < 3; y++) {
+                    if (color[x][y] != assembly.getColor(x, y)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }));
+    }
+
+    @Test
+    public void stopsAfterMaxSolutions() {
+        // GIVEN
+        ArrayBasedImage img = new ArrayBasedImage(createColors());
+        TileInfo[] tiles = createGraph(img);
+
+        // WHEN
+        Set<Assembly> res = new ColorCodingJigsawSolverStrategy(1).solve(img, Arrays.asList(tiles), 3, 3);
+
+        // THEN
+        Assert.assertEquals("Expected single solution", 1, res.size());
+    }
+
+    private int[][] createColors() {
+        // 3x3 image of 1x1 tiles, tile id = x * 3 + y.
+        int[][] res = new int[3][3];
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                res[x][y] = 1 + x * 3 + y;
+            }
+        }
+        return res;
+    }
+
+    private TileInfo[] createGraph(ArrayBasedImage img) {
+        TileInfo[] tiles = new TileInfo[9];
+        for (int i = 0; i < 9; i++) {
+            tiles[i] = new TileInfo(i, new Tile(img, i / 3, i % 3, 1, 1));
+        }
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                if (x < 2) {
+                    connectHorizontally(tiles[x * 3 + y], tiles[(x + 1) * 3 + y]);
+                }
+                if (y < 2) {
+                    connectVertically(tiles[x * 3 + y], tiles[x * 3 + y + 1]);
+                }
+            }
+        }
+        // color coding only selects left tiles from which paths to the right longer than the width start, so connect
+        // the right column back to the left one.
+        connectHorizontally(tiles[6], tiles[1]);
+        connectHorizontally(tiles[7], tiles[2]);
+        connectHorizontally(tiles[8], tiles[0]);
+        // distractors that lead into dead ends.
+        connectHorizontally(tiles[0], tiles[7]);
+        connectHorizontally(tiles[1], tiles[5]);
+        connectVertically(tiles[3], tiles[8]);
+        for (TileInfo t : tiles) {
+            t.freezeNeighbours(tiles);
+        }
+        return tiles;
+    }
+
+    private void connectHorizontally(TileInfo left, TileInfo right) {
+        left.getNextRight().add(right, 1.);
+        right.getNextLeft().add(left, 1.);
+    }
+
+    private void connectVertically(TileInfo top, TileInfo bottom) {
+        top.getNextBottom().add(bottom, 1.);
+        bottom.getNextTop().add(top, 1.);
+    }
+}
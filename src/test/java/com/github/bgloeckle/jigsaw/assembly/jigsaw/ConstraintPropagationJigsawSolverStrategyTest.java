@@ -0,0 +1,101 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.assembly.Assembly;
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+
+public class ConstraintPropagationJigsawSolverStrategyTest {
+    @Test
+    public void onlyConsistentSolutionFound() {
+        // GIVEN
+        // 2x2 image of 1x1 tiles, ids: 0 top left, 1 bottom left, 2 top right, 3 bottom right.
+        ArrayBasedImage img = new ArrayBasedImage(new int[][] { { 1, 2 }, { 3, 4 } });
+        TileInfo[] tiles = createTiles(img);
+        connectHorizontally(tiles[0], tiles[2]);
+        connectHorizontally(tiles[1], tiles[3]);
+        connectVertically(tiles[0], tiles[1]);
+        connectVertically(tiles[2], tiles[3]);
+        // tile 3 would fit right of tile 0, but then nothing fits below tile 3.
+        connectHorizontally(tiles[0], tiles[3]);
+        freeze(tiles);
+
+        // WHEN
+        Set<Assembly> res = new ConstraintPropagationJigsawSolverStrategy().solve(img, Arrays.asList(tiles), 2, 2);
+
+        // THEN
+        Assert.assertEquals("Expected one solution", 1, res.size());
+        Assembly assembly = res.iterator().next();
+        for (int x = 0; x < 2; x++) {
+            for (int y = 0; y < 2; y++) {
+                Assert.assertEquals("Expected correct pixel", img.getColor(x, y), assembly.getColor(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void noSolution() {
+        // GIVEN
+        ArrayBasedImage img = new ArrayBasedImage(new int[][] { { 1, 2 }, { 3, 4 } });
+        TileInfo[] tiles = createTiles(img);
+        connectHorizontally(tiles[0], tiles[2]);
+        connectVertically(tiles[0], tiles[1]);
+        connectVertically(tiles[2], tiles[3]);
+        freeze(tiles);
+
+        // WHEN
+        Set<Assembly> res = new ConstraintPropagationJigsawSolverStrategy().solve(img, Arrays.asList(tiles), 2, 2);
+
+        // THEN
+        Assert.assertTrue("Expected no solution", res.isEmpty());
+    }
+
+    private TileInfo[] createTiles(ArrayBasedImage img) {
+        TileInfo[] res = new TileInfo[4];
+        for (int i = 0; i < 4; i++) {
+            res[i] = new TileInfo(i, new Tile(img, i / 2, i % 2, 1, 1));
+        }
+        return res;
+    }
+
+    private void connectHorizontally(TileInfo left, TileInfo right) {
+        left.getNextRight().add(right, 1.);
+        right.getNextLeft().add(left, 1.);
+    }
+
+    private void connectVertically(TileInfo top, TileInfo bottom) {
+        top.getNextBottom().add(bottom, 1.);
+        bottom.getNextTop().add(top, 1.);
+    }
+
+    private void freeze(TileInfo[] tiles) {
+        for (TileInfo t : tiles) {
+            t.freezeNeighbours(tiles);
+        }
+    }
+}
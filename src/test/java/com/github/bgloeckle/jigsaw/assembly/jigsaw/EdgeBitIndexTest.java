@@ -0,0 +1,76 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+public class EdgeBitIndexTest {
+    private static final int SIZE = 150;
+
+    @Test
+    public void bordersMatchPixels() {
+        // GIVEN
+        Random random = new Random(42);
+        int[][] color = new int[SIZE][SIZE];
+        double[][] direction = new double[SIZE][SIZE];
+        EdgeDirection[] directions = EdgeDirection.values();
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                color[x][y] = random.nextInt(3) == 0 ? 0 : 0xFFFFFF;
+                direction[x][y] = directions[random.nextInt(directions.length)].getGradientRadian();
+            }
+        }
+        ArrayBasedImage img = new ArrayBasedImage(color, direction);
+
+        // WHEN
+        EdgeBitIndex index = new EdgeBitIndex(img);
+
+        // THEN
+        for (int[] range : new int[][] { { 0, 10 }, { 3, 64 }, { 60, 70 }, { 63, 65 }, { 1, 149 }, { 0, 150 } }) {
+            for (int line : new int[] { 0, 77, SIZE - 1 }) {
+                BitSet expectedHorizontal = new BitSet();
+                BitSet expectedVertical = new BitSet();
+                for (int i = 0; i < range[1]; i++) {
+                    int pos = range[0] + i;
+                    if (color[pos][line] != 0 && EdgeDirection
+                                    .fromGradientRadian(direction[pos][line]) != EdgeDirection.EAST_WEST) {
+                        expectedHorizontal.set(i);
+                    }
+                    if (color[line][pos] != 0 && EdgeDirection
+                                    .fromGradientRadian(direction[line][pos]) != EdgeDirection.NORTH_SOUTH) {
+                        expectedVertical.set(i);
+                    }
+                }
+                Assert.assertEquals("Expected correct horizontal border", expectedHorizontal,
+                                index.horizontalBorder(line, range[0], range[1]));
+                Assert.assertEquals("Expected correct vertical border", expectedVertical,
+                                index.verticalBorder(line, range[0], range[1]));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+
+public class NeighboursTest {
+    @Test
+    public void sortedByScoreKeepingEqualScores() {
+        // GIVEN
+        TileInfo[] tiles = createTiles(4);
+        Neighbours neighbours = new Neighbours();
+        neighbours.add(tiles[3], 1.);
+        neighbours.add(tiles[1], 2.);
+        neighbours.add(tiles[2], 1.);
+        neighbours.add(tiles[0], 1.);
+
+        // WHEN
+        neighbours.freeze(tiles);
+
+        // THEN
+        Assert.assertArrayEquals("Expected best score first, equal scores by id", new int[] { 1, 0, 2, 3 },
+                        neighbours.getIds());
+        Assert.assertSame("Expected correct tile", tiles[1], neighbours.getTile(0));
+        Assert.assertEquals("Expected correct score", 2f, neighbours.getScore(0), 1e-6);
+        Assert.assertEquals("Expected correct index", 3, neighbours.indexOf(3));
+        Assert.assertEquals("Expected not to find tile", -1, new Neighbours().indexOf(3));
+    }
+
+    @Test
+    public void duplicatesRemoved() {
+        // GIVEN
+        TileInfo[] tiles = createTiles(2);
+        Neighbours neighbours = new Neighbours();
+        neighbours.add(tiles[1], 1.);
+        neighbours.add(tiles[0], 1.);
+        neighbours.add(tiles[1], 3.);
+
+        // WHEN
+        neighbours.freeze(tiles);
+
+        // THEN
+        Assert.assertArrayEquals("Expected duplicate to be removed", new int[] { 1, 0 }, neighbours.getIds());
+        Assert.assertEquals("Expected highest score to be kept", 3f, neighbours.getScore(0), 1e-6);
+    }
+
+    @Test
+    public void negativeScoresSorted() {
+        // GIVEN
+        TileInfo[] tiles = createTiles(5);
+        Neighbours neighbours = new Neighbours();
+        neighbours.add(tiles[0], -2.);
+        neighbours.add(tiles[1], 0.5);
+        neighbours.add(tiles[2], -0.5);
+        neighbours.add(tiles[3], 0.);
+        neighbours.add(tiles[4], Double.NEGATIVE_INFINITY);
+        neighbours.add(tiles[0], -3.);
+
+        // WHEN
+        neighbours.freeze(tiles);
+
+        // THEN
+        Assert.assertArrayEquals("Expected best score first", new int[] { 1, 3, 2, 0, 4 }, neighbours.getIds());
+        Assert.assertEquals("Expected highest score of duplicate to be kept", -2f, neighbours.getScore(3), 1e-6);
+        Assert.assertEquals("Expected correct score", Float.NEGATIVE_INFINITY, neighbours.getScore(4), 0);
+    }
+
+    private TileInfo[] createTiles(int count) {
+        ArrayBasedImage img = new ArrayBasedImage(new int[count][count]);
+        TileInfo[] res = new TileInfo[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = new TileInfo(i, new Tile(img, i, 0, 1, 1));
+        }
+        return res;
+    }
+}
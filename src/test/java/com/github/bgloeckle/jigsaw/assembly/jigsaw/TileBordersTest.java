@@ -0,0 +1,80 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.assembly.Tile;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+public class TileBordersTest {
+    private static final int TILE_SIZE = 10;
+
+    @Test
+    public void bordersOfAllRotations() {
+        // GIVEN
+        Random random = new Random(7);
+        int[][] color = new int[20][20];
+        double[][] direction = new double[20][20];
+        EdgeDirection[] directions = EdgeDirection.values();
+        for (int x = 0; x < 20; x++) {
+            for (int y = 0; y < 20; y++) {
+                color[x][y] = random.nextBoolean() ? 0xFFFFFF : 0;
+                direction[x][y] = directions[random.nextInt(directions.length)].getGradientRadian();
+            }
+        }
+        ArrayBasedImage img = new ArrayBasedImage(color, direction);
+        TileBorders borders = new TileBorders(new Tile(img, 5, 7, TILE_SIZE, TILE_SIZE));
+
+        // WHEN
+        borders.fill(new EdgeBitIndex(img));
+
+        // THEN
+        for (int rotation = 0; rotation < 4; rotation++) {
+            // index the pixels of the rotated tile directly.
+            Tile rotated = new Tile(img, 5, 7, TILE_SIZE, TILE_SIZE, rotation);
+            int[][] rotatedColor = new int[TILE_SIZE][TILE_SIZE];
+            double[][] rotatedDirection = new double[TILE_SIZE][TILE_SIZE];
+            for (int x = 0; x < TILE_SIZE; x++) {
+                for (int y = 0; y < TILE_SIZE; y++) {
+                    rotatedColor[x][y] = rotated.getColor(x, y);
+                    rotatedDirection[x][y] = rotated.getDirection(x, y);
+                }
+            }
+            EdgeBitIndex rotatedIndex = new EdgeBitIndex(new ArrayBasedImage(rotatedColor, rotatedDirection));
+
+            Assert.assertEquals("Expected correct top border of rotation " + rotation,
+                            rotatedIndex.horizontalBorder(0, 0, TILE_SIZE), borders.get(TileBorders.TOP, rotation));
+            Assert.assertEquals("Expected correct bottom border of rotation " + rotation,
+                            rotatedIndex.horizontalBorder(TILE_SIZE - 1, 0, TILE_SIZE),
+                            borders.get(TileBorders.BOTTOM, rotation));
+            Assert.assertEquals("Expected correct left border of rotation " + rotation,
+                            rotatedIndex.verticalBorder(0, 0, TILE_SIZE), borders.get(TileBorders.LEFT, rotation));
+            Assert.assertEquals("Expected correct right border of rotation " + rotation,
+                            rotatedIndex.verticalBorder(TILE_SIZE - 1, 0, TILE_SIZE),
+                            borders.get(TileBorders.RIGHT, rotation));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.assembly.jigsaw;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TranspositionTableTest {
+    @Test
+    public void getAndPut() {
+        // GIVEN
+        TranspositionTable table = new TranspositionTable(16);
+
+        // WHEN
+        table.put(5L, 3);
+        table.put(0L, 1);
+        table.put(5L, 4);
+
+        // THEN
+        Assert.assertEquals("Expected updated value", 4, table.get(5L));
+        Assert.assertEquals("Expected value of key 0", 1, table.get(0L));
+        Assert.assertEquals("Expected no value", -1, table.get(7L));
+        Assert.assertEquals("Expected correct hits", 2, table.getHits());
+        Assert.assertEquals("Expected correct misses", 1, table.getMisses());
+    }
+
+    @Test
+    public void capacityNotRoundedUp() {
+        // WHEN
+        TranspositionTable table = new TranspositionTable(12 + 3);
+        TranspositionTable tiny = new TranspositionTable(1);
+
+        // THEN
+        Assert.assertEquals("Expected 3 buckets of 4 slots", 12, table.getCapacity());
+        Assert.assertEquals("Expected a single bucket", 4, tiny.getCapacity());
+        for (long key = 1; key <= 12; key++) {
+            table.put(key, (int) key);
+        }
+        for (long key = 1; key <= 12; key++) {
+            Assert.assertEquals("Expected all keys to fit", key, table.get(key));
+        }
+    }
+
+    @Test
+    public void clockEvictsUnreferenced() {
+        // GIVEN
+        // 2 buckets of 4 slots, all even keys are in the same bucket.
+        TranspositionTable table = new TranspositionTable(8);
+        table.put(2L, 2);
+        table.put(4L, 4);
+        table.put(6L, 6);
+        table.put(8L, 8);
+        table.get(2L);
+
+        // WHEN
+        table.put(10L, 10);
+
+        // THEN
+        Assert.assertEquals("Expected referenced entry to survive", 2, table.get(2L));
+        Assert.assertEquals("Expected first unreferenced entry to be evicted", -1, table.get(4L));
+        Assert.assertEquals("Expected other entry to survive", 6, table.get(6L));
+        Assert.assertEquals("Expected new entry", 10, table.get(10L));
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.bgloeckle.jigsaw.image.BufferImage;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.pipeline.Pipeline;
+import com.github.bgloeckle.jigsaw.steps.GaussianBlur;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+public class EdgeImageCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File inputFile;
+    private EdgeImageCache cache;
+    private AtomicInteger computeCount;
+
+    @Before
+    public void before() throws IOException {
+        inputFile = tmp.newFile();
+        Files.write(inputFile.toPath(), new byte[] { 1, 2, 3 });
+        cache = new EdgeImageCache(new File(tmp.getRoot(), "cache"));
+        computeCount = new AtomicInteger();
+    }
+
+    @Test
+    public void secondCallLoadsFromCache() {
+        // GIVEN
+        Pipeline pipeline = new Pipeline(new GaussianBlur(2));
+
+        // WHEN
+        Image first = cache.getOrCompute(inputFile, pipeline, this::compute);
+        Image second = cache.getOrCompute(inputFile, pipeline, this::compute);
+
+        // THEN
+        Assert.assertEquals("Expected to compute only once", 1, computeCount.get());
+        Assert.assertNotEquals("Expected cached image to have edge", 0, second.getColor(2, 1));
+        Assert.assertEquals("Expected cached image to have no edge", 0, second.getColor(1, 1));
+        Assert.assertEquals("Expected cached image to have correct direction",
+                        EdgeDirection.fromGradientRadian(first.getDirection(2, 1)),
+                        EdgeDirection.fromGradientRadian(second.getDirection(2, 1)));
+    }
+
+    @Test
+    public void differentParametersDifferentEntry() {
+        // WHEN
+        cache.getOrCompute(inputFile, new Pipeline(new GaussianBlur(2)), this::compute);
+        cache.getOrCompute(inputFile, new Pipeline(new GaussianBlur(3)), this::compute);
+
+        // THEN
+        Assert.assertEquals("Expected to compute twice", 2, computeCount.get());
+    }
+
+    @Test
+    public void differentInputDifferentEntry() throws IOException {
+        // GIVEN
+        Pipeline pipeline = new Pipeline(new GaussianBlur(2));
+        cache.getOrCompute(inputFile, pipeline, this::compute);
+
+        // WHEN
+        Files.write(inputFile.toPath(), new byte[] { 4, 5, 6 });
+        cache.getOrCompute(inputFile, pipeline, this::compute);
+
+        // THEN
+        Assert.assertEquals("Expected to compute twice", 2, computeCount.get());
+    }
+
+    private Image compute() {
+        computeCount.incrementAndGet();
+        BufferImage res = new BufferImage(4, 3);
+        res.setColor(2, 1, 17);
+        res.setDirection(2, 1, 1.5);
+        return res;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.cutjudge;
+
+import java.util.NavigableSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.testutil.ArrayBasedImage;
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+import com.github.bgloeckle.jigsaw.util.Pair;
+
+public class PeriodicityCutDetectorTest {
+    @Test
+    public void gridOfEdges() {
+        // GIVEN
+        // image of 120x96 pixels with vertical edges every 12 and horizontal edges every 8 pixels.
+        int[][] color = new int[120][96];
+        double[][] direction = new double[120][96];
+        for (int x = 0; x < 120; x++) {
+            for (int y = 0; y < 96; y++) {
+                direction[x][y] = Image.DIRECTION_UNDEFINED;
+                if (x % 12 == 11) {
+                    color[x][y] = 1;
+                    direction[x][y] = EdgeDirection.NORTH_SOUTH.getGradientRadian();
+                } else if (y % 8 == 7) {
+                    color[x][y] = 1;
+                    direction[x][y] = EdgeDirection.EAST_WEST.getGradientRadian();
+                }
+            }
+        }
+        // ArrayBasedImage accesses the arrays by [x][y], but takes width from the second dimension.
+        ArrayBasedImage img = new ArrayBasedImage(color, direction) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public int getWidth() {
+                return 120;
+            }
+
+            @Override
+            public int getHeight() {
+                return 96;
+            }
+        };
+
+        // WHEN
+        NavigableSet<Pair<Integer, Double>> resX = new PeriodicityCutDetector(img).findVerticalCutDistances(5);
+        NavigableSet<Pair<Integer, Double>> resY = new PeriodicityCutDetector(img).findHorizontalCutDistances(5);
+
+        // THEN
+        Assert.assertEquals("Expected correct vertical cut distance", 12, (int) resX.first().getLeft());
+        Assert.assertEquals("Expected correct horizontal cut distance", 8, (int) resY.first().getLeft());
+        Assert.assertEquals("Expected distances up to half the width", 60, (int) resX.stream()
+                        .mapToInt(p -> p.getLeft()).max().getAsInt());
+    }
+}
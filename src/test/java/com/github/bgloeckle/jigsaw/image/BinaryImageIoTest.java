@@ -0,0 +1,130 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.bgloeckle.jigsaw.util.EdgeDirection;
+
+public class BinaryImageIoTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void writeAndMap() throws IOException {
+        // GIVEN
+        BufferImage img = edgeImage(3, 5);
+        File file = tmp.newFile();
+
+        // WHEN
+        new BinaryImageIo().writeImage(img, file);
+        Image res = new BinaryImageIo().mapImage(file);
+
+        // THEN
+        Assert.assertEquals("Expected one byte per pixel", 16 + 3 * 5, file.length());
+        assertSameEdges(img, res);
+    }
+
+    @Test
+    public void mapInChunks() throws IOException {
+        // GIVEN
+        BufferImage img = edgeImage(3, 5);
+        File file = tmp.newFile();
+
+        // WHEN
+        new BinaryImageIo(2).writeImage(img, file);
+        Image res = new BinaryImageIo(2).mapImage(file);
+        Image resSingleChunk = new BinaryImageIo().mapImage(file);
+
+        // THEN
+        assertSameEdges(img, res);
+        assertSameEdges(img, resSingleChunk);
+    }
+
+    @Test
+    public void changesNotWrittenToFile() throws IOException {
+        // GIVEN
+        BufferImage img = new BufferImage(2, 2);
+        File file = tmp.newFile();
+        new BinaryImageIo().writeImage(img, file);
+        byte[] fileContent = Files.readAllBytes(file.toPath());
+
+        // WHEN
+        Image mapped = new BinaryImageIo().mapImage(file);
+        mapped.setColor(1, 1, 42);
+
+        // THEN
+        Assert.assertEquals("Expected change to be visible in mapped image", 42, mapped.getColor(1, 1));
+        Assert.assertArrayEquals("Expected file to be unchanged", fileContent, Files.readAllBytes(file.toPath()));
+        Assert.assertEquals("Expected unchanged image when mapping again", 0,
+                        new BinaryImageIo().mapImage(file).getColor(1, 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidFile() throws IOException {
+        // GIVEN
+        File file = tmp.newFile();
+        Files.write(file.toPath(), new byte[100]);
+
+        // WHEN
+        new BinaryImageIo().mapImage(file);
+
+        // THEN: exception
+    }
+
+    /**
+     * @return Image with edge pixels of different colors, with and without directions, and pixels without edges.
+     */
+    private BufferImage edgeImage(int width, int height) {
+        BufferImage res = new BufferImage(width, height);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                res.setColor(x, y, (x + y) % 3 == 0 ? 0 : x * 10 + y);
+                if (y % 2 == 0) {
+                    res.setDirection(x, y, x + y / 10.);
+                }
+            }
+        }
+        return res;
+    }
+
+    private void assertSameEdges(Image expected, Image actual) {
+        Assert.assertEquals("Expected correct width", expected.getWidth(), actual.getWidth());
+        Assert.assertEquals("Expected correct height", expected.getHeight(), actual.getHeight());
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                boolean edge = expected.getColor(x, y) != 0;
+                Assert.assertEquals("Expected correct color at " + x + "/" + y,
+                                edge ? EdgeCodeImage.EDGE_COLOR : 0, actual.getColor(x, y));
+                Assert.assertEquals("Expected correct direction at " + x + "/" + y,
+                                edge ? EdgeDirection.fromGradientRadian(expected.getDirection(x, y)) : null,
+                                EdgeDirection.fromGradientRadian(actual.getDirection(x, y)));
+            }
+        }
+    }
+}
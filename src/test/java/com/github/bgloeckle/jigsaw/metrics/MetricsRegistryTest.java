@@ -0,0 +1,94 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry.Stage;
+
+public class MetricsRegistryTest {
+    @Test
+    public void nestedAndScopedStages() {
+        // GIVEN
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        // WHEN
+        try (Stage outer = metrics.startStage("outer")) {
+            try (Stage inner = metrics.scope("scope").startStage("inner")) {
+                int[] data = new int[1000];
+                Assert.assertEquals(1000, data.length);
+            }
+        }
+
+        // THEN
+        List<StageMetrics> stages = metrics.getStages();
+        Assert.assertEquals("Expected stages in order they finished", //
+                        Arrays.asList("scope/inner", "outer"),
+                        stages.stream().map(StageMetrics::getName).collect(Collectors.toList()));
+        Assert.assertTrue("Expected outer stage to take at least as long as inner stage",
+                        stages.get(1).getWallNanos() >= stages.get(0).getWallNanos());
+    }
+
+    @Test
+    public void removeScope() {
+        // GIVEN
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.scope("removed").startStage("stage").close();
+        metrics.scope("kept").startStage("stage").close();
+        metrics.startStage("removedStage").close();
+
+        // WHEN
+        metrics.removeScope("removed");
+
+        // THEN
+        Assert.assertEquals("Expected stages of other scopes to be kept", Arrays.asList("kept/stage", "removedStage"),
+                        metrics.getStages().stream().map(StageMetrics::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void json() {
+        // GIVEN
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        // WHEN
+        metrics.startStage("a \"quoted\" stage").close();
+        String json = metrics.toJson();
+
+        // THEN
+        Assert.assertTrue("Expected escaped name in JSON: " + json, json.contains("\"name\": \"a \\\"quoted\\\" stage\""));
+        Assert.assertTrue("Expected wall time in JSON: " + json, json.contains("\"wallNanos\": "));
+        Assert.assertTrue("Expected allocated bytes in JSON: " + json, json.contains("\"allocatedBytes\": "));
+    }
+
+    @Test
+    public void noopRecordsNothing() {
+        // WHEN
+        MetricsRegistry.NOOP.scope("scope").startStage("stage").close();
+
+        // THEN
+        Assert.assertTrue("Expected no stages", MetricsRegistry.NOOP.getStages().isEmpty());
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.bgloeckle.jigsaw.JigsawSolver;
+import com.github.bgloeckle.jigsaw.TestResources;
+import com.github.bgloeckle.jigsaw.image.Image;
+import com.github.bgloeckle.jigsaw.metrics.MetricsRegistry;
+import com.github.bgloeckle.jigsaw.util.Pair;
+
+public class SolveServerTest {
+    private static final Pattern ID_PATTERN = Pattern.compile("\"id\": \"([^\"]+)\"");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private SolveServer server;
+    /** Released to let the solvers of {@link #startBlockingServer()} start loading their input. */
+    private CountDownLatch loadAllowed = new CountDownLatch(1);
+
+    @Before
+    public void before() throws IOException {
+        server = new SolveServer(0, tmp.getRoot(), 1, 1, MetricsRegistry.NOOP, null);
+        server.start();
+    }
+
+    @After
+    public void after() {
+        loadAllowed.countDown();
+        server.stop();
+    }
+
+    @Test(timeout = 60_000)
+    public void solvesJob() throws IOException, InterruptedException {
+        // GIVEN
+        File jigsaw = tmp.newFile("jigsaw.png");
+        TestResources.writeSmallJigsaw(jigsaw, 0);
+        String id = postJob(Files.readAllBytes(jigsaw.toPath()));
+
+        // WHEN
+        String state = awaitFinished(id);
+        Pair<Integer, byte[]> resultRes = requestBytes("GET", "/jobs/" + id + "/results/0", null);
+
+        // THEN
+        Assert.assertTrue("Expected job to be done: " + state, state.contains("\"state\": \"DONE\""));
+        Assert.assertEquals("Expected result", 200, (int) resultRes.getLeft());
+        Assert.assertNotNull("Expected result to be an image",
+                        ImageIO.read(new ByteArrayInputStream(resultRes.getRight())));
+    }
+
+    @Test(timeout = 60_000)
+    public void fullQueueRejects() throws IOException, InterruptedException {
+        // GIVEN
+        startBlockingServer();
+        // the first job runs, the second one fills the queue of capacity 1.
+        postJob(new byte[] { 1 });
+        postJob(new byte[] { 2 });
+
+        // WHEN
+        Pair<Integer, String> res = request("POST", "/jobs", new byte[] { 3 });
+
+        // THEN
+        Assert.assertEquals("Expected queue to be full", 503, (int) res.getLeft());
+    }
+
+    @Test(timeout = 60_000)
+    public void cancelRunningJob() throws IOException, InterruptedException {
+        // GIVEN
+        startBlockingServer();
+        String id = postJob(new byte[] { 1 });
+
+        // WHEN
+        Pair<Integer, String> cancelRes = request("POST", "/jobs/" + id + "/cancel", null);
+        String state = awaitFinished(id);
+
+        // THEN
+        Assert.assertEquals("Expected cancel to be accepted", 202, (int) cancelRes.getLeft());
+        Assert.assertTrue("Expected cancelled job to have failed: " + state,
+                        state.contains("\"state\": \"FAILED\""));
+        Assert.assertEquals("Expected finished job to not be cancellable", 409,
+                        (int) request("POST", "/jobs/" + id + "/cancel", null).getLeft());
+    }
+
+    @Test(timeout = 60_000)
+    public void cancelQueuedJobFreesSlot() throws IOException, InterruptedException {
+        // GIVEN
+        startBlockingServer();
+        // the first job runs, the second one fills the queue of capacity 1.
+        postJob(new byte[] { 1 });
+        String queuedId = postJob(new byte[] { 2 });
+
+        // WHEN
+        Pair<Integer, String> cancelRes = request("POST", "/jobs/" + queuedId + "/cancel", null);
+
+        // THEN
+        Assert.assertEquals("Expected cancel to be accepted", 202, (int) cancelRes.getLeft());
+        String state = request("GET", "/jobs/" + queuedId, null).getRight();
+        Assert.assertTrue("Expected cancelled job to have failed right away: " + state,
+                        state.contains("\"state\": \"FAILED\""));
+        Assert.assertEquals("Expected cancelled job to be deletable", 200,
+                        (int) request("DELETE", "/jobs/" + queuedId, null).getLeft());
+        Assert.assertEquals("Expected queue slot to be free", 202,
+                        (int) request("POST", "/jobs", new byte[] { 3 }).getLeft());
+    }
+
+    @Test(timeout = 60_000)
+    public void finishedJobsAreEvicted()throws IOException, InterruptedException {
+        // GIVEN
+        String id = postJob(new byte[] { 1, 2, 3 });
+        awaitFinished(id);
+        File jobDir = new File(tmp.getRoot(), id);
+        Assert.assertTrue("Expected job dir to exist", jobDir.isDirectory());
+
+        // WHEN
+        server.evictFinishedJobs(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SolveServer.FINISHED_JOB_TTL_MILLIS)
+                        + 1);
+
+        // THEN
+        Assert.assertEquals("Expected job to be gone", 404, (int) request("GET", "/jobs/" + id, null).getLeft());
+        Assert.assertFalse("Expected job dir to be deleted", jobDir.exists());
+    }
+
+    @Test
+    public void invalidImageFails() throws IOException, InterruptedException {
+        // GIVEN
+        String id = postJob(new byte[] { 1, 2, 3 });
+
+        // WHEN
+        Pair<Integer, String> getRes = null;
+        for (int i = 0; i < 100; i++) {
+            getRes = request("GET", "/jobs/" + id, null);
+            if (getRes.getRight().contains("FAILED")) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+
+        // THEN
+        Assert.assertEquals("Expected job to be found", 200, (int) getRes.getLeft());
+        Assert.assertTrue("Expected job to have failed: " + getRes.getRight(),
+                        getRes.getRight().contains("\"state\": \"FAILED\""));
+        Assert.assertEquals("Expected no result", 404, (int) request("GET", "/jobs/" + id + "/results/0", null)
+                        .getLeft());
+        Assert.assertEquals("Expected job to be deleted", 200, (int) request("DELETE", "/jobs/" + id, null).getLeft());
+        Assert.assertEquals("Expected job to be gone", 404, (int) request("GET", "/jobs/" + id, null).getLeft());
+    }
+
+    @Test
+    public void unknownJob() throws IOException {
+        // WHEN
+        Pair<Integer, String> res = request("GET", "/jobs/unknown", null);
+
+        // THEN
+        Assert.assertEquals("Expected not found", 404, (int) res.getLeft());
+    }
+
+    /**
+     * Replace the server by one whose solvers wait for {@link #loadAllowed} or being cancelled before loading.
+     */
+    private void startBlockingServer() throws IOException {
+        server.stop();
+        server = new SolveServer(0, tmp.getRoot(), 1, 1, MetricsRegistry.NOOP, null) {
+            @Override
+            JigsawSolver createSolver(File inputFile, File outputFile, String id) {
+                return new JigsawSolver(inputFile, outputFile) {
+                    @Override
+                    public Image loadInput() {
+                        try {
+                            while (!loadAllowed.await(10, TimeUnit.MILLISECONDS)) {
+                                getSolveContext().checkCancelled();
+                            }
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return super.loadInput();
+                    }
+                };
+            }
+        };
+        server.start();
+    }
+
+    /**
+     * @return The id of the posted job.
+     */
+    private String postJob(byte[] body) throws IOException {
+        Pair<Integer, String> postRes = request("POST", "/jobs", body);
+        Assert.assertEquals("Expected job to be accepted", 202, (int) postRes.getLeft());
+        Matcher m = ID_PATTERN.matcher(postRes.getRight());
+        Assert.assertTrue("Expected id in response: " + postRes.getRight(), m.find());
+        return m.group(1);
+    }
+
+    /**
+     * @return The state of the job as soon as it is finished.
+     */
+    private String awaitFinished(String id) throws IOException, InterruptedException {
+        while (true) {
+            String res = request("GET", "/jobs/" + id, null).getRight();
+            if (res.contains("\"DONE\"") || res.contains("\"FAILED\"")) {
+                return res;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private Pair<Integer, String> request(String method, String path, byte[] body) throws IOException {
+        Pair<Integer, byte[]> res = requestBytes(method, path, body);
+        return new Pair<>(res.getLeft(), new String(res.getRight(), StandardCharsets.UTF_8));
+    }
+
+    private Pair<Integer, byte[]> requestBytes(String method, String path, byte[] body) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path)
+                        .openConnection();
+        con.setRequestMethod(method);
+        if (body != null) {
+            con.setDoOutput(true);
+            try (OutputStream os = con.getOutputStream()) {
+                os.write(body);
+            }
+        }
+        int status = con.getResponseCode();
+        try (InputStream is = (status < 400) ? con.getInputStream() : con.getErrorStream()) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                baos.write(buf, 0, len);
+            }
+            return new Pair<>(status, baos.toByteArray());
+        }
+    }
+}
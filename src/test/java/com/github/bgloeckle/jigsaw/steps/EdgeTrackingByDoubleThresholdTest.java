@@ -33,10 +33,10 @@ import com.github.bgloeckle.jigsaw.TestResources;
 import com.github.bgloeckle.jigsaw.image.AwtImageIo;
 import com.github.bgloeckle.jigsaw.image.Image;
 import com.github.bgloeckle.jigsaw.pipeline.Pipeline;
-import com.github.bgloeckle.jigsaw.steps.EdgeTrackingByDoubleThreshold.RandomProvider;
 import com.github.bgloeckle.jigsaw.testutil.ProprietaryOnlyRule;
 import com.github.bgloeckle.jigsaw.testutil.ProprietaryOnlyRule.ProprietaryOnly;
 import com.github.bgloeckle.jigsaw.testutil.TestImageAssert;
+import com.github.bgloeckle.jigsaw.util.RandomProvider;
 
 public class EdgeTrackingByDoubleThresholdTest {
     private static final Supplier<InputStream> FOREST_ROAD_EXPECTED = () -> EdgeTrackingByDoubleThresholdTest.class
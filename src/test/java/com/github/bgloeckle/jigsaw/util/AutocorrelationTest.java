@@ -0,0 +1,67 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AutocorrelationTest {
+    @Test
+    public void sameAsDirectCalculation() {
+        // GIVEN
+        Random random = new Random(0);
+        double[] signal = new double[37];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = random.nextDouble();
+        }
+
+        // WHEN
+        double[] res = Autocorrelation.calculate(signal);
+
+        // THEN
+        double mean = 0;
+        for (double v : signal) {
+            mean += v;
+        }
+        mean /= signal.length;
+        double[] expected = new double[signal.length];
+        for (int shift = 0; shift < signal.length; shift++) {
+            for (int i = 0; i + shift < signal.length; i++) {
+                expected[shift] += (signal[i] - mean) * (signal[i + shift] - mean);
+            }
+        }
+        for (int shift = signal.length - 1; shift >= 0; shift--) {
+            expected[shift] /= expected[0];
+        }
+        Assert.assertArrayEquals("Expected correct autocorrelation", expected, res, 1e-9);
+    }
+
+    @Test
+    public void constantSignal() {
+        // WHEN
+        double[] res = Autocorrelation.calculate(new double[] { 3, 3, 3, 3 });
+
+        // THEN
+        Assert.assertArrayEquals("Expected no correlation", new double[] { 0, 0, 0, 0 }, res, 1e-9);
+    }
+}
@@ -20,6 +20,8 @@
  */
 package com.github.bgloeckle.jigsaw.util;
 
+import java.util.Random;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -53,5 +55,39 @@ public class ConvolutionTest {
         Assert.assertArrayEquals("Expected correct values for x=2", new int[] { -12, -12, -12 }, img.getAllColors()[2]);
     }
 
+    @Test
+    public void engineSameAsReference() {
+        // GIVEN
+        Random random = new Random(42);
+        int input[][] = new int[23][23];
+        for (int x = 0; x < input.length; x++) {
+            for (int y = 0; y < input[x].length; y++) {
+                input[x][y] = random.nextInt(256);
+            }
+        }
+        double kernel[][] = new double[7][7];
+        for (int x = 0; x < kernel.length; x++) {
+            for (int y = 0; y < kernel[x].length; y++) {
+                kernel[x][y] = random.nextDouble();
+            }
+        }
+        ArrayBasedImage expected = new ArrayBasedImage(input);
+        ArrayBasedImage expectedNormalized = (ArrayBasedImage) expected.copy();
+        ArrayBasedImage actual = (ArrayBasedImage) expected.copy();
+        ArrayBasedImage actualNormalized = (ArrayBasedImage) expected.copy();
 
+        // WHEN
+        Convolution.applyConvolution(kernel, expected, false);
+        Convolution.applyConvolution(kernel, expectedNormalized, true);
+        Convolution.engine().apply(kernel, actual, false);
+        Convolution.engine().apply(kernel, actualNormalized, true);
+
+        // THEN
+        for (int x = 0; x < input.length; x++) {
+            Assert.assertArrayEquals("Expected correct values for x=" + x, expected.getAllColors()[x],
+                            actual.getAllColors()[x]);
+            Assert.assertArrayEquals("Expected correct normalized values for x=" + x,
+                            expectedNormalized.getAllColors()[x], actualNormalized.getAllColors()[x]);
+        }
+    }
 }
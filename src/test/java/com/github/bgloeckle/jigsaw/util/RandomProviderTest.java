@@ -0,0 +1,122 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.bgloeckle.jigsaw.steps.EdgeTrackingByDoubleThreshold;
+
+public class RandomProviderTest {
+    private static final int COUNT = 100;
+
+    @Test
+    public void sameSeedSameNumbers() {
+        // GIVEN
+        RandomProvider first = RandomProvider.seeded(42);
+        RandomProvider second = RandomProvider.seeded(42);
+
+        // WHEN
+        List<Integer> firstNumbers = numbers(first);
+        List<Integer> secondNumbers = numbers(second);
+
+        // THEN
+        Assert.assertEquals("Expected same numbers for same seed", firstNumbers, secondNumbers);
+    }
+
+    @Test
+    public void derivedIndependentOfOrder() {
+        // GIVEN
+        RandomProvider first = RandomProvider.seeded(42);
+        RandomProvider second = RandomProvider.seeded(42);
+
+        // WHEN
+        List<Integer> firstA = numbers(first.derive("a"));
+        List<Integer> firstB = numbers(first.derive("b"));
+        numbers(second);
+        List<Integer> secondB = numbers(second.derive("b"));
+        List<Integer> secondA = numbers(second.derive("a"));
+
+        // THEN
+        Assert.assertEquals("Expected same numbers for same name", firstA, secondA);
+        Assert.assertEquals("Expected same numbers for same name", firstB, secondB);
+        Assert.assertNotEquals("Expected different numbers for different names", firstA, firstB);
+    }
+
+    @Test
+    public void derivedDiffersFromParent() {
+        // GIVEN
+        RandomProvider provider = RandomProvider.seeded(42);
+
+        // WHEN
+        List<Integer> derivedNumbers = numbers(RandomProvider.seeded(42).derive("a"));
+        List<Integer> parentNumbers = numbers(provider);
+
+        // THEN
+        Assert.assertNotEquals("Expected derived provider to provide different numbers", parentNumbers,
+                        derivedNumbers);
+    }
+
+    @Test
+    public void unseededDerivesItself() {
+        // GIVEN
+        RandomProvider provider = RandomProvider.UNSEEDED;
+
+        // WHEN
+        RandomProvider derived = provider.derive("a");
+
+        // THEN
+        Assert.assertSame("Expected unseeded provider to be returned", provider, derived);
+    }
+
+    @Test
+    public void edgeTrackingDescriptionContainsSeed() {
+        // GIVEN
+        RandomProvider first = RandomProvider.seeded(42).derive("edgeDetection");
+        RandomProvider second = RandomProvider.seeded(43).derive("edgeDetection");
+
+        // WHEN
+        String firstDescription = new EdgeTrackingByDoubleThreshold(.4, .85, first).getDescription();
+        String firstAgainDescription = new EdgeTrackingByDoubleThreshold(.4, .85,
+                        RandomProvider.seeded(42).derive("edgeDetection")).getDescription();
+        String secondDescription = new EdgeTrackingByDoubleThreshold(.4, .85, second).getDescription();
+        String unseededDescription = new EdgeTrackingByDoubleThreshold(.4, .85, RandomProvider.UNSEEDED)
+                        .getDescription();
+
+        // THEN
+        Assert.assertEquals("Expected same description for same seed", firstDescription, firstAgainDescription);
+        Assert.assertNotEquals("Expected different descriptions for different seeds", firstDescription,
+                        secondDescription);
+        Assert.assertNotEquals("Expected seeded and unseeded descriptions to differ", firstDescription,
+                        unseededDescription);
+    }
+
+    private List<Integer> numbers(RandomProvider provider) {
+        List<Integer> res = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            res.add(provider.provideRandomInt(1000));
+        }
+        return res;
+    }
+}
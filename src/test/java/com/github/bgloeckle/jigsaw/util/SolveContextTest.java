@@ -0,0 +1,83 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SolveContextTest {
+    private static final long ONE_HOUR_NANOS = 3_600_000_000_000L;
+
+    @Test
+    public void deadline() {
+        // GIVEN
+        SolveContext passed = new SolveContext(System.nanoTime() - 1);
+        SolveContext future = new SolveContext(System.nanoTime() + ONE_HOUR_NANOS);
+
+        // WHEN
+        boolean passedCancelled = passed.isCancelled();
+        boolean futureCancelled = future.isCancelled();
+
+        // THEN
+        Assert.assertTrue("Expected context with passed deadline to be cancelled", passedCancelled);
+        Assert.assertFalse("Expected context with future deadline to not be cancelled", futureCancelled);
+    }
+
+    @Test
+    public void cancelParentCancelsChild() {
+        // GIVEN
+        SolveContext parent = new SolveContext();
+        SolveContext child = parent.withDeadline(System.nanoTime() + ONE_HOUR_NANOS);
+
+        // WHEN
+        boolean childCancelledBefore = child.isCancelled();
+        parent.cancel();
+
+        // THEN
+        Assert.assertFalse("Expected child to not be cancelled before parent", childCancelledBefore);
+        Assert.assertTrue("Expected child to be cancelled", child.isCancelled());
+    }
+
+    @Test
+    public void childDeadlineDoesNotCancelParent() {
+        // GIVEN
+        SolveContext parent = new SolveContext();
+
+        // WHEN
+        SolveContext child = parent.withDeadline(System.nanoTime() - 1);
+
+        // THEN
+        Assert.assertTrue("Expected child to be cancelled", child.isCancelled());
+        Assert.assertFalse("Expected parent to not be cancelled", parent.isCancelled());
+    }
+
+    @Test(expected = SolveCancelledException.class)
+    public void checkCancelledThrows() {
+        // GIVEN
+        SolveContext context = new SolveContext();
+        context.cancel();
+
+        // WHEN
+        context.checkCancelled();
+
+        // THEN: exception
+    }
+}
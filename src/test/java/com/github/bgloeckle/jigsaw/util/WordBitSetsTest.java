@@ -0,0 +1,97 @@
+/**
+ * jigsaw: Solve image jigsaws.
+ *
+ * Copyright (C) 2016, 2017 Bastian Gloeckle
+ *
+ * This file is part of jigsaw.
+ *
+ * diqube is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.bgloeckle.jigsaw.util;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WordBitSetsTest {
+    private static final int BITS = 150;
+
+    @Test
+    public void sameAsBitSet() {
+        // GIVEN
+        Random random = new Random(0);
+        BitSet a = randomBitSet(random);
+        BitSet b = randomBitSet(random);
+        long[] aWords = toWords(a);
+        long[] bWords = toWords(b);
+
+        // WHEN
+        long[] and = new long[WordBitSets.wordCount(BITS)];
+        boolean andNotEmpty = WordBitSets.and(and, aWords, bWords);
+        long[] or = aWords.clone();
+        WordBitSets.or(or, bWords);
+        long[] andNot = aWords.clone();
+        boolean andNotChanged = WordBitSets.andNot(andNot, bWords);
+
+        // THEN
+        BitSet expectedAnd = (BitSet) a.clone();
+        expectedAnd.and(b);
+        BitSet expectedOr = (BitSet) a.clone();
+        expectedOr.or(b);
+        BitSet expectedAndNot = (BitSet) a.clone();
+        expectedAndNot.andNot(b);
+        Assert.assertArrayEquals("Expected correct and", toWords(expectedAnd), and);
+        Assert.assertEquals("Expected correct and result", !expectedAnd.isEmpty(), andNotEmpty);
+        Assert.assertArrayEquals("Expected correct or", toWords(expectedOr), or);
+        Assert.assertArrayEquals("Expected correct andNot", toWords(expectedAndNot), andNot);
+        Assert.assertEquals("Expected correct andNot result", a.intersects(b), andNotChanged);
+        Assert.assertEquals("Expected correct cardinality", a.cardinality(), WordBitSets.cardinality(aWords));
+        Assert.assertEquals("Expected correct intersects", a.intersects(b), WordBitSets.intersects(aWords, bWords));
+        for (int i = 0; i < BITS; i++) {
+            Assert.assertEquals("Expected correct next set bit of " + i, a.nextSetBit(i),
+                            WordBitSets.nextSetBit(aWords, i));
+        }
+    }
+
+    @Test
+    public void full() {
+        // WHEN
+        long[] res = WordBitSets.full(BITS);
+
+        // THEN
+        BitSet expected = new BitSet();
+        expected.set(0, BITS);
+        Assert.assertArrayEquals("Expected all bits set", toWords(expected), res);
+        Assert.assertEquals("Expected no further set bit", -1, WordBitSets.nextSetBit(res, BITS));
+    }
+
+    private BitSet randomBitSet(Random random) {
+        BitSet res = new BitSet(BITS);
+        for (int i = 0; i < BITS; i++) {
+            if (random.nextBoolean()) {
+                res.set(i);
+            }
+        }
+        return res;
+    }
+
+    private long[] toWords(BitSet bitSet) {
+        long[] res = new long[WordBitSets.wordCount(BITS)];
+        long[] words = bitSet.toLongArray();
+        System.arraycopy(words, 0, res, 0, words.length);
+        return res;
+    }
+}